@@ -0,0 +1,42 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.bench;
+
+/**
+ * Settings shared by the benchmarks of this package. See
+ * {@code bench/README.md} for how to build and run them.
+ */
+final class Benchmarks {
+  /**
+   * The number of rounds run before measuring.
+   */
+  static final int WARMUP_ROUNDS = 5;
+
+  /**
+   * The number of measured rounds; benchmarks report the best one.
+   */
+  static final int ROUNDS = 10;
+
+  /**
+   * Keeps the benchmark loops from being optimized away.
+   */
+  static long sink;
+
+  private Benchmarks() {
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.bench;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.Requires;
+
+/**
+ * Measures the cost of calls to the methods of a mostly read object
+ * with an expensive invariant, with and without the {@code dirty}
+ * property.
+ */
+public class DirtyTrackingBenchmark {
+  @Invariant({
+    "values != null",
+    "isSorted()"
+  })
+  private static class SortedTable {
+    private int[] values;
+    private int size;
+
+    SortedTable(int capacity) {
+      values = new int[capacity];
+    }
+
+    @Requires("size < values.length")
+    @Ensures("size == old(size) + 1")
+    void append(int x) {
+      int i = size;
+      while (i > 0 && values[i - 1] > x) {
+        values[i] = values[i - 1];
+        --i;
+      }
+      values[i] = x;
+      ++size;
+    }
+
+    @Requires("i >= 0 && i < size")
+    int get(int i) {
+      return values[i];
+    }
+
+    @Ensures("result >= 0")
+    int size() {
+      return size;
+    }
+
+    boolean isSorted() {
+      for (int i = 1; i < size; ++i) {
+        if (values[i - 1] > values[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private static final int SIZE = 256;
+  private static final int CALLS = 1000000;
+
+  public static void main(String[] args) {
+    System.out.println("dirty: "
+        + System.getProperty("com.google.java.contract.dirty", "false"));
+
+    SortedTable table = new SortedTable(SIZE);
+    for (int i = 0; i < SIZE; ++i) {
+      table.append((i * 31) % SIZE);
+    }
+    for (int i = 0; i < Benchmarks.WARMUP_ROUNDS; ++i) {
+      runReads(table);
+    }
+    long nanos = Long.MAX_VALUE;
+    for (int i = 0; i < Benchmarks.ROUNDS; ++i) {
+      nanos = Math.min(nanos, runReads(table));
+    }
+
+    System.out.println("reads: " + ((double) nanos / CALLS) + " ns/call");
+  }
+
+  private static long runReads(SortedTable table) {
+    long start = System.nanoTime();
+    long sum = 0;
+    for (int i = 0; i < CALLS; ++i) {
+      sum += table.get(i % table.size());
+    }
+    long nanos = System.nanoTime() - start;
+    Benchmarks.sink += sum;
+    return nanos;
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.bench;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Requires;
+
+/**
+ * Measures the cost of calls to contracted methods that throw or
+ * catch exceptions, which depends on the exception handlers woven
+ * around their code. Methods of final classes without invariants and
+ * static methods without exceptional postconditions are woven without
+ * such a handler.
+ */
+public class ExceptionBenchmark {
+  private static final class Parser {
+    @Requires("s != null")
+    @Ensures("result >= -1")
+    int parse(String s) {
+      try {
+        return Integer.parseInt(s);
+      } catch (NumberFormatException e) {
+        return -1;
+      }
+    }
+  }
+
+  private static final IllegalArgumentException FAILURE =
+      new IllegalArgumentException();
+
+  @Requires("x >= 0")
+  @Ensures("result >= 0")
+  static int divide(int x, int y) {
+    if (y == 0) {
+      throw FAILURE;
+    }
+    return x / y;
+  }
+
+  private static final int CALLS = 1000000;
+
+  public static void main(String[] args) {
+    Parser parser = new Parser();
+    for (int i = 0; i < Benchmarks.WARMUP_ROUNDS; ++i) {
+      runCatch(parser);
+      runThrow();
+    }
+    long catchNanos = Long.MAX_VALUE;
+    long throwNanos = Long.MAX_VALUE;
+    for (int i = 0; i < Benchmarks.ROUNDS; ++i) {
+      catchNanos = Math.min(catchNanos, runCatch(parser));
+      throwNanos = Math.min(throwNanos, runThrow());
+    }
+
+    System.out.println("catch: "
+                       + ((double) catchNanos / CALLS) + " ns/call");
+    System.out.println("throw: "
+                       + ((double) throwNanos / CALLS) + " ns/call");
+  }
+
+  private static long runCatch(Parser parser) {
+    String[] inputs = { "12", "x" };
+    long start = System.nanoTime();
+    long sum = 0;
+    for (int i = 0; i < CALLS; ++i) {
+      sum += parser.parse(inputs[i & 1]);
+    }
+    long nanos = System.nanoTime() - start;
+    Benchmarks.sink += sum;
+    return nanos;
+  }
+
+  private static long runThrow() {
+    long start = System.nanoTime();
+    long sum = 0;
+    for (int i = 0; i < CALLS; ++i) {
+      try {
+        sum += divide(i, i & 1);
+      } catch (IllegalArgumentException e) {
+        --sum;
+      }
+    }
+    long nanos = System.nanoTime() - start;
+    Benchmarks.sink += sum;
+    return nanos;
+  }
+}
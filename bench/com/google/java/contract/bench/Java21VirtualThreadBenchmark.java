@@ -0,0 +1,107 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.bench;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures the memory held per virtual thread by threads parked
+ * after constructing a contracted object, compared to threads parked
+ * right away; the difference is mostly the contract context of each
+ * thread. This class requires Java 21. The number of threads may be
+ * passed on the command line (1000000 by default).
+ *
+ * <p>The class has no contracts, so that only the construction of the
+ * contracted object touches the contract context, and no nested
+ * classes, since the Java agent does not handle the nest attributes of
+ * class files for Java 11 and later.
+ */
+public class Java21VirtualThreadBenchmark implements Runnable {
+  private boolean contracted;
+  private CountDownLatch started;
+  private CountDownLatch done;
+
+  Java21VirtualThreadBenchmark(boolean contracted, CountDownLatch started,
+                               CountDownLatch done) {
+    this.contracted = contracted;
+    this.started = started;
+    this.done = done;
+  }
+
+  @Override
+  public void run() {
+    if (contracted) {
+      new ContractedObject();
+    }
+    started.countDown();
+    try {
+      done.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  static long usedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; ++i) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  /**
+   * Starts {@code n} virtual threads, and returns the memory they
+   * hold once they have all made their call and parked.
+   */
+  static long measure(int n, boolean contracted)
+      throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(n);
+    CountDownLatch done = new CountDownLatch(1);
+    Thread[] threads = new Thread[n];
+    long before = usedMemory();
+    long start = System.nanoTime();
+    for (int i = 0; i < n; ++i) {
+      threads[i] = Thread.ofVirtual().start(
+          new Java21VirtualThreadBenchmark(contracted, started, done));
+    }
+    started.await();
+    long elapsed = System.nanoTime() - start;
+    long used = usedMemory() - before;
+    done.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    System.out.println((contracted ? "contracted: " : "plain:      ")
+                       + used / n + " bytes/thread, "
+                       + elapsed / 1000000 + " ms");
+    return used;
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+    /* Warm up. */
+    measure(n / 10, false);
+    measure(n / 10, true);
+
+    long plain = measure(n, false);
+    long contracted = measure(n, true);
+    System.out.println("context:    " + (contracted - plain) / n
+                       + " bytes/thread");
+  }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.bench;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.Requires;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+
+/**
+ * Measures the memory taken by the code of a family of classes whose
+ * methods share the same contracts, with and without the
+ * {@code share} property.
+ */
+public class SharingBenchmark {
+  @Invariant({
+    "a >= 0",
+    "b >= 0",
+    "c >= 0",
+    "d >= 0"
+  })
+  private static class Record {
+    protected int a;
+    protected int b;
+    protected int c;
+    protected int d;
+
+    @Ensures("result >= 0")
+    int getA() {
+      return a;
+    }
+
+    @Requires("x >= 0")
+    @Ensures("result == x")
+    int setA(int x) {
+      a = x;
+      return x;
+    }
+
+    @Ensures("result >= 0")
+    int getB() {
+      return b;
+    }
+
+    @Requires("x >= 0")
+    @Ensures("result == x")
+    int setB(int x) {
+      b = x;
+      return x;
+    }
+
+    @Ensures("result >= 0")
+    int getC() {
+      return c;
+    }
+
+    @Requires("x >= 0")
+    @Ensures("result == x")
+    int setC(int x) {
+      c = x;
+      return x;
+    }
+
+    @Ensures("result >= 0")
+    int getD() {
+      return d;
+    }
+
+    @Requires("x >= 0")
+    @Ensures("result == x")
+    int setD(int x) {
+      d = x;
+      return x;
+    }
+  }
+
+  private static class SmallRecord extends Record {
+    @Requires("x < 100")
+    int setA(int x) {
+      return super.setA(x);
+    }
+
+    @Requires("x < 100")
+    int setB(int x) {
+      return super.setB(x);
+    }
+
+    @Requires("x < 100")
+    int setC(int x) {
+      return super.setC(x);
+    }
+
+    @Requires("x < 100")
+    int setD(int x) {
+      return super.setD(x);
+    }
+  }
+
+  private static class EvenRecord extends Record {
+    @Ensures("result % 2 == 0")
+    int setA(int x) {
+      return super.setA(x);
+    }
+
+    @Ensures("result % 2 == 0")
+    int setB(int x) {
+      return super.setB(x);
+    }
+
+    @Ensures("result % 2 == 0")
+    int setC(int x) {
+      return super.setC(x);
+    }
+
+    @Ensures("result % 2 == 0")
+    int setD(int x) {
+      return super.setD(x);
+    }
+  }
+
+  private static class SmallEvenRecord extends SmallRecord {
+    @Ensures("result % 2 == 0")
+    int setA(int x) {
+      return super.setA(x);
+    }
+
+    @Ensures("result % 2 == 0")
+    int setB(int x) {
+      return super.setB(x);
+    }
+
+    @Ensures("result % 2 == 0")
+    int setC(int x) {
+      return super.setC(x);
+    }
+
+    @Ensures("result % 2 == 0")
+    int setD(int x) {
+      return super.setD(x);
+    }
+  }
+
+  private static final int CALLS = 100000;
+
+  public static void main(String[] args) {
+    System.out.println("share: "
+        + System.getProperty("com.google.java.contract.share", "false"));
+
+    long metaspace = getUsage("Metaspace", "Perm Gen");
+    long codeCache = getUsage("CodeHeap", "Code Cache");
+
+    Record[] records = {
+      new Record(), new SmallRecord(), new EvenRecord(), new SmallEvenRecord()
+    };
+    long sum = 0;
+    for (int i = 0; i < CALLS; ++i) {
+      for (Record r : records) {
+        int x = (i & 0x1f) << 1;
+        sum += r.setA(x) + r.setB(x) + r.setC(x) + r.setD(x);
+        sum += r.getA() + r.getB() + r.getC() + r.getD();
+      }
+    }
+    Benchmarks.sink += sum;
+
+    System.out.println("metaspace: "
+        + (getUsage("Metaspace", "Perm Gen") - metaspace) / 1024 + " KiB");
+    System.out.println("code cache: "
+        + (getUsage("CodeHeap", "Code Cache") - codeCache) / 1024 + " KiB");
+  }
+
+  /**
+   * Returns the sum of the memory used by the memory pools whose names
+   * start with one of {@code prefixes}.
+   */
+  private static long getUsage(String... prefixes) {
+    long used = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      for (String prefix : prefixes) {
+        if (pool.getName().startsWith(prefix)) {
+          used += pool.getUsage().getUsed();
+          break;
+        }
+      }
+    }
+    return used;
+  }
+}
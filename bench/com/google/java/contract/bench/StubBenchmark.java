@@ -0,0 +1,109 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.bench;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.Requires;
+
+/**
+ * Measures the cost of calls to small contracted methods, which is
+ * dominated by whether the JIT compiler manages to inline them into
+ * their callers, with and without the {@code stubs} property.
+ */
+public class StubBenchmark {
+  private static class Point {
+    private int x;
+
+    @Ensures("result == x")
+    int getX() {
+      return x;
+    }
+
+    @Requires("x >= 0")
+    @Ensures("this.x == x")
+    void setX(int x) {
+      this.x = x;
+    }
+  }
+
+  @Invariant("count >= 0")
+  private static class Counter {
+    private int count;
+
+    @Ensures("result >= 0")
+    int get() {
+      return count;
+    }
+
+    @Requires("n >= 0")
+    @Ensures("count == old(count) + n")
+    void add(int n) {
+      count += n;
+    }
+  }
+
+  private static final int CALLS = 10000000;
+
+  public static void main(String[] args) {
+    System.out.println("stubs: "
+        + System.getProperty("com.google.java.contract.stubs", "false"));
+
+    Point point = new Point();
+    Counter counter = new Counter();
+    for (int i = 0; i < Benchmarks.WARMUP_ROUNDS; ++i) {
+      runAccessors(point);
+      runInvariant(counter);
+    }
+    long accessorNanos = Long.MAX_VALUE;
+    long invariantNanos = Long.MAX_VALUE;
+    for (int i = 0; i < Benchmarks.ROUNDS; ++i) {
+      accessorNanos = Math.min(accessorNanos, runAccessors(point));
+      invariantNanos = Math.min(invariantNanos, runInvariant(counter));
+    }
+
+    System.out.println("accessors: "
+                       + ((double) accessorNanos / CALLS) + " ns/call");
+    System.out.println("invariant: "
+                       + ((double) invariantNanos / CALLS) + " ns/call");
+  }
+
+  private static long runAccessors(Point point) {
+    long start = System.nanoTime();
+    long sum = 0;
+    for (int i = 0; i < CALLS; ++i) {
+      point.setX(i & 0xff);
+      sum += point.getX();
+    }
+    long nanos = System.nanoTime() - start;
+    Benchmarks.sink += sum;
+    return nanos;
+  }
+
+  private static long runInvariant(Counter counter) {
+    long start = System.nanoTime();
+    long sum = 0;
+    for (int i = 0; i < CALLS; ++i) {
+      counter.add(i & 1);
+      sum += counter.get();
+    }
+    long nanos = System.nanoTime() - start;
+    Benchmarks.sink += sum;
+    return nanos;
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.bench;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.Requires;
+import com.google.java.contract.ThrowEnsures;
+import com.google.java.contract.core.util.JavaTokenizer;
+import com.google.java.contract.core.util.JavaTokenizer.Token;
+
+import java.io.StringReader;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares the throughput of {@link JavaTokenizer} reading from a
+ * {@link java.io.Reader} and scanning a {@link CharSequence} in place.
+ *
+ * <p>The corpus is made of the contract expressions found on the
+ * classes named on the command line, or, by default, on the classes
+ * of the annotation processor, which carry a fair sample of real-world
+ * contracts.
+ */
+public class TokenizerBenchmark {
+  private static final String[] DEFAULT_CLASSES = {
+    "com.google.java.contract.core.apt.AnnotationProcessor",
+    "com.google.java.contract.core.apt.ContractCreation",
+    "com.google.java.contract.core.apt.ContractExpressionTransformer",
+    "com.google.java.contract.core.apt.MethodContractCreator",
+    "com.google.java.contract.core.apt.TypeFactory",
+    "com.google.java.contract.core.model.ClassName",
+    "com.google.java.contract.core.model.ElementModel",
+    "com.google.java.contract.core.model.MethodModel",
+    "com.google.java.contract.core.model.TypeModel",
+    "com.google.java.contract.core.util.JavaUtils",
+    "com.google.java.contract.core.util.TokenList",
+  };
+
+  private static final int REPEAT = 200;
+
+  public static void main(String[] args) throws Exception {
+    List<String> classNames =
+        Arrays.asList(args.length == 0 ? DEFAULT_CLASSES : args);
+    List<String> corpus = new ArrayList<String>();
+    for (String className : classNames) {
+      collectContracts(Class.forName(className), corpus);
+    }
+    long chars = 0;
+    for (String expr : corpus) {
+      chars += expr.length();
+    }
+    System.out.println("corpus: " + corpus.size() + " expressions, "
+                       + chars + " characters");
+
+    for (String expr : corpus) {
+      checkSameTokens(expr);
+    }
+
+    for (int i = 0; i < Benchmarks.WARMUP_ROUNDS; ++i) {
+      runReader(corpus);
+      runSequence(corpus);
+    }
+    long readerNanos = Long.MAX_VALUE;
+    long sequenceNanos = Long.MAX_VALUE;
+    for (int i = 0; i < Benchmarks.ROUNDS; ++i) {
+      readerNanos = Math.min(readerNanos, runReader(corpus));
+      sequenceNanos = Math.min(sequenceNanos, runSequence(corpus));
+    }
+
+    long total = chars * REPEAT;
+    System.out.println("reader:   " + (readerNanos / 1000000.0) + " ms, "
+                       + ((double) readerNanos / total) + " ns/char");
+    System.out.println("sequence: " + (sequenceNanos / 1000000.0) + " ms, "
+                       + ((double) sequenceNanos / total) + " ns/char");
+  }
+
+  private static long runReader(List<String> corpus) {
+    long start = System.nanoTime();
+    int tokens = 0;
+    for (int i = 0; i < REPEAT; ++i) {
+      for (String expr : corpus) {
+        JavaTokenizer tokenizer = new JavaTokenizer(new StringReader(expr));
+        while (tokenizer.hasNext()) {
+          tokenizer.next();
+          ++tokens;
+        }
+      }
+    }
+    long nanos = System.nanoTime() - start;
+    Benchmarks.sink += tokens;
+    return nanos;
+  }
+
+  private static long runSequence(List<String> corpus) {
+    long start = System.nanoTime();
+    int tokens = 0;
+    for (int i = 0; i < REPEAT; ++i) {
+      for (String expr : corpus) {
+        JavaTokenizer tokenizer = new JavaTokenizer(expr);
+        while (tokenizer.hasNext()) {
+          tokenizer.next();
+          ++tokens;
+        }
+      }
+    }
+    long nanos = System.nanoTime() - start;
+    Benchmarks.sink += tokens;
+    return nanos;
+  }
+
+  private static void checkSameTokens(String expr) {
+    JavaTokenizer reader = new JavaTokenizer(new StringReader(expr));
+    JavaTokenizer sequence = new JavaTokenizer(expr);
+    while (reader.hasNext()) {
+      if (!sequence.hasNext()) {
+        throw new AssertionError("missing tokens: " + expr);
+      }
+      Token expected = reader.next();
+      Token actual = sequence.next();
+      if (expected.kind != actual.kind
+          || expected.offset != actual.offset
+          || !expected.getText().equals(actual.getText())) {
+        throw new AssertionError("token mismatch at " + expected.offset
+                                 + ": " + expr);
+      }
+    }
+    if (sequence.hasNext()) {
+      throw new AssertionError("extra tokens: " + expr);
+    }
+  }
+
+  private static void collectContracts(Class<?> clazz, List<String> corpus) {
+    collectContracts((AnnotatedElement) clazz, corpus);
+    for (Constructor<?> constructor : clazz.getDeclaredConstructors()) {
+      collectContracts(constructor, corpus);
+    }
+    for (Method method : clazz.getDeclaredMethods()) {
+      collectContracts(method, corpus);
+    }
+    for (Class<?> inner : clazz.getDeclaredClasses()) {
+      collectContracts(inner, corpus);
+    }
+  }
+
+  private static void collectContracts(AnnotatedElement element,
+                                       List<String> corpus) {
+    Invariant invariant = element.getAnnotation(Invariant.class);
+    if (invariant != null) {
+      corpus.addAll(Arrays.asList(invariant.value()));
+    }
+    Requires requires = element.getAnnotation(Requires.class);
+    if (requires != null) {
+      corpus.addAll(Arrays.asList(requires.value()));
+    }
+    Ensures ensures = element.getAnnotation(Ensures.class);
+    if (ensures != null) {
+      corpus.addAll(Arrays.asList(ensures.value()));
+    }
+    ThrowEnsures throwEnsures = element.getAnnotation(ThrowEnsures.class);
+    if (throwEnsures != null) {
+      corpus.addAll(Arrays.asList(throwEnsures.value()));
+    }
+  }
+}
@@ -27,6 +27,12 @@ import java.util.List;
  * @author nhat.minh.le@huoc.org (Nhat Minh Lê)
  */
 public abstract class ContractAssertionError extends AssertionError {
+  /**
+   * The prefix of the names of members generated by Contracts for
+   * Java.
+   */
+  private static final String GENERATED_PREFIX = "com$google$java$contract$";
+
   /**
    * Constructs a new ContractAssertionError.
    *
@@ -80,16 +86,24 @@ public abstract class ContractAssertionError extends AssertionError {
   }
 
   /**
-   * Remove wrapper call, leaving only the contract helper.
+   * Remove wrapper calls, leaving only the contract helper. Wrapper
+   * calls are those to generated members, such as the contract
+   * method, or contract stubs.
    */
   private void cleanStackTrace() {
     StackTraceElement[] realTrace = getStackTrace();
-    StackTraceElement[] trace = new StackTraceElement[realTrace.length - 1];
+    int i = 1;
+    while (i < realTrace.length - 1
+           && realTrace[i].getMethodName().startsWith(GENERATED_PREFIX)) {
+      ++i;
+    }
+    StackTraceElement[] trace =
+        new StackTraceElement[realTrace.length - i + 1];
     StackTraceElement top = realTrace[0];
     trace[0] = new StackTraceElement(top.getClassName(),
-        getMethodName(realTrace[2].getMethodName()),
+        getMethodName(realTrace[i].getMethodName()),
         top.getFileName(), top.getLineNumber());
-    System.arraycopy(realTrace, 2, trace, 1, realTrace.length - 2);
+    System.arraycopy(realTrace, i, trace, 1, realTrace.length - i);
     setStackTrace(trace);
   }
 
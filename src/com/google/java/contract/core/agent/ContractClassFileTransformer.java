@@ -387,7 +387,7 @@ public class ContractClassFileTransformer implements ClassFileTransformer {
                                   ClassWriter.COMPUTE_MAXS);
 
     SpecificationClassAdapter adapter =
-        new SpecificationClassAdapter(writer, contracts);
+        new SpecificationClassAdapter(writer, contracts, loader);
     reader.accept(adapter, ClassReader.EXPAND_FRAMES);
 
     return writer.toByteArray();
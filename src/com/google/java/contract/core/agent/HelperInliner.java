@@ -0,0 +1,575 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.agent;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.Requires;
+import com.google.java.contract.core.model.ClassName;
+import com.google.java.contract.core.model.ContractKind;
+import com.google.java.contract.core.util.DebugUtils;
+import com.google.java.contract.core.util.JavaUtils;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Flattens inherited contracts: copies the code of the helper
+ * methods called by a contract method into the contract method
+ * itself, so that each contracted method is checked by a single
+ * contract method instead of a chain of calls up the type hierarchy.
+ *
+ * <p>Helpers are found in the contract class files of the
+ * instrumented class and of its superclasses, and in the helper
+ * classes of interfaces. Only the code of the contract method
+ * changes; the way the results of the helpers are combined is left
+ * as is, so inherited contracts keep their meaning. Helper code from
+ * another class is only copied if it stays legal in the instrumented
+ * class: it must come from the same package and only use members
+ * that are accessible from there. Other calls are left alone.
+ *
+ * <p>Copied code carries no line number information.
+ */
+@Invariant({
+  "className != null",
+  "contracts != null",
+  "classInfos != null",
+  "contractClasses != null"
+})
+class HelperInliner {
+  private static final String GENERATED_PREFIX = "com$google$java$contract$";
+
+  /**
+   * Summary of a class file: its access flags, super types, and the
+   * access flags of its members, keyed by name and descriptor.
+   */
+  protected static class ClassInfo extends ClassVisitor {
+    protected int access;
+    protected String superName;
+    protected String[] interfaces;
+    protected Map<String, Integer> members;
+
+    public ClassInfo() {
+      super(Opcodes.ASM5);
+      members = new HashMap<String, Integer>();
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature,
+                      String superName, String[] interfaces) {
+      this.access = access;
+      this.superName = superName;
+      this.interfaces = interfaces;
+    }
+
+    @Override
+    public FieldVisitor visitField(int access, String name, String desc,
+                                   String signature, Object value) {
+      members.put(name + " " + desc, access);
+      return null;
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String desc,
+                                     String signature, String[] exceptions) {
+      members.put(name + desc, access);
+      return null;
+    }
+  }
+
+  /**
+   * A helper method and the class that declares it.
+   */
+  protected static class Helper {
+    protected String owner;
+    protected MethodNode method;
+
+    @Requires({
+      "owner != null",
+      "method != null"
+    })
+    public Helper(String owner, MethodNode method) {
+      this.owner = owner;
+      this.method = method;
+    }
+  }
+
+  protected ClassLoader loader;
+  protected String className;
+  protected String superName;
+  protected ContractAnalyzer contracts;
+
+  /**
+   * Summaries of the class files read so far; {@code null} values
+   * stand for class files that could not be found.
+   */
+  protected Map<String, ClassInfo> classInfos;
+
+  /**
+   * Contract class files read so far; {@code null} values stand for
+   * classes without contracts.
+   */
+  protected Map<String, ClassNode> contractClasses;
+
+  /**
+   * Constructs a new HelperInliner.
+   *
+   * @param loader the class loader of the instrumented class, or
+   * {@code null} for the system class loader
+   * @param className the name of the instrumented class
+   * @param superName the name of its superclass
+   * @param contracts the contracts of the instrumented class
+   */
+  @Requires({
+    "ClassName.isBinaryName(className)",
+    "superName == null || ClassName.isBinaryName(superName)",
+    "contracts != null"
+  })
+  public HelperInliner(ClassLoader loader, String className,
+                       String superName, ContractAnalyzer contracts) {
+    this.loader = loader;
+    this.className = className;
+    this.superName = superName;
+    this.contracts = contracts;
+    classInfos = new HashMap<String, ClassInfo>();
+    contractClasses = new HashMap<String, ClassNode>();
+  }
+
+  /**
+   * Returns a copy of {@code methodNode}, a contract method of kind
+   * {@code kind}, where the calls to helper methods that can be
+   * inlined have been replaced with their code. The original method
+   * node is left untouched.
+   */
+  @Requires({
+    "kind != null",
+    "!kind.isHelperContract()",
+    "methodNode != null"
+  })
+  @Ensures("result != null")
+  MethodNode inline(ContractKind kind, MethodNode methodNode) {
+    MethodNode copy = new MethodNode(Opcodes.ASM5, methodNode.access,
+                                     methodNode.name, methodNode.desc,
+                                     methodNode.signature,
+                                     methodNode.exceptions
+                                         .toArray(new String[0]));
+    methodNode.accept(copy);
+
+    String prefix = kind.getHelperNameSpace() + "$";
+    AbstractInsnNode next;
+    for (AbstractInsnNode insn = copy.instructions.getFirst();
+         insn != null; insn = next) {
+      next = insn.getNext();
+      if (!(insn instanceof MethodInsnNode)) {
+        continue;
+      }
+      MethodInsnNode call = (MethodInsnNode) insn;
+      if (!call.name.startsWith(prefix)) {
+        continue;
+      }
+
+      Helper helper = findHelper(call);
+      if (helper == null) {
+        continue;
+      }
+      boolean statik = (helper.method.access & Opcodes.ACC_STATIC) != 0;
+      if (statik != (call.getOpcode() == Opcodes.INVOKESTATIC)
+          || !isInlinable(helper)) {
+        DebugUtils.info("instrument", "not flattening "
+                        + helper.owner + "." + call.name);
+        continue;
+      }
+
+      DebugUtils.info("instrument", "flattening " + helper.owner + "."
+                      + call.name + " into " + className + "."
+                      + copy.name);
+      inlineCall(copy, call, helper.method);
+    }
+
+    return copy;
+  }
+
+  /**
+   * Replaces {@code call}, in {@code methodNode}, with the code of
+   * {@code helper}. The arguments of the call are stored into fresh
+   * local variables, which the code of the helper then uses in place
+   * of its parameters; its returns jump past the inlined code, leaving
+   * the result, if any, on the stack.
+   */
+  @Requires({
+    "methodNode != null",
+    "call != null",
+    "helper != null"
+  })
+  protected void inlineCall(MethodNode methodNode, MethodInsnNode call,
+                            MethodNode helper) {
+    int base = methodNode.maxLocals;
+    boolean statik = (helper.access & Opcodes.ACC_STATIC) != 0;
+
+    Map<LabelNode, LabelNode> labels = new HashMap<LabelNode, LabelNode>();
+    for (AbstractInsnNode insn = helper.instructions.getFirst();
+         insn != null; insn = insn.getNext()) {
+      if (insn instanceof LabelNode) {
+        labels.put((LabelNode) insn, new LabelNode());
+      }
+    }
+    LabelNode end = new LabelNode();
+
+    InsnList code = new InsnList();
+    Type[] argTypes = Type.getArgumentTypes(helper.desc);
+    int[] slots = new int[argTypes.length];
+    int slot = statik ? 0 : 1;
+    for (int i = 0; i < argTypes.length; ++i) {
+      slots[i] = slot;
+      slot += argTypes[i].getSize();
+    }
+    for (int i = argTypes.length - 1; i >= 0; --i) {
+      code.add(new VarInsnNode(argTypes[i].getOpcode(Opcodes.ISTORE),
+                               base + slots[i]));
+    }
+    if (!statik) {
+      code.add(new VarInsnNode(Opcodes.ASTORE, base));
+    }
+
+    for (AbstractInsnNode insn = helper.instructions.getFirst();
+         insn != null; insn = insn.getNext()) {
+      switch (insn.getType()) {
+        case AbstractInsnNode.LINE:
+        case AbstractInsnNode.FRAME:
+          continue;
+      }
+      int opcode = insn.getOpcode();
+      if (opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN) {
+        code.add(new JumpInsnNode(Opcodes.GOTO, end));
+        continue;
+      }
+      AbstractInsnNode clone = insn.clone(labels);
+      if (clone instanceof VarInsnNode) {
+        ((VarInsnNode) clone).var += base;
+      } else if (clone instanceof IincInsnNode) {
+        ((IincInsnNode) clone).var += base;
+      }
+      code.add(clone);
+    }
+    code.add(end);
+
+    methodNode.instructions.insert(call, code);
+    methodNode.instructions.remove(call);
+
+    List<TryCatchBlockNode> handlers = new ArrayList<TryCatchBlockNode>();
+    for (TryCatchBlockNode tcb : helper.tryCatchBlocks) {
+      handlers.add(new TryCatchBlockNode(labels.get(tcb.start),
+                                         labels.get(tcb.end),
+                                         labels.get(tcb.handler),
+                                         tcb.type));
+    }
+    /* Inner handlers must come first. */
+    methodNode.tryCatchBlocks.addAll(0, handlers);
+
+    methodNode.maxLocals = Math.max(slot, helper.maxLocals) + base;
+  }
+
+  /**
+   * Returns the helper method invoked by {@code call}, or {@code null}
+   * if it cannot be found.
+   */
+  @Requires("call != null")
+  protected Helper findHelper(MethodInsnNode call) {
+    if (call.owner.endsWith(JavaUtils.HELPER_CLASS_SUFFIX)) {
+      ClassNode classNode = readClassNode(
+          JavaUtils.getClassInputStream(loader, call.owner));
+      MethodNode method = findMethod(classNode, call.name, call.desc);
+      return method == null ? null : new Helper(call.owner, method);
+    }
+
+    if (!call.owner.equals(className)) {
+      return null;
+    }
+
+    for (ClassContractHandle h :
+         contracts.getClassHandles(ContractKind.HELPER)) {
+      MethodNode method = h.getContractMethod();
+      if (method.name.equals(call.name) && method.desc.equals(call.desc)) {
+        return new Helper(className, method);
+      }
+    }
+
+    for (String name = superName; name != null;) {
+      ClassNode classNode = getContractClass(name);
+      MethodNode method = findMethod(classNode, call.name, call.desc);
+      if (method != null) {
+        return new Helper(name, method);
+      }
+      ClassInfo info = getClassInfo(name);
+      name = info == null ? null : info.superName;
+    }
+
+    return null;
+  }
+
+  /**
+   * Returns {@code true} if the code of {@code helper} means the same
+   * and can be verified once copied into the instrumented class.
+   */
+  @Requires("helper != null")
+  protected boolean isInlinable(Helper helper) {
+    for (AbstractInsnNode insn = helper.method.instructions.getFirst();
+         insn != null; insn = insn.getNext()) {
+      switch (insn.getOpcode()) {
+        case Opcodes.JSR:
+        case Opcodes.RET:
+          return false;
+      }
+    }
+
+    if (helper.owner.equals(className)) {
+      return true;
+    }
+
+    String packageName = getPackageName(className);
+    if (!getPackageName(helper.owner).equals(packageName)) {
+      return false;
+    }
+
+    for (AbstractInsnNode insn = helper.method.instructions.getFirst();
+         insn != null; insn = insn.getNext()) {
+      switch (insn.getType()) {
+        case AbstractInsnNode.INVOKE_DYNAMIC_INSN:
+          return false;
+        case AbstractInsnNode.METHOD_INSN: {
+          MethodInsnNode m = (MethodInsnNode) insn;
+          if (m.getOpcode() == Opcodes.INVOKESPECIAL
+              && !m.name.equals("<init>")) {
+            return false;
+          }
+          if (!isAccessible(m.owner, m.name, m.name + m.desc,
+                            m.name.equals("<init>"), packageName)) {
+            return false;
+          }
+          break;
+        }
+        case AbstractInsnNode.FIELD_INSN: {
+          FieldInsnNode f = (FieldInsnNode) insn;
+          if (!isAccessible(f.owner, f.name, f.name + " " + f.desc,
+                            false, packageName)) {
+            return false;
+          }
+          break;
+        }
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Returns {@code true} if the member {@code name} referenced through
+   * {@code owner} can be accessed from any class of package
+   * {@code packageName}. Unless {@code declaredOnly} is {@code true},
+   * the member is looked up in the super types of {@code owner} too.
+   * Synthetic and generated members are never considered accessible,
+   * since they may be renamed or only exist after instrumentation.
+   */
+  @Requires({
+    "owner != null",
+    "name != null",
+    "key != null",
+    "packageName != null"
+  })
+  protected boolean isAccessible(String owner, String name, String key,
+                                 boolean declaredOnly, String packageName) {
+    if (name.startsWith("access$") || name.startsWith("lambda$")
+        || name.startsWith(GENERATED_PREFIX)) {
+      return false;
+    }
+
+    /* Array types only have public members. */
+    if (owner.startsWith("[")) {
+      return true;
+    }
+
+    ClassInfo ownerInfo = getClassInfo(owner);
+    if (ownerInfo == null
+        || ((ownerInfo.access & Opcodes.ACC_PUBLIC) == 0
+            && !getPackageName(owner).equals(packageName))) {
+      return false;
+    }
+
+    List<String> pending = new ArrayList<String>();
+    pending.add(owner);
+    while (!pending.isEmpty()) {
+      String current = pending.remove(0);
+      ClassInfo info = getClassInfo(current);
+      if (info == null) {
+        return false;
+      }
+
+      Integer access = info.members.get(key);
+      if (access != null) {
+        if ((access & Opcodes.ACC_PRIVATE) != 0) {
+          return false;
+        }
+        if ((access & Opcodes.ACC_PUBLIC) == 0) {
+          return getPackageName(current).equals(packageName);
+        }
+        return true;
+      }
+
+      if (!declaredOnly) {
+        if (info.superName != null) {
+          pending.add(info.superName);
+        }
+        if (info.interfaces != null) {
+          for (String itf : info.interfaces) {
+            pending.add(itf);
+          }
+        }
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Returns the summary of the class file of {@code name}, or
+   * {@code null} if it cannot be found or read. Class files with
+   * attributes that the ASM 5 API does not support, such as the nest
+   * attributes of Java 11 and later, including those of the platform
+   * classes, cannot be read; helpers that use their members are not
+   * copied.
+   */
+  @Requires("name != null")
+  protected ClassInfo getClassInfo(String name) {
+    if (classInfos.containsKey(name)) {
+      return classInfos.get(name);
+    }
+
+    ClassInfo info = null;
+    InputStream stream = JavaUtils.getClassInputStream(loader, name);
+    if (stream != null) {
+      try {
+        try {
+          info = new ClassInfo();
+          new ClassReader(stream).accept(info, ClassReader.SKIP_CODE
+                                         | ClassReader.SKIP_DEBUG
+                                         | ClassReader.SKIP_FRAMES);
+        } finally {
+          stream.close();
+        }
+      } catch (IOException e) {
+        info = null;
+      } catch (UnsupportedOperationException e) {
+        info = null;
+      }
+    }
+
+    classInfos.put(name, info);
+    return info;
+  }
+
+  /**
+   * Returns the contract class file of {@code name}, or {@code null}
+   * if there is none.
+   */
+  @Requires("name != null")
+  protected ClassNode getContractClass(String name) {
+    if (contractClasses.containsKey(name)) {
+      return contractClasses.get(name);
+    }
+
+    ClassNode classNode = readClassNode(
+        JavaUtils.getContractClassInputStream(loader, name));
+    contractClasses.put(name, classNode);
+    return classNode;
+  }
+
+  /**
+   * Reads a class from {@code stream}, which is closed afterwards.
+   * Returns {@code null} if the stream is {@code null} or cannot be
+   * read, including if it uses attributes that the ASM 5 API does not
+   * support.
+   */
+  protected static ClassNode readClassNode(InputStream stream) {
+    if (stream == null) {
+      return null;
+    }
+
+    try {
+      try {
+        ClassNode classNode = new ClassNode(Opcodes.ASM5);
+        new ClassReader(stream).accept(classNode, ClassReader.EXPAND_FRAMES);
+        return classNode;
+      } finally {
+        stream.close();
+      }
+    } catch (IOException e) {
+      return null;
+    } catch (UnsupportedOperationException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the method named {@code name} with descriptor
+   * {@code desc} in {@code classNode}, or {@code null} if there is no
+   * such method or {@code classNode} is {@code null}.
+   */
+  protected static MethodNode findMethod(ClassNode classNode,
+                                         String name, String desc) {
+    if (classNode == null) {
+      return null;
+    }
+    for (MethodNode method : classNode.methods) {
+      if (method.name.equals(name) && method.desc.equals(desc)) {
+        return method;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the package part of the internal name {@code name}.
+   */
+  @Requires("name != null")
+  @Ensures("result != null")
+  protected static String getPackageName(String name) {
+    int lastSep = name.lastIndexOf('/');
+    return lastSep == -1 ? "" : name.substring(0, lastSep);
+  }
+}
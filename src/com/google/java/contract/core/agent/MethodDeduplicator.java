@@ -0,0 +1,358 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.agent;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.Requires;
+import com.google.java.contract.core.model.ContractKind;
+import com.google.java.contract.core.util.DebugUtils;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.MultiANewArrayInsnNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds contract and helper methods of a class whose code is
+ * identical to that of another one, so that only one copy needs to
+ * be injected. Classes with many methods bearing the same contracts
+ * (accessors, for example) get many such duplicates.
+ *
+ * <p>Methods are compared on their access flags, descriptor and
+ * instructions; debug information is ignored. A duplicate is replaced
+ * with its canonical method: calls are redirected to the latter, and
+ * the duplicate is either dropped, if private, or reduced to a call
+ * to the canonical method, so that subclasses can still find it by
+ * name. Contract errors raised from shared code report the line
+ * numbers of the canonical method.
+ */
+@Invariant({
+  "className != null",
+  "canonicalNames != null",
+  "renames != null",
+  "aliases != null"
+})
+class MethodDeduplicator {
+  protected String className;
+
+  /**
+   * The names of the canonical methods, keyed by code.
+   */
+  protected Map<String, String> canonicalNames;
+
+  /**
+   * The names of the canonical methods, keyed by name and descriptor
+   * of their duplicates.
+   */
+  protected Map<String, String> renames;
+
+  /**
+   * Method nodes standing for canonical methods, keyed by the
+   * original nodes of their duplicates.
+   */
+  protected Map<MethodNode, MethodNode> aliases;
+
+  /**
+   * Constructs a new MethodDeduplicator for the class
+   * {@code className}, and finds duplicates among its helper methods,
+   * which may be called by any contract method.
+   */
+  @Requires({
+    "className != null",
+    "contracts != null"
+  })
+  public MethodDeduplicator(String className, ContractAnalyzer contracts) {
+    this.className = className;
+    canonicalNames = new HashMap<String, String>();
+    renames = new HashMap<String, String>();
+    aliases = new HashMap<MethodNode, MethodNode>();
+
+    for (ClassContractHandle h :
+         contracts.getClassHandles(ContractKind.HELPER)) {
+      MethodNode methodNode = h.getContractMethod();
+      isDuplicate(methodNode, methodNode);
+    }
+  }
+
+  /**
+   * Returns {@code true} if {@code code}, the code to be injected for
+   * the contract method {@code methodNode}, duplicates that of a
+   * method seen before. Otherwise, {@code code} becomes the canonical
+   * method for its kind of code.
+   */
+  @Requires({
+    "methodNode != null",
+    "code != null",
+    "methodNode.name.equals(code.name)",
+    "methodNode.desc.equals(code.desc)"
+  })
+  boolean isDuplicate(MethodNode methodNode, MethodNode code) {
+    String key = getKey(code);
+    String canonicalName = canonicalNames.get(key);
+    if (canonicalName == null) {
+      canonicalNames.put(key, code.name);
+      return false;
+    }
+    if (canonicalName.equals(code.name)) {
+      return false;
+    }
+
+    DebugUtils.info("instrument", "sharing " + className + "."
+                    + canonicalName + " for " + code.name + code.desc);
+    renames.put(code.name + code.desc, canonicalName);
+    aliases.put(methodNode,
+                new MethodNode(Opcodes.ASM5, methodNode.access, canonicalName,
+                               methodNode.desc, methodNode.signature, null));
+    return true;
+  }
+
+  /**
+   * Returns the method to call in place of {@code methodNode}: its
+   * canonical method if it is a duplicate, or itself otherwise.
+   */
+  @Requires("methodNode != null")
+  @Ensures({
+    "result != null",
+    "result.desc.equals(methodNode.desc)"
+  })
+  MethodNode getSharedMethod(MethodNode methodNode) {
+    MethodNode alias = aliases.get(methodNode);
+    return alias == null ? methodNode : alias;
+  }
+
+  /**
+   * Returns {@code code} with calls to duplicate methods redirected
+   * to their canonical methods. The method node is copied if any call
+   * needs to be changed.
+   */
+  @Requires("code != null")
+  @Ensures("result != null")
+  MethodNode redirectCalls(MethodNode code) {
+    if (renames.isEmpty()) {
+      return code;
+    }
+
+    MethodNode copy = null;
+    for (int i = 0; i < code.instructions.size(); ++i) {
+      AbstractInsnNode insn = code.instructions.get(i);
+      if (!(insn instanceof MethodInsnNode)) {
+        continue;
+      }
+      MethodInsnNode call = (MethodInsnNode) insn;
+      if (!call.owner.equals(className)) {
+        continue;
+      }
+      String newName = renames.get(call.name + call.desc);
+      if (newName == null) {
+        continue;
+      }
+
+      if (copy == null) {
+        copy = new MethodNode(Opcodes.ASM5, code.access, code.name,
+                              code.desc, code.signature,
+                              code.exceptions.toArray(new String[0]));
+        code.accept(copy);
+      }
+      ((MethodInsnNode) copy.instructions.get(i)).name = newName;
+    }
+
+    return copy == null ? code : copy;
+  }
+
+  /**
+   * Returns a string that identifies the code of {@code methodNode}:
+   * two methods with equal keys behave the same.
+   */
+  @Requires("methodNode != null")
+  @Ensures("result != null")
+  protected static String getKey(MethodNode methodNode) {
+    Map<LabelNode, Integer> labels = new HashMap<LabelNode, Integer>();
+    for (TryCatchBlockNode tcb : methodNode.tryCatchBlocks) {
+      getLabelIndex(labels, tcb.start);
+      getLabelIndex(labels, tcb.end);
+      getLabelIndex(labels, tcb.handler);
+    }
+    for (int i = 0; i < methodNode.instructions.size(); ++i) {
+      AbstractInsnNode insn = methodNode.instructions.get(i);
+      if (insn instanceof JumpInsnNode) {
+        getLabelIndex(labels, ((JumpInsnNode) insn).label);
+      } else if (insn instanceof TableSwitchInsnNode) {
+        TableSwitchInsnNode s = (TableSwitchInsnNode) insn;
+        getLabelIndex(labels, s.dflt);
+        for (LabelNode label : s.labels) {
+          getLabelIndex(labels, label);
+        }
+      } else if (insn instanceof LookupSwitchInsnNode) {
+        LookupSwitchInsnNode s = (LookupSwitchInsnNode) insn;
+        getLabelIndex(labels, s.dflt);
+        for (LabelNode label : s.labels) {
+          getLabelIndex(labels, label);
+        }
+      }
+    }
+
+    StringBuilder buffer = new StringBuilder();
+    buffer.append(methodNode.access).append(methodNode.desc);
+    for (TryCatchBlockNode tcb : methodNode.tryCatchBlocks) {
+      buffer.append(";T").append(labels.get(tcb.start))
+          .append(' ').append(labels.get(tcb.end))
+          .append(' ').append(labels.get(tcb.handler))
+          .append(' ').append(tcb.type);
+    }
+
+    for (int i = 0; i < methodNode.instructions.size(); ++i) {
+      AbstractInsnNode insn = methodNode.instructions.get(i);
+      switch (insn.getType()) {
+        case AbstractInsnNode.LINE:
+        case AbstractInsnNode.FRAME:
+          continue;
+        case AbstractInsnNode.LABEL:
+          if (labels.containsKey(insn)) {
+            buffer.append(";L").append(labels.get(insn));
+          }
+          continue;
+      }
+
+      buffer.append(';').append(insn.getOpcode());
+      switch (insn.getType()) {
+        case AbstractInsnNode.INT_INSN:
+          buffer.append(' ').append(((IntInsnNode) insn).operand);
+          break;
+        case AbstractInsnNode.VAR_INSN:
+          buffer.append(' ').append(((VarInsnNode) insn).var);
+          break;
+        case AbstractInsnNode.TYPE_INSN:
+          buffer.append(' ').append(((TypeInsnNode) insn).desc);
+          break;
+        case AbstractInsnNode.FIELD_INSN: {
+          FieldInsnNode f = (FieldInsnNode) insn;
+          buffer.append(' ').append(f.owner).append('.').append(f.name)
+              .append(' ').append(f.desc);
+          break;
+        }
+        case AbstractInsnNode.METHOD_INSN: {
+          MethodInsnNode m = (MethodInsnNode) insn;
+          buffer.append(' ').append(m.owner).append('.').append(m.name)
+              .append(m.desc).append(' ').append(m.itf);
+          break;
+        }
+        case AbstractInsnNode.INVOKE_DYNAMIC_INSN: {
+          InvokeDynamicInsnNode d = (InvokeDynamicInsnNode) insn;
+          buffer.append(' ').append(d.name).append(d.desc)
+              .append(' ').append(d.bsm)
+              .append(' ').append(d.bsmArgs.length);
+          for (Object arg : d.bsmArgs) {
+            appendConstant(buffer, arg);
+          }
+          break;
+        }
+        case AbstractInsnNode.JUMP_INSN:
+          buffer.append(' ').append(labels.get(((JumpInsnNode) insn).label));
+          break;
+        case AbstractInsnNode.LDC_INSN:
+          appendConstant(buffer, ((LdcInsnNode) insn).cst);
+          break;
+        case AbstractInsnNode.IINC_INSN: {
+          IincInsnNode n = (IincInsnNode) insn;
+          buffer.append(' ').append(n.var).append(' ').append(n.incr);
+          break;
+        }
+        case AbstractInsnNode.TABLESWITCH_INSN: {
+          TableSwitchInsnNode s = (TableSwitchInsnNode) insn;
+          buffer.append(' ').append(s.min).append(' ').append(s.max)
+              .append(' ').append(labels.get(s.dflt));
+          appendLabels(buffer, labels, s.labels);
+          break;
+        }
+        case AbstractInsnNode.LOOKUPSWITCH_INSN: {
+          LookupSwitchInsnNode s = (LookupSwitchInsnNode) insn;
+          buffer.append(' ').append(s.keys)
+              .append(' ').append(labels.get(s.dflt));
+          appendLabels(buffer, labels, s.labels);
+          break;
+        }
+        case AbstractInsnNode.MULTIANEWARRAY_INSN: {
+          MultiANewArrayInsnNode n = (MultiANewArrayInsnNode) insn;
+          buffer.append(' ').append(n.desc).append(' ').append(n.dims);
+          break;
+        }
+      }
+    }
+
+    return buffer.toString();
+  }
+
+  @Requires({
+    "labels != null",
+    "label != null"
+  })
+  private static int getLabelIndex(Map<LabelNode, Integer> labels,
+                                   LabelNode label) {
+    Integer index = labels.get(label);
+    if (index == null) {
+      index = labels.size();
+      labels.put(label, index);
+    }
+    return index;
+  }
+
+  /**
+   * Appends {@code cst} to {@code buffer}, prefixed with its type and
+   * the length of its text, so that constants that contain separators,
+   * such as strings, cannot be mistaken for other instructions.
+   */
+  @Requires({
+    "buffer != null",
+    "cst != null"
+  })
+  private static void appendConstant(StringBuilder buffer, Object cst) {
+    String text = cst.toString();
+    buffer.append(' ').append(cst.getClass().getName())
+        .append(' ').append(text.length()).append(':').append(text);
+  }
+
+  @Requires({
+    "buffer != null",
+    "labels != null",
+    "targets != null"
+  })
+  private static void appendLabels(StringBuilder buffer,
+                                   Map<LabelNode, Integer> labels,
+                                   List<LabelNode> targets) {
+    for (LabelNode label : targets) {
+      buffer.append(' ').append(labels.get(label));
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.agent;
+
+import com.google.java.contract.Requires;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.AdviceAdapter;
+import org.objectweb.asm.commons.Method;
+
+/**
+ * A class adapter that times the contract methods it visits. The
+ * time spent in each call is reported to the contract profiler under
+ * a key that identifies the contract: its kind, the class it belongs
+ * to and, for method contracts, the name of the contracted method.
+ */
+class ProfilingClassAdapter extends ClassVisitor {
+  private static final Type CONTRACT_PROFILER_TYPE =
+      Type.getObjectType("com/google/java/contract/core/runtime/ContractProfiler");
+  private static final Type SYSTEM_TYPE =
+      Type.getObjectType("java/lang/System");
+  private static final Method NANO_TIME_METHOD =
+      Method.getMethod("long nanoTime()");
+  private static final Method RECORD_METHOD =
+      Method.getMethod("void record(String, long)");
+
+  protected String key;
+
+  /**
+   * Constructs a new ProfilingClassAdapter.
+   *
+   * @param cv the ClassVisitor this adapter delegates to
+   * @param handle the handle of the contract method to time
+   */
+  @Requires({
+    "cv != null",
+    "handle != null"
+  })
+  public ProfilingClassAdapter(ClassVisitor cv, ContractHandle handle) {
+    super(Opcodes.ASM5, cv);
+    String target = "";
+    if (handle instanceof MethodContractHandle) {
+      target = ((MethodContractHandle) handle).getMethodName();
+    }
+    key = handle.getKind().name() + "\t"
+        + handle.getClassName().replace('/', '.') + "\t" + target;
+  }
+
+  /**
+   * Visits the specified method, adding timing code around its
+   * body.
+   */
+  @Override
+  public MethodVisitor visitMethod(int access, String name, String desc,
+                                   String signature, String[] exceptions) {
+    MethodVisitor mv = cv.visitMethod(access, name, desc, signature,
+                                      exceptions);
+    return new AdviceAdapter(Opcodes.ASM5, mv, access, name, desc) {
+      protected int startLocal;
+
+      @Override
+      protected void onMethodEnter() {
+        startLocal = newLocal(Type.LONG_TYPE);
+        invokeStatic(SYSTEM_TYPE, NANO_TIME_METHOD);
+        storeLocal(startLocal);
+      }
+
+      @Override
+      protected void onMethodExit(int opcode) {
+        push(key);
+        loadLocal(startLocal);
+        invokeStatic(CONTRACT_PROFILER_TYPE, RECORD_METHOD);
+      }
+    };
+  }
+}
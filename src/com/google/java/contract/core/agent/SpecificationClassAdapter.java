@@ -19,14 +19,24 @@
 package com.google.java.contract.core.agent;
 
 import com.google.java.contract.ContractImport;
+import com.google.java.contract.Ensures;
 import com.google.java.contract.Invariant;
+import com.google.java.contract.Requires;
 import com.google.java.contract.core.model.ContractKind;
+import com.google.java.contract.core.runtime.BlacklistManager;
 import com.google.java.contract.core.util.DebugUtils;
+import com.google.java.contract.core.util.JavaUtils;
+import com.google.java.contract.core.util.PatternMap;
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
 import org.objectweb.asm.tree.MethodNode;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -44,20 +54,133 @@ import java.util.List;
   "getParent() != null"
 })
 class SpecificationClassAdapter extends ClassVisitor {
+  /**
+   * Whether contract checking code is moved out of contracted methods
+   * into stub methods. This is controlled by the
+   * {@code com.google.java.contract.stubs} JVM property.
+   */
+  static final boolean STUBS = Boolean.parseBoolean(
+      System.getProperty("com.google.java.contract.stubs", "false"));
+
+  /**
+   * Whether inherited contracts are flattened into the contract
+   * methods of the visited class. This is controlled by the
+   * {@code com.google.java.contract.flatten} JVM property.
+   */
+  static final boolean FLATTEN = Boolean.parseBoolean(
+      System.getProperty("com.google.java.contract.flatten", "false"));
+
+  /**
+   * Whether identical contract and helper methods of the visited
+   * class share a single copy. This is controlled by the
+   * {@code com.google.java.contract.share} JVM property.
+   */
+  static final boolean SHARE = Boolean.parseBoolean(
+      System.getProperty("com.google.java.contract.share", "false"));
+
+  /**
+   * Whether writes to the fields of contracted objects are tracked,
+   * so that invariants are only checked again after the object has
+   * changed. This is controlled by the
+   * {@code com.google.java.contract.dirty} JVM property.
+   */
+  static final boolean DIRTY = Boolean.parseBoolean(
+      System.getProperty("com.google.java.contract.dirty", "false"));
+
+  /**
+   * Whether objects of contracted classes are registered with the
+   * invariant auditor on construction. This is controlled by the
+   * {@code com.google.java.contract.audit} JVM property, which holds
+   * the period of audits.
+   */
+  static final boolean AUDIT =
+      Integer.getInteger("com.google.java.contract.audit", 0) > 0;
+
+  /**
+   * The classes whose postconditions are checked by background
+   * verifier threads, rather than on exit from their methods. This is
+   * controlled by the {@code com.google.java.contract.offload} JVM
+   * property, which holds a comma-separated list of patterns.
+   */
+  static final PatternMap<Boolean> OFFLOAD =
+      getPatterns(System.getProperty("com.google.java.contract.offload"));
+
+  /**
+   * Whether contract methods are timed, for profiling. This is
+   * controlled by the {@code com.google.java.contract.profile} JVM
+   * property, which holds the name of the profile file.
+   */
+  static final boolean PROFILE =
+      System.getProperty("com.google.java.contract.profile") != null;
+
+  protected int version;
   protected String className;
+  protected String superName;
+  protected boolean isInterface;
+  protected boolean isFinal;
   protected ContractAnalyzer contracts;
+  protected ClassLoader loader;
+
+  /**
+   * The inliner of helper methods, if inherited contracts are
+   * flattened.
+   */
+  protected HelperInliner inliner;
+
+  /**
+   * The finder of duplicate methods, if identical methods share a
+   * single copy.
+   */
+  protected MethodDeduplicator deduplicator;
+
+  /**
+   * Whether field writes are tracked in the visited class, and in one
+   * of its superclasses.
+   */
+  protected boolean tracksWrites;
+  protected boolean superTracksWrites;
+
+  /**
+   * The number of contracted methods that have been given stubs.
+   */
+  protected int stubCount;
 
   public SpecificationClassAdapter(ClassVisitor cv,
                                    ContractAnalyzer contracts) {
+    this(cv, contracts, null);
+  }
+
+  /**
+   * Constructs a new SpecificationClassAdapter for a class loaded by
+   * {@code loader}, which is used to find inherited contracts.
+   */
+  public SpecificationClassAdapter(ClassVisitor cv,
+                                   ContractAnalyzer contracts,
+                                   ClassLoader loader) {
     super(Opcodes.ASM5, cv);
     this.contracts = contracts;
+    this.loader = loader;
   }
 
   @Override
   public void visit(int version, int access, String name, String signature,
                     String superName, String[] interfaces) {
     super.visit(version, access, name, signature, superName, interfaces);
+    this.version = version;
     className = name;
+    this.superName = superName;
+    isInterface = (access & Opcodes.ACC_INTERFACE) != 0;
+    isFinal = (access & Opcodes.ACC_FINAL) != 0;
+    if (DIRTY && contracts != null && !isInterface) {
+      tracksWrites = true;
+      superTracksWrites = hasContractedSuperclass(superName);
+    }
+    if (FLATTEN && contracts != null) {
+      inliner = new HelperInliner(loader, name, superName, contracts);
+    }
+    if (SHARE && contracts != null) {
+      deduplicator = new MethodDeduplicator(name, contracts);
+    }
   }
 
   @Override
@@ -86,6 +209,16 @@ class SpecificationClassAdapter extends ClassVisitor {
           contracts.getClassHandles(ContractKind.HELPER);
       for (ClassContractHandle h : helpers) {
         MethodNode methodNode = h.getContractMethod();
+        if (deduplicator != null) {
+          MethodNode sharedNode = deduplicator.getSharedMethod(methodNode);
+          if (sharedNode != methodNode) {
+            if ((methodNode.access & Opcodes.ACC_PRIVATE) == 0) {
+              injectForwardingMethod(methodNode, sharedNode);
+            }
+            h.setInjected(true);
+            continue;
+          }
+        }
         DebugUtils.info("instrument", "helper method "
                         + className + "." + methodNode.name
                         + methodNode.desc);
@@ -98,9 +231,122 @@ class SpecificationClassAdapter extends ClassVisitor {
         h.setInjected(true);
       }
     }
+    if (tracksWrites) {
+      injectDirtyTracking();
+    }
     super.visitEnd();
   }
 
+  /**
+   * Injects the {@link JavaUtils#VALID_FIELD} flag, if the visited
+   * class has invariants, and the {@link JavaUtils#DIRTY_METHOD}
+   * method, which clears it and those of contracted superclasses.
+   */
+  @Requires("tracksWrites")
+  protected void injectDirtyTracking() {
+    Type thisType = Type.getObjectType(className);
+    if (hasValidFlag()) {
+      cv.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_TRANSIENT
+                    | Opcodes.ACC_SYNTHETIC,
+                    JavaUtils.VALID_FIELD, "Z", null, null).visitEnd();
+    }
+
+    MethodVisitor mv = cv.visitMethod(
+        Opcodes.ACC_PROTECTED | Opcodes.ACC_SYNTHETIC,
+        JavaUtils.DIRTY_METHOD, "()V", null, null);
+    GeneratorAdapter code = new GeneratorAdapter(mv, Opcodes.ACC_PROTECTED,
+                                                 JavaUtils.DIRTY_METHOD,
+                                                 "()V");
+    code.visitCode();
+    if (hasValidFlag()) {
+      code.loadThis();
+      code.push(false);
+      code.putField(thisType, JavaUtils.VALID_FIELD, Type.BOOLEAN_TYPE);
+    }
+    if (superTracksWrites) {
+      code.loadThis();
+      code.visitMethodInsn(Opcodes.INVOKESPECIAL, superName,
+                           JavaUtils.DIRTY_METHOD, "()V", false);
+    }
+    code.returnValue();
+    code.endMethod();
+  }
+
+  /**
+   * Returns {@code true} if one of the superclasses of the visited
+   * class, starting with {@code name}, is contracted, and therefore
+   * has a {@link JavaUtils#DIRTY_METHOD} method when it is loaded.
+   */
+  protected boolean hasContractedSuperclass(String name) {
+    BlacklistManager blacklistManager = BlacklistManager.getInstance();
+    while (name != null && !name.equals("java/lang/Object")) {
+      if (blacklistManager.isIgnored(name)) {
+        return false;
+      }
+      InputStream stream = JavaUtils.getContractClassInputStream(loader, name);
+      if (stream != null) {
+        closeQuietly(stream);
+        return true;
+      }
+
+      stream = JavaUtils.getClassInputStream(loader, name);
+      if (stream == null) {
+        return false;
+      }
+      try {
+        try {
+          name = new ClassReader(stream).getSuperName();
+        } finally {
+          stream.close();
+        }
+      } catch (IOException e) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  private static void closeQuietly(InputStream stream) {
+    try {
+      stream.close();
+    } catch (IOException e) {
+      /* Nothing was read. */
+    }
+  }
+
+  /**
+   * Injects {@code methodNode} as a method that calls
+   * {@code sharedNode}, which has the same descriptor and code.
+   */
+  @Requires({
+    "methodNode != null",
+    "sharedNode != null",
+    "methodNode.desc.equals(sharedNode.desc)"
+  })
+  protected void injectForwardingMethod(MethodNode methodNode,
+                                        MethodNode sharedNode) {
+    MethodVisitor mv = cv.visitMethod(
+        methodNode.access | Opcodes.ACC_SYNTHETIC,
+        methodNode.name, methodNode.desc, methodNode.signature,
+        methodNode.exceptions.toArray(new String[0]));
+    GeneratorAdapter code = new GeneratorAdapter(mv, methodNode.access,
+                                                 methodNode.name,
+                                                 methodNode.desc);
+    code.visitCode();
+    if ((methodNode.access & Opcodes.ACC_STATIC) != 0) {
+      code.loadArgs();
+      code.visitMethodInsn(Opcodes.INVOKESTATIC, className,
+                           sharedNode.name, sharedNode.desc, false);
+    } else {
+      code.loadThis();
+      code.loadArgs();
+      code.visitMethodInsn(Opcodes.INVOKESPECIAL, className,
+                           sharedNode.name, sharedNode.desc, false);
+    }
+    code.returnValue();
+    code.endMethod();
+  }
+
   /**
    * Returns the name of the visited class.
    */
@@ -108,6 +354,124 @@ class SpecificationClassAdapter extends ClassVisitor {
     return className;
   }
 
+  /**
+   * Returns {@code true} if the visited class is final, that is, if
+   * the contracts of its objects are exactly its own.
+   */
+  boolean isFinal() {
+    return isFinal;
+  }
+
+  /**
+   * Returns {@code true} if contract checking code should be moved
+   * out of the methods of the visited class. Interfaces are always
+   * instrumented inline, since they cannot hold private methods.
+   */
+  boolean usesStubs() {
+    return STUBS && !isInterface;
+  }
+
+  /**
+   * Returns {@code true} if objects of the visited class are
+   * registered with the invariant auditor.
+   */
+  boolean audits() {
+    return AUDIT && !isInterface;
+  }
+
+  /**
+   * Returns {@code true} if the contract methods injected into the
+   * visited class are timed.
+   */
+  boolean profiles() {
+    return PROFILE;
+  }
+
+  /**
+   * Returns {@code true} if contracted methods of the visited class
+   * may refer to their contract methods through method handle
+   * constants, which asynchronous postconditions require.
+   */
+  boolean usesMethodHandles() {
+    return (version & 0xffff) >= Opcodes.V1_7 && !isInterface;
+  }
+
+  /**
+   * Returns {@code true} if postconditions of the visited class may
+   * be checked by background verifier threads.
+   */
+  boolean offloadsPostconditions() {
+    return Boolean.TRUE.equals(OFFLOAD.get(className)) && usesMethodHandles();
+  }
+
+  /**
+   * Returns a map of the comma-separated patterns in {@code list},
+   * which may be {@code null}, to {@code true}. Invalid patterns are
+   * ignored with a warning.
+   */
+  @Ensures("result != null")
+  private static PatternMap<Boolean> getPatterns(String list) {
+    PatternMap<Boolean> patterns = new PatternMap<Boolean>();
+    if (list == null) {
+      return patterns;
+    }
+    for (String pattern : list.split(",")) {
+      pattern = pattern.trim();
+      if (pattern.isEmpty()) {
+        continue;
+      }
+      if (PatternMap.isValidPattern(pattern)) {
+        patterns.put(pattern, true);
+      } else {
+        DebugUtils.warn("instrument", "invalid pattern: " + pattern);
+      }
+    }
+    return patterns;
+  }
+
+  /**
+   * Returns {@code true} if writes to the fields of instances of the
+   * visited class mark them dirty.
+   */
+  boolean tracksWrites() {
+    return tracksWrites;
+  }
+
+  /**
+   * Returns {@code true} if the visited class records whether its
+   * invariants have been checked since the last write, in the
+   * {@link JavaUtils#VALID_FIELD} flag.
+   */
+  boolean hasValidFlag() {
+    return tracksWrites
+        && contracts.getClassHandle(ContractKind.INVARIANT) != null;
+  }
+
+  /**
+   * Returns a fresh prefix for the names of the stub methods of a
+   * contracted method.
+   */
+  @Ensures("result != null")
+  String newStubPrefix() {
+    return JavaUtils.STUB_MEMBER_PREFIX + stubCount++ + "$";
+  }
+
+  /**
+   * Returns the inliner of helper methods, or {@code null} if
+   * inherited contracts are not flattened.
+   */
+  HelperInliner getInliner() {
+    return inliner;
+  }
+
+  /**
+   * Returns the finder of duplicate methods, or {@code null} if
+   * identical methods are not shared.
+   */
+  MethodDeduplicator getDeduplicator() {
+    return deduplicator;
+  }
+
   /**
    * Returns the class visitor this one delegates to.
    */
@@ -25,14 +25,28 @@ import com.google.java.contract.Invariant;
 import com.google.java.contract.Requires;
 import com.google.java.contract.core.model.ContractKind;
 import com.google.java.contract.core.util.DebugUtils;
+import com.google.java.contract.core.util.JavaUtils;
 import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Handle;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.commons.AdviceAdapter;
+import org.objectweb.asm.commons.GeneratorAdapter;
 import org.objectweb.asm.commons.Method;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
 import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.SourceInterpreter;
+import org.objectweb.asm.tree.analysis.SourceValue;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -43,6 +57,29 @@ import java.util.List;
  * add calls to contract methods, and injects these contract methods,
  * if necessary, into the enclosing class.
  *
+ * <p>If the class adapter {@linkplain SpecificationClassAdapter#usesStubs
+ * uses stubs}, most of the contract checking code is moved out of the
+ * original method, into private static stub methods, which are
+ * injected alongside contract methods. The original method is only
+ * left with a lookup of the contract context, calls to the stubs and,
+ * if it has anything to do on abnormal exit, the exception handler
+ * that brackets its code, so that small methods remain small enough
+ * to be inlined by the JIT compiler.
+ *
+ * <p>If the class adapter {@linkplain SpecificationClassAdapter#tracksWrites
+ * tracks writes}, field stores to instances of the class also mark
+ * them dirty, and invariants are only checked on objects that have
+ * been written to since they were last checked.
+ *
+ * <p>If the class adapter {@linkplain
+ * SpecificationClassAdapter#offloadsPostconditions offloads
+ * postconditions}, those of static methods whose parameters, return
+ * value and old values are immutable are handed over to background
+ * verifier threads instead of being checked on exit. Postconditions
+ * of instance methods may read the state of {@code this}, which may
+ * change before a verifier thread gets to them, and are always
+ * checked on exit.
+ *
  * @author nhat.minh.le@huoc.org (Nhat Minh Lê)
  * @author johannes.rieken@gmail.com (Johannes Rieken)
  */
@@ -69,15 +106,31 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
       Type.getObjectType("java/lang/Class");
   private static final Type EXCEPTION_TYPE =
       Type.getObjectType("java/lang/Exception");
+  private static final Type THROWABLE_TYPE =
+      Type.getObjectType("java/lang/Throwable");
   private static final Type CONTRACT_RUNTIME_TYPE =
       Type.getObjectType("com/google/java/contract/core/runtime/ContractRuntime");
   private static final Type CONTRACT_CONTEXT_TYPE =
       Type.getObjectType("com/google/java/contract/core/runtime/ContractContext");
+  private static final Type INVARIANT_AUDITOR_TYPE =
+      Type.getObjectType("com/google/java/contract/core/runtime/InvariantAuditor");
+  private static final Type ASYNC_CONTRACT_RUNTIME_TYPE =
+      Type.getObjectType("com/google/java/contract/core/runtime/AsyncContractRuntime");
+  private static final Type ELEMENT_CONTRACT_RUNTIME_TYPE =
+      Type.getObjectType("com/google/java/contract/core/runtime/ElementContractRuntime");
+  private static final Type STREAM_CONTRACT_RUNTIME_TYPE =
+      Type.getObjectType("com/google/java/contract/core/runtime/StreamContractRuntime");
+  private static final Type OFFLOADED_CONTRACT_RUNTIME_TYPE =
+      Type.getObjectType("com/google/java/contract/core/runtime/OffloadedContractRuntime");
+  private static final Type OBJECT_TYPE =
+      Type.getObjectType("java/lang/Object");
   private static final Method GET_CLASS_METHOD =
       Method.getMethod("java.lang.Class getClass()");
   private static final Method GET_CONTEXT_METHOD =
       Method.getMethod("com.google.java.contract.core.runtime.ContractContext "
                        + "getContext()");
+  private static final Method IS_ACTIVE_METHOD =
+      Method.getMethod("boolean isActive()");
   private static final Method TRY_ENTER_CONTRACT_METHOD =
       Method.getMethod("boolean tryEnterContract()");
   private static final Method LEAVE_CONTRACT_METHOD =
@@ -86,6 +139,56 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
       Method.getMethod("boolean tryEnter(Object)");
   private static final Method LEAVE_METHOD =
       Method.getMethod("void leave(Object)");
+  private static final Method DEFER_INVARIANTS_METHOD =
+      Method.getMethod("boolean deferInvariants(Object, java.lang.Class, "
+                       + "String)");
+  private static final Method REGISTER_METHOD =
+      Method.getMethod("void register(Object, java.lang.Class, String)");
+  private static final Method CHECK_WHEN_COMPLETE_METHOD =
+      Method.getMethod("Object checkWhenComplete(Object, "
+                       + "java.lang.invoke.MethodHandle, Object[])");
+  private static final Method CHECK_EACH_METHOD =
+      Method.getMethod("Object checkEach(Object, "
+                       + "java.lang.invoke.MethodHandle, Object[])");
+  private static final Method SUBMIT_METHOD =
+      Method.getMethod("void submit(java.lang.invoke.MethodHandle, "
+                       + "Object[])");
+  private static final Method DIRTY_METHOD =
+      new Method(JavaUtils.DIRTY_METHOD, "()V");
+
+  /**
+   * The internal names of the future types whose values asynchronous
+   * postconditions are checked against.
+   */
+  private static final List<String> ASYNC_RESULT_TYPES = Arrays.asList(
+      "java/util/concurrent/CompletableFuture",
+      "java/util/concurrent/CompletionStage");
+
+  /**
+   * The internal names of the types whose elements element-wise
+   * postconditions are checked against.
+   */
+  private static final List<String> ELEMENT_RESULT_TYPES = Arrays.asList(
+      "java/util/stream/Stream",
+      "java/util/Iterator",
+      "java/lang/Iterable");
+
+  /**
+   * The internal names of the immutable types whose values may be
+   * handed over to background verifier threads.
+   */
+  private static final List<String> SNAPSHOT_TYPES = Arrays.asList(
+      "java/lang/String",
+      "java/lang/Boolean",
+      "java/lang/Byte",
+      "java/lang/Character",
+      "java/lang/Short",
+      "java/lang/Integer",
+      "java/lang/Long",
+      "java/lang/Float",
+      "java/lang/Double",
+      "java/math/BigInteger",
+      "java/math/BigDecimal");
 
   /*
    * Used to bracket the entire original method to catch any exception
@@ -105,6 +208,7 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
   protected boolean isStaticInit;
 
   protected int contextLocal;
+  protected int activeLocal;
   protected int checkInvariantsLocal;
   protected List<Integer> oldValueLocals;
   protected List<Integer> signalOldValueLocals;
@@ -115,6 +219,71 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
   protected boolean withPostconditions;
   protected boolean withInvariants;
 
+  protected boolean withStubs;
+  protected boolean withOffloading;
+  protected boolean withWriteTracking;
+  protected boolean withValidFlag;
+
+  /**
+   * Whether the current object is marked as entered for the duration
+   * of calls to this method, so that the invariants it holds are not
+   * checked by the methods it calls meanwhile.
+   */
+  protected boolean withEntryTracking;
+
+  /**
+   * Whether the original code is wrapped in an exception handler, to
+   * check exceptional postconditions and invariants, and to unmark
+   * the current object, on abnormal exit.
+   */
+  protected boolean withUnwinding;
+
+  /**
+   * Whether the {@code this} pointer has been initialized, that is,
+   * whether the superclass constructor has been called, if this
+   * method is a constructor.
+   */
+  protected boolean thisInitialized;
+
+  /**
+   * The class of the last constructor called on an uninitialized
+   * object, if this method is a constructor. Once {@code this} has
+   * been initialized, this is the class of the constructor that
+   * initialized it: this class itself if this constructor delegates
+   * to another one with {@code this(...)}.
+   */
+  protected String initOwner;
+
+  protected String stubPrefix;
+  protected Method exitStubMethod;
+
+  /**
+   * A stub method being generated. Stub methods take, in this order:
+   *
+   * <ul>
+   * <li>the return value or exception object of the original method,
+   * if any;
+   * <li>the {@code this} pointer, if any;
+   * <li>the contract context and the invariant flag of the original
+   * method;
+   * <li>the original method's parameters;
+   * <li>and old values, if any.
+   * </ul>
+   */
+  protected static class Stub {
+    protected Method method;
+    protected GeneratorAdapter code;
+    protected int extraArg;
+    protected int thisArg;
+    protected int contextArg;
+    protected int activeArg;
+    protected int checkInvariantsArg;
+    protected int firstArg;
+    protected int argCount;
+    protected int oldArg;
+    protected int oldCount;
+  }
+
   /**
    * Constructs a new SpecificationClassAdapter.
    *
@@ -150,6 +319,7 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
     isStaticInit = methodName.endsWith("<clinit>");
 
     contextLocal = -1;
+    activeLocal = -1;
     checkInvariantsLocal = -1;
     oldValueLocals = new ArrayList<Integer>();
     signalOldValueLocals = new ArrayList<Integer>();
@@ -160,6 +330,168 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
     withPreconditions = am.hasPreconditionsEnabled(className);
     withPostconditions = am.hasPostconditionsEnabled(className);
     withInvariants = am.hasInvariantsEnabled(className);
+    withStubs = ca.usesStubs();
+    withOffloading = ca.offloadsPostconditions() && statik
+        && !isStaticInit && hasSnapshotTypes(methodDesc)
+        && hasSnapshotOldValues();
+    withWriteTracking = ca.tracksWrites();
+    withValidFlag = ca.hasValidFlag() && !statik;
+    withEntryTracking = !statik && (!ca.isFinal() || hasInvariants());
+    withUnwinding = withEntryTracking || hasSignalPostconditions();
+    thisInitialized = !isConstructor;
+    stubPrefix = null;
+    exitStubMethod = null;
+  }
+
+  /**
+   * Returns {@code true} if the class this method belongs to has
+   * invariants, its own or inherited.
+   */
+  protected boolean hasInvariants() {
+    return contracts.getClassHandle(ContractKind.INVARIANT) != null
+        || contracts.getClassHandle(ContractKind.CONSTANT_INVARIANT) != null;
+  }
+
+  /**
+   * Returns {@code true} if this method has exceptional
+   * postconditions to check.
+   */
+  protected boolean hasSignalPostconditions() {
+    if (!withPostconditions) {
+      return false;
+    }
+    int oldCount = contracts.getMethodHandles(ContractKind.SIGNAL_OLD,
+                                              methodName, methodDesc, 0)
+        .size();
+    return contracts.getMethodHandle(ContractKind.SIGNAL, methodName,
+                                     methodDesc, 1 + oldCount) != null;
+  }
+
+  /**
+   * Returns {@code true} if the parameters and return value of a
+   * method with descriptor {@code desc} can be handed over to another
+   * thread as is.
+   */
+  @Requires("desc != null")
+  protected static boolean hasSnapshotTypes(String desc) {
+    for (Type type : Type.getArgumentTypes(desc)) {
+      if (!isSnapshotType(type)) {
+        return false;
+      }
+    }
+    return isSnapshotType(Type.getReturnType(desc));
+  }
+
+  /**
+   * Returns {@code true} if the old values of this method can be
+   * handed over to another thread as is. Old value contract methods
+   * box their values to {@code Object}; the static type of each old
+   * value expression is recovered from the instructions that produce
+   * the returned value, in the contract method or the helper method
+   * it delegates to.
+   */
+  protected boolean hasSnapshotOldValues() {
+    for (MethodContractHandle h :
+         contracts.getMethodHandles(ContractKind.OLD, methodName,
+                                    methodDesc, 0)) {
+      if (!returnsSnapshot(h.getContractMethod(), 1)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns {@code true} if all the values returned by
+   * {@code method}, of the current class, are of snapshot types.
+   * Calls to helper methods are followed {@code depth} levels deep.
+   */
+  @Requires({
+    "method != null",
+    "depth >= 0"
+  })
+  protected boolean returnsSnapshot(MethodNode method, int depth) {
+    Frame<SourceValue>[] frames;
+    try {
+      frames = new Analyzer<SourceValue>(new SourceInterpreter())
+          .analyze(className, method);
+    } catch (AnalyzerException e) {
+      return false;
+    }
+    AbstractInsnNode[] insns = method.instructions.toArray();
+    for (int i = 0; i < insns.length; ++i) {
+      if (insns[i].getOpcode() != ARETURN || frames[i] == null) {
+        continue;
+      }
+      Frame<SourceValue> frame = frames[i];
+      SourceValue value = frame.getStack(frame.getStackSize() - 1);
+      for (AbstractInsnNode producer : value.insns) {
+        if (!isSnapshotProducer(method, producer, depth)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns {@code true} if the value pushed by {@code insn}, an
+   * instruction of {@code method}, is of a snapshot type.
+   */
+  @Requires({
+    "method != null",
+    "insn != null",
+    "depth >= 0"
+  })
+  protected boolean isSnapshotProducer(MethodNode method,
+                                       AbstractInsnNode insn, int depth) {
+    switch (insn.getOpcode()) {
+      case ACONST_NULL:
+        return true;
+      case LDC:
+        Object cst = ((LdcInsnNode) insn).cst;
+        return !(cst instanceof Type) && !(cst instanceof Handle);
+      case GETFIELD:
+      case GETSTATIC:
+        return isSnapshotType(Type.getType(((FieldInsnNode) insn).desc));
+      case CHECKCAST:
+        return isSnapshotType(
+            Type.getObjectType(((TypeInsnNode) insn).desc));
+      case ALOAD: {
+        int var = ((VarInsnNode) insn).var;
+        int index = (method.access & ACC_STATIC) != 0 ? 0 : 1;
+        for (Type type : Type.getArgumentTypes(method.desc)) {
+          if (index == var) {
+            return isSnapshotType(type);
+          }
+          index += type.getSize();
+        }
+        return false;
+      }
+      case INVOKEVIRTUAL:
+      case INVOKESPECIAL:
+      case INVOKESTATIC:
+      case INVOKEINTERFACE: {
+        MethodInsnNode call = (MethodInsnNode) insn;
+        Type returnType = Type.getReturnType(call.desc);
+        if (isSnapshotType(returnType)) {
+          return true;
+        }
+        if (depth == 0 || !call.owner.equals(className)) {
+          return false;
+        }
+        for (ClassContractHandle h :
+             contracts.getClassHandles(ContractKind.HELPER)) {
+          MethodNode helper = h.getContractMethod();
+          if (helper.name.equals(call.name) && helper.desc.equals(call.desc)) {
+            return returnsSnapshot(helper, depth - 1);
+          }
+        }
+        return false;
+      }
+      default:
+        return false;
+    }
   }
 
   /**
@@ -193,12 +525,53 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
     super.visitLocalVariable(name, desc, signature, start, end, index);
   }
 
+  /**
+   * Marks the target object dirty before a field store to an instance
+   * of the enclosing class, if writes are tracked. Stores to the
+   * object under construction, before the superclass constructor has
+   * been called, are not tracked: its invariants have not been
+   * checked yet.
+   */
+  @Override
+  public void visitFieldInsn(int opcode, String owner, String name,
+                             String desc) {
+    if (withWriteTracking && thisInitialized && opcode == PUTFIELD
+        && owner.equals(className) && !name.equals(JavaUtils.VALID_FIELD)) {
+      /* Copy the target object over the value to store. */
+      if (Type.getType(desc).getSize() == 2) {
+        dup2X1();
+        pop2();
+        dupX2();
+      } else {
+        dup2();
+        pop();
+      }
+      invokeVirtual(thisType, DIRTY_METHOD);
+    }
+    super.visitFieldInsn(opcode, owner, name, desc);
+  }
+
+  /**
+   * Records the class of constructors called before {@code this} is
+   * initialized.
+   */
+  @Override
+  public void visitMethodInsn(int opcode, String owner, String name,
+                              String desc, boolean itf) {
+    if (!thisInitialized && opcode == INVOKESPECIAL
+        && name.equals("<init>")) {
+      initOwner = owner;
+    }
+    super.visitMethodInsn(opcode, owner, name, desc, itf);
+  }
+
   /**
    * Advises the method by injecting invariants, precondition
    * assertions, and old value computations, before the original code.
    */
   @Override
   protected void onMethodEnter() {
+    thisInitialized = true;
     if (withPreconditions || withPostconditions || withInvariants) {
       enterContractedMethod();
 
@@ -209,6 +582,17 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
 
       mark(methodStart);
 
+      if (withStubs) {
+        invokeEntryStub();
+        if (!oldValueLocals.isEmpty() || !signalOldValueLocals.isEmpty()) {
+          Label skip = enterBusySection();
+          invokeOldValues(ContractKind.OLD, oldValueLocals);
+          invokeOldValues(ContractKind.SIGNAL_OLD, signalOldValueLocals);
+          leaveBusySection(skip);
+        }
+        return;
+      }
+
       Label skip = enterBusySection();
 
       if (withInvariants && !statik && !isConstructor && !isStaticInit) {
@@ -234,8 +618,27 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
    */
   @Override
   protected void onMethodExit(int opcode) {
+    if (isConstructor && opcode != ATHROW && classAdapter.audits()
+        && !className.equals(initOwner)) {
+      registerForAudit();
+    }
     if ((withPreconditions || withPostconditions || withInvariants)
         && opcode != ATHROW) {
+      if (withStubs) {
+        Type returnType = Type.getReturnType(methodDesc);
+        if (returnType.getSize() == 2) {
+          dup2();
+        } else if (returnType.getSize() == 1) {
+          dup();
+        }
+        invokeExitStub(returnType);
+        if (withPostconditions) {
+          invokeAsyncPostconditions();
+          invokeElementPostconditions();
+        }
+        return;
+      }
+
       if (withPostconditions || withInvariants) {
         Label skip = enterBusySection();
 
@@ -251,8 +654,12 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
             returnIndex = newLocal(returnType);
             storeLocal(returnIndex);
           }
-          invokeCommonPostconditions(ContractKind.POST, oldValueLocals,
-                                     returnIndex);
+          if (withOffloading) {
+            offloadPostconditions(returnIndex);
+          } else {
+            invokeCommonPostconditions(ContractKind.POST, oldValueLocals,
+                                       returnIndex);
+          }
         }
 
         if (withInvariants && !statik) {
@@ -261,6 +668,10 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
 
         leaveBusySection(skip);
       }
+      if (withPostconditions) {
+        invokeAsyncPostconditions();
+        invokeElementPostconditions();
+      }
       leaveContractedMethod();
     }
   }
@@ -270,44 +681,64 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
    * invariants after the original code. This code only gets executed
    * if an exception has been thrown (otherwise, a {@code return}
    * instruction would have ended execution of the method already).
+   *
+   * <p>Methods with nothing to do on abnormal exit, which have no
+   * exceptional postconditions and do not mark their object as
+   * entered, are left without the exception handler, which would
+   * otherwise cover all of their original code.
    */
   @Override
   public void visitMaxs(int maxStack, int maxLocals) {
-    if (withPreconditions || withPostconditions || withInvariants) {
+    if ((withPreconditions || withPostconditions || withInvariants)
+        && withUnwinding) {
       mark(methodEnd);
       catchException(methodStart, methodEnd, null);
 
-      if (withPostconditions) {
-        Label skipEx = new Label();
+      if (withStubs) {
         dup();
-        instanceOf(EXCEPTION_TYPE);
-        ifZCmp(EQ, skipEx);
-
-        Label skip = enterBusySection();
-        int throwIndex = newLocal(EXCEPTION_TYPE);
-        checkCast(EXCEPTION_TYPE);
-        storeLocal(throwIndex);
+        invokeSignalStub();
+      } else {
+        invokeSignalPostconditions();
+      }
+      throwException();
+    }
+    super.visitMaxs(maxStack, maxLocals);
+  }
 
-        invokeCommonPostconditions(ContractKind.SIGNAL, signalOldValueLocals,
-                                   throwIndex);
-        if (withInvariants && !statik) {
-          invokeInvariants();
-        }
+  /**
+   * Injects exceptional postconditions and invariants, and cancels
+   * busy state of the current object. The exception object is on the
+   * stack.
+   */
+  protected void invokeSignalPostconditions() {
+    if (withPostconditions) {
+      Label skipEx = new Label();
+      dup();
+      instanceOf(EXCEPTION_TYPE);
+      ifZCmp(EQ, skipEx);
 
-        loadLocal(throwIndex);
-        leaveBusySection(skip);
+      Label skip = enterBusySection();
+      int throwIndex = newLocal(EXCEPTION_TYPE);
+      checkCast(EXCEPTION_TYPE);
+      storeLocal(throwIndex);
 
-        mark(skipEx);
+      invokeCommonPostconditions(ContractKind.SIGNAL, signalOldValueLocals,
+                                 throwIndex);
+      if (withInvariants && !statik) {
+        invokeInvariants();
       }
 
-      /*
-       * The exception to throw is on the stack and
-       * leaveContractedMethod() does not alter that fact.
-       */
-      leaveContractedMethod();
-      throwException();
+      loadLocal(throwIndex);
+      leaveBusySection(skip);
+
+      mark(skipEx);
     }
-    super.visitMaxs(maxStack, maxLocals);
+
+    /*
+     * The exception to throw is on the stack and
+     * leaveContractedMethod() does not alter that fact.
+     */
+    leaveContractedMethod();
   }
 
   /**
@@ -382,14 +813,24 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
   /**
    * Injects calls to invariant contract methods. Invariant contract
    * methods get called with the {@code this} pointer, if any.
+   * Constant invariants are only checked on exit from constructors.
+   * If writes are tracked, invariants are skipped on objects that
+   * have not been written to since they were last checked. Outside
+   * constructors, invariants are deferred while a batch is open on
+   * the contract context.
    */
   protected void invokeInvariants() {
     ClassContractHandle h = contracts.getClassHandle(ContractKind.INVARIANT);
-    if (h == null) {
+    ClassContractHandle ch = null;
+    if (isConstructor) {
+      ch = contracts.getClassHandle(ContractKind.CONSTANT_INVARIANT);
+    }
+    if (h == null && ch == null) {
       return;
     }
 
-    MethodNode contractMethod = injectContractMethod(h);
+    MethodNode contractMethod = h == null ? null : injectContractMethod(h);
+    MethodNode constantMethod = ch == null ? null : injectContractMethod(ch);
 
     Label skipInvariants = new Label();
     if (isConstructor) {
@@ -400,16 +841,69 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
     } else {
       loadLocal(checkInvariantsLocal);
       ifZCmp(EQ, skipInvariants);
+      if (withValidFlag) {
+        loadThis();
+        getField(thisType, JavaUtils.VALID_FIELD, Type.BOOLEAN_TYPE);
+        ifZCmp(NE, skipInvariants);
+      }
+      if (contractMethod != null && !statik) {
+        loadLocal(contextLocal);
+        loadThis();
+        loadThisClass();
+        push(contractMethod.name);
+        invokeVirtual(CONTRACT_CONTEXT_TYPE, DEFER_INVARIANTS_METHOD);
+        ifZCmp(NE, skipInvariants);
+      }
     }
 
-    if (!statik) {
+    if (constantMethod != null) {
       loadThis();
+      invokeContractMethod(constantMethod);
+    }
+    if (contractMethod != null) {
+      if (!statik) {
+        loadThis();
+      }
+      invokeContractMethod(contractMethod);
+      if (withValidFlag) {
+        loadThis();
+        push(true);
+        putField(thisType, JavaUtils.VALID_FIELD, Type.BOOLEAN_TYPE);
+      }
     }
-    invokeContractMethod(contractMethod);
 
     mark(skipInvariants);
   }
 
+  /**
+   * Injects a call registering the object under construction with
+   * the invariant auditor, if the class has invariants. The invariant
+   * contract method is injected even if invariants are disabled. As
+   * with invariant checks in constructors, only the constructor of
+   * the class of the object registers it, so that each object is
+   * registered once, with the invariants of its most derived class;
+   * constructors that delegate to another one of the same class are
+   * not advised.
+   */
+  protected void registerForAudit() {
+    ClassContractHandle h = contracts.getClassHandle(ContractKind.INVARIANT);
+    if (h == null) {
+      return;
+    }
+
+    MethodNode contractMethod = injectContractMethod(h);
+    Label skip = new Label();
+    loadThis();
+    invokeVirtual(thisType, GET_CLASS_METHOD);
+    loadThisClass();
+    ifCmp(CLASS_TYPE, NE, skip);
+    loadThis();
+    loadThisClass();
+    push(contractMethod.name);
+    invokeStatic(INVARIANT_AUDITOR_TYPE, REGISTER_METHOD);
+    mark(skip);
+  }
+
   /**
    * Injects calls to precondition contract methods. Precondition
    * contract methods get called with, in this order:
@@ -485,6 +979,281 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
     invokeContractMethod(contractMethod);
   }
 
+  /**
+   * Injects a call to the asynchronous postcondition contract method,
+   * if any. The return value of the original method, a future, must
+   * be on the stack; it is replaced with a dependent future that
+   * completes once the postconditions have been checked against the
+   * completed original future. Asynchronous postcondition contract
+   * methods get called with, in this order:
+   *
+   * <ul>
+   * <li>the {@code this} pointer, if any;
+   * <li>the original method's parameters;
+   * <li>and the return value of the original method.
+   * </ul>
+   *
+   * <p>If the original method returns a subtype of the future
+   * interfaces, which cannot be replaced, or the class file predates
+   * method handle constants, the postconditions are checked on
+   * return, as synchronous ones.
+   */
+  protected void invokeAsyncPostconditions() {
+    Type returnType = Type.getReturnType(methodDesc);
+    if (returnType.getSort() != Type.OBJECT) {
+      return;
+    }
+    MethodContractHandle h =
+        contracts.getMethodHandle(ContractKind.ASYNC_POST, methodName,
+                                  methodDesc, 1);
+    if (h == null) {
+      return;
+    }
+
+    MethodNode contractMethod = injectContractMethod(h);
+    int returnIndex = newLocal(returnType);
+    storeLocal(returnIndex);
+
+    if (classAdapter.usesMethodHandles()
+        && ASYNC_RESULT_TYPES.contains(returnType.getInternalName())) {
+      wrapReturnValue(contractMethod, returnIndex,
+                      ASYNC_CONTRACT_RUNTIME_TYPE, CHECK_WHEN_COMPLETE_METHOD);
+    } else {
+      Label skip = enterBusySection();
+      if (!statik) {
+        loadThis();
+      }
+      loadArgs();
+      loadLocal(returnIndex);
+      invokeContractMethod(contractMethod);
+      leaveBusySection(skip);
+    }
+
+    loadLocal(returnIndex);
+  }
+
+  /**
+   * Injects a call to the element-wise postcondition contract method,
+   * if any. The return value of the original method, a stream, an
+   * iterator or an iterable, must be on the stack; it is replaced
+   * with a view that checks the postconditions on each element as it
+   * is consumed. Element-wise postcondition contract methods get
+   * called with, in this order:
+   *
+   * <ul>
+   * <li>the {@code this} pointer, if any;
+   * <li>the original method's parameters;
+   * <li>and the element.
+   * </ul>
+   *
+   * <p>If the original method returns a subtype of these interfaces,
+   * which cannot be replaced, or the class file predates method
+   * handle constants, the postconditions are not checked.
+   */
+  protected void invokeElementPostconditions() {
+    Type returnType = Type.getReturnType(methodDesc);
+    if (returnType.getSort() != Type.OBJECT) {
+      return;
+    }
+    MethodContractHandle h =
+        contracts.getMethodHandle(ContractKind.ELEMENT_POST, methodName,
+                                  methodDesc, 1);
+    if (h == null) {
+      return;
+    }
+    Type runtimeType = null;
+    if (classAdapter.usesMethodHandles()) {
+      if (returnType.getInternalName().equals("java/util/stream/Stream")) {
+        runtimeType = STREAM_CONTRACT_RUNTIME_TYPE;
+      } else if (ELEMENT_RESULT_TYPES.contains(
+                     returnType.getInternalName())) {
+        runtimeType = ELEMENT_CONTRACT_RUNTIME_TYPE;
+      }
+    }
+    if (runtimeType == null) {
+      DebugUtils.warn("instrument", "element-wise postconditions of "
+                      + className + "." + methodName + methodDesc
+                      + " cannot be checked");
+      return;
+    }
+
+    MethodNode contractMethod = injectContractMethod(h);
+    int returnIndex = newLocal(returnType);
+    storeLocal(returnIndex);
+    wrapReturnValue(contractMethod, returnIndex, runtimeType,
+                    CHECK_EACH_METHOD);
+    loadLocal(returnIndex);
+  }
+
+  /**
+   * Replaces the return value of the original method, held in the
+   * local variable {@code returnIndex}, with the value returned by
+   * the runtime method {@code wrapMethod} of {@code runtimeType}.
+   * The latter is passed the return value, a method handle to
+   * {@code contractMethod}, and an array of the arguments to call it
+   * with, whose last one is the return value. The return value is
+   * left alone within contract code.
+   */
+  @Requires({
+    "contractMethod != null",
+    "returnIndex >= 0",
+    "runtimeType != null",
+    "wrapMethod != null"
+  })
+  protected void wrapReturnValue(MethodNode contractMethod, int returnIndex,
+                                 Type runtimeType, Method wrapMethod) {
+    /*
+     * Checks enter their own busy sections, possibly right away, in
+     * which case this one must be left first.
+     */
+    Label skip = enterBusySection();
+    loadLocal(contextLocal);
+    invokeVirtual(CONTRACT_CONTEXT_TYPE, LEAVE_CONTRACT_METHOD);
+
+    loadLocal(returnIndex);
+    pushContractHandle(this, contractMethod);
+
+    Type[] argumentTypes = Type.getArgumentTypes(methodDesc);
+    int first = statik ? 0 : 1;
+    push(first + argumentTypes.length + 1);
+    newArray(OBJECT_TYPE);
+    if (!statik) {
+      beginArrayElement(this, 0);
+      loadThis();
+      endArrayElement(this, thisType);
+    }
+    for (int i = 0; i < argumentTypes.length; ++i) {
+      beginArrayElement(this, first + i);
+      loadArg(i);
+      endArrayElement(this, argumentTypes[i]);
+    }
+    beginArrayElement(this, first + argumentTypes.length);
+    loadLocal(returnIndex);
+    endArrayElement(this, OBJECT_TYPE);
+
+    invokeStatic(runtimeType, wrapMethod);
+    checkCast(Type.getReturnType(methodDesc));
+    storeLocal(returnIndex);
+    mark(skip);
+  }
+
+  /**
+   * Injects code to hand postconditions over to the background
+   * verifier, in place of a call to the postcondition contract
+   * method. The verifier gets a method handle to the contract method,
+   * and an array of the arguments it would have been called with.
+   *
+   * @param returnIndex the index of the local variable that holds the
+   * return value of the method, or -1 if none
+   * @see #invokeCommonPostconditions(ContractKind,List,int)
+   */
+  @Requires({
+    "statik",
+    "returnIndex >= -1"
+  })
+  protected void offloadPostconditions(int returnIndex) {
+    MethodContractHandle h =
+        contracts.getMethodHandle(ContractKind.POST, methodName, methodDesc,
+                                  getPostDescOffset(oldValueLocals,
+                                                    returnIndex));
+    if (h == null) {
+      return;
+    }
+
+    MethodNode contractMethod = injectContractMethod(h);
+    pushContractHandle(this, contractMethod);
+
+    Type[] argumentTypes = Type.getArgumentTypes(methodDesc);
+    int count = argumentTypes.length + oldValueLocals.size();
+    if (returnIndex != -1) {
+      ++count;
+    }
+    push(count);
+    newArray(OBJECT_TYPE);
+    int index = 0;
+    for (int i = 0; i < argumentTypes.length; ++i) {
+      beginArrayElement(this, index++);
+      loadArg(i);
+      endArrayElement(this, argumentTypes[i]);
+    }
+    if (returnIndex != -1) {
+      beginArrayElement(this, index++);
+      loadLocal(returnIndex);
+      endArrayElement(this, getLocalType(returnIndex));
+    }
+    for (Integer oldIndex : oldValueLocals) {
+      beginArrayElement(this, index++);
+      loadLocal(oldIndex);
+      endArrayElement(this, getLocalType(oldIndex));
+    }
+
+    invokeStatic(OFFLOADED_CONTRACT_RUNTIME_TYPE, SUBMIT_METHOD);
+  }
+
+  /**
+   * Pushes a method handle to {@code contractMethod}, of the current
+   * class, with {@code code}.
+   */
+  @Requires({
+    "code != null",
+    "contractMethod != null"
+  })
+  protected void pushContractHandle(GeneratorAdapter code,
+                                    MethodNode contractMethod) {
+    code.push(new Handle(statik ? H_INVOKESTATIC : H_INVOKESPECIAL,
+                         className, contractMethod.name, contractMethod.desc,
+                         false));
+  }
+
+  /**
+   * Prepares to store a value at {@code index} in the array of
+   * objects on the stack, which is left there. The value is to be
+   * loaded next, followed by a call to
+   * {@link #endArrayElement(GeneratorAdapter,Type)}.
+   */
+  @Requires({
+    "code != null",
+    "index >= 0"
+  })
+  protected static void beginArrayElement(GeneratorAdapter code,
+                                          int index) {
+    code.dup();
+    code.push(index);
+  }
+
+  /**
+   * Stores the value of type {@code type} on the stack, boxed if
+   * needed, in the array of objects under it.
+   *
+   * @see #beginArrayElement(GeneratorAdapter,int)
+   */
+  @Requires({
+    "code != null",
+    "type != null"
+  })
+  protected static void endArrayElement(GeneratorAdapter code, Type type) {
+    code.box(type);
+    code.arrayStore(OBJECT_TYPE);
+  }
+
+  /**
+   * Returns {@code true} if the values of type {@code type} can be
+   * handed over to another thread as is, without risk of being
+   * modified meanwhile.
+   */
+  @Requires("type != null")
+  protected static boolean isSnapshotType(Type type) {
+    switch (type.getSort()) {
+      case Type.OBJECT:
+        return SNAPSHOT_TYPES.contains(type.getInternalName());
+      case Type.ARRAY:
+      case Type.METHOD:
+        return false;
+      default:
+        return true;
+    }
+  }
+
   /**
    * Computes the method descriptor offset of a postcondition (or an
    * exceptional postcondition). The method descriptor offset is the
@@ -523,6 +1292,7 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
   @Ensures("result != null")
   protected MethodNode injectContractMethod(ContractHandle handle) {
     MethodNode methodNode = handle.getContractMethod();
+    MethodDeduplicator deduplicator = classAdapter.getDeduplicator();
 
     if (!handle.isInjected()) {
       DebugUtils.info("instrument", "contract method "
@@ -530,13 +1300,30 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
                       + methodNode.desc);
       ClassVisitor cv = classAdapter.getParent();
       List<Long> lineNumbers = handle.getLineNumbers();
+      if (classAdapter.profiles() && !handle.getKind().isHelperContract()) {
+        cv = new ProfilingClassAdapter(cv, handle);
+      }
       if (lineNumbers != null) {
         cv = new LineNumberingClassAdapter(cv, lineNumbers);
       }
-      methodNode.accept(new ContractFixingClassAdapter(cv));
+      MethodNode injectedNode = methodNode;
+      HelperInliner inliner = classAdapter.getInliner();
+      if (inliner != null && !handle.getKind().isHelperContract()) {
+        injectedNode = inliner.inline(handle.getKind(), methodNode);
+      }
+      if (deduplicator != null) {
+        injectedNode = deduplicator.redirectCalls(injectedNode);
+      }
+      if (deduplicator == null
+          || !deduplicator.isDuplicate(methodNode, injectedNode)) {
+        injectedNode.accept(new ContractFixingClassAdapter(cv));
+      }
       handle.setInjected(true);
     }
 
+    if (deduplicator != null) {
+      return deduplicator.getSharedMethod(methodNode);
+    }
     return methodNode;
   }
 
@@ -551,17 +1338,466 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
     }
   }
 
+  /**
+   * Injects a call to a new stub method, named after {@code kind},
+   * and returns the stub, whose code is to be generated by the
+   * caller. The arguments of the stub, but the first one if
+   * {@code extraType} is not {@code null}, are loaded by this method;
+   * the first one must be on the stack already.
+   *
+   * @param kind the kind of stub, which ends its name
+   * @param extraType the type of the extra argument, or {@code null}
+   * if none
+   * @param oldLocals a list of old value variables to pass to the stub
+   */
+  @Requires({
+    "kind != null",
+    "oldLocals != null",
+    "contextLocal >= 0",
+    "activeLocal >= 0",
+    "checkInvariantsLocal >= 0"
+  })
+  @Ensures("result != null")
+  protected Stub invokeStub(String kind, Type extraType,
+                            List<Integer> oldLocals) {
+    if (stubPrefix == null) {
+      stubPrefix = classAdapter.newStubPrefix();
+    }
+
+    Stub stub = new Stub();
+    List<Type> types = new ArrayList<Type>();
+    stub.extraArg = -1;
+    if (extraType != null) {
+      stub.extraArg = types.size();
+      types.add(extraType);
+    }
+    stub.thisArg = -1;
+    if (!statik) {
+      stub.thisArg = types.size();
+      types.add(thisType);
+    }
+    stub.contextArg = types.size();
+    types.add(CONTRACT_CONTEXT_TYPE);
+    stub.activeArg = types.size();
+    types.add(Type.BOOLEAN_TYPE);
+    stub.checkInvariantsArg = types.size();
+    types.add(Type.BOOLEAN_TYPE);
+    Type[] argumentTypes = Type.getArgumentTypes(methodDesc);
+    stub.firstArg = types.size();
+    stub.argCount = argumentTypes.length;
+    types.addAll(Arrays.asList(argumentTypes));
+    stub.oldArg = types.size();
+    stub.oldCount = oldLocals.size();
+    for (Integer oldIndex : oldLocals) {
+      types.add(getLocalType(oldIndex));
+    }
+
+    Method method = new Method(stubPrefix + kind, Type.VOID_TYPE,
+                               types.toArray(new Type[types.size()]));
+    callStub(method, oldLocals);
+
+    DebugUtils.info("instrument", "stub method "
+                    + className + "." + method.getName()
+                    + method.getDescriptor());
+    stub.code = new GeneratorAdapter(ACC_PRIVATE | ACC_STATIC | ACC_SYNTHETIC,
+                                     method, null, null,
+                                     classAdapter.getParent());
+    stub.method = method;
+    stub.code.visitCode();
+    return stub;
+  }
+
+  /**
+   * Injects a call to the stub {@code method}.
+   *
+   * @see #invokeStub(String,Type,List)
+   */
+  @Requires({
+    "method != null",
+    "oldLocals != null"
+  })
+  protected void callStub(Method method, List<Integer> oldLocals) {
+    if (!statik) {
+      loadThis();
+    }
+    loadLocal(contextLocal);
+    loadLocal(activeLocal);
+    loadLocal(checkInvariantsLocal);
+    loadArgs();
+    for (Integer oldIndex : oldLocals) {
+      loadLocal(oldIndex);
+    }
+    invokeStatic(thisType, method);
+  }
+
+  /**
+   * Injects a call to a stub that checks invariants and
+   * preconditions on entry, if there are any to check.
+   */
+  protected void invokeEntryStub() {
+    ClassContractHandle invariant = null;
+    if (withInvariants && !statik && !isConstructor && !isStaticInit) {
+      invariant = contracts.getClassHandle(ContractKind.INVARIANT);
+    }
+    MethodContractHandle pre = null;
+    if (withPreconditions) {
+      pre = contracts.getMethodHandle(ContractKind.PRE,
+                                      methodName, methodDesc, 0);
+    }
+    if (invariant == null && pre == null) {
+      return;
+    }
+
+    Stub stub = invokeStub("enter", null, new ArrayList<Integer>());
+    Label skip = enterStubBusySection(stub);
+    if (invariant != null) {
+      invokeStubInvariants(stub);
+    }
+    if (pre != null) {
+      MethodNode contractMethod = injectContractMethod(pre);
+      if (!statik) {
+        stub.code.loadArg(stub.thisArg);
+      }
+      stub.code.loadArgs(stub.firstArg, stub.argCount);
+      invokeStubContractMethod(stub, contractMethod);
+    }
+    leaveStubBusySection(stub, skip);
+    endStub(stub);
+  }
+
+  /**
+   * Injects a call to a stub that checks postconditions and
+   * invariants on normal exit, and cancels the busy state of the
+   * current object. The return value, if any, must be on the stack.
+   * The stub is shared by all exit points of the original method.
+   */
+  @Requires("returnType != null")
+  protected void invokeExitStub(Type returnType) {
+    if (exitStubMethod != null) {
+      callStub(exitStubMethod, oldValueLocals);
+      return;
+    }
+
+    /*
+     * The postcondition contract method may expect a more specific
+     * type than the erased return type of the original method.
+     */
+    Type extraType = null;
+    if (returnType.getSort() != Type.VOID) {
+      extraType = returnType;
+      if (withPostconditions) {
+        MethodContractHandle h =
+            contracts.getMethodHandle(ContractKind.POST, methodName,
+                                      methodDesc, 1 + oldValueLocals.size());
+        if (h != null) {
+          int index = Type.getArgumentTypes(methodDesc).length;
+          extraType =
+              Type.getArgumentTypes(h.getContractMethod().desc)[index];
+        }
+      }
+    }
+    Stub stub = invokeStub("exit", extraType, oldValueLocals);
+    exitStubMethod = stub.method;
+    if (withPostconditions || withInvariants) {
+      Label skip = enterStubBusySection(stub);
+      if (withPostconditions) {
+        if (withOffloading) {
+          offloadStubPostconditions(stub);
+        } else {
+          invokeStubPostconditions(stub, ContractKind.POST);
+        }
+      }
+      if (withInvariants && !statik) {
+        invokeStubInvariants(stub);
+      }
+      leaveStubBusySection(stub, skip);
+    }
+    leaveStubContractedMethod(stub);
+    endStub(stub);
+  }
+
+  /**
+   * Injects a call to a stub that checks exceptional postconditions
+   * and invariants on abnormal exit, and cancels the busy state of
+   * the current object. The exception object must be on the stack.
+   */
+  protected void invokeSignalStub() {
+    Stub stub = invokeStub("signal", THROWABLE_TYPE, signalOldValueLocals);
+    if (withPostconditions) {
+      GeneratorAdapter code = stub.code;
+      Label skipEx = new Label();
+      code.loadArg(stub.extraArg);
+      code.instanceOf(EXCEPTION_TYPE);
+      code.ifZCmp(EQ, skipEx);
+
+      Label skip = enterStubBusySection(stub);
+      invokeStubPostconditions(stub, ContractKind.SIGNAL);
+      if (withInvariants && !statik) {
+        invokeStubInvariants(stub);
+      }
+      leaveStubBusySection(stub, skip);
+
+      code.mark(skipEx);
+    }
+    leaveStubContractedMethod(stub);
+    endStub(stub);
+  }
+
+  /**
+   * Generates calls to the invariant contract methods in
+   * {@code stub}, if any.
+   *
+   * @see #invokeInvariants()
+   */
+  @Requires({
+    "stub != null",
+    "!statik"
+  })
+  protected void invokeStubInvariants(Stub stub) {
+    ClassContractHandle h = contracts.getClassHandle(ContractKind.INVARIANT);
+    ClassContractHandle ch = null;
+    if (isConstructor) {
+      ch = contracts.getClassHandle(ContractKind.CONSTANT_INVARIANT);
+    }
+    if (h == null && ch == null) {
+      return;
+    }
+
+    MethodNode contractMethod = h == null ? null : injectContractMethod(h);
+    MethodNode constantMethod = ch == null ? null : injectContractMethod(ch);
+    GeneratorAdapter code = stub.code;
+
+    Label skipInvariants = new Label();
+    if (isConstructor) {
+      code.loadArg(stub.thisArg);
+      code.invokeVirtual(thisType, GET_CLASS_METHOD);
+      code.push(thisType);
+      code.ifCmp(CLASS_TYPE, NE, skipInvariants);
+    } else {
+      code.loadArg(stub.checkInvariantsArg);
+      code.ifZCmp(EQ, skipInvariants);
+      if (withValidFlag) {
+        code.loadArg(stub.thisArg);
+        code.getField(thisType, JavaUtils.VALID_FIELD, Type.BOOLEAN_TYPE);
+        code.ifZCmp(NE, skipInvariants);
+      }
+      if (contractMethod != null) {
+        code.loadArg(stub.contextArg);
+        code.loadArg(stub.thisArg);
+        code.push(thisType);
+        code.push(contractMethod.name);
+        code.invokeVirtual(CONTRACT_CONTEXT_TYPE, DEFER_INVARIANTS_METHOD);
+        code.ifZCmp(NE, skipInvariants);
+      }
+    }
+
+    if (constantMethod != null) {
+      code.loadArg(stub.thisArg);
+      invokeStubContractMethod(stub, constantMethod);
+    }
+    if (contractMethod != null) {
+      code.loadArg(stub.thisArg);
+      invokeStubContractMethod(stub, contractMethod);
+      if (withValidFlag) {
+        code.loadArg(stub.thisArg);
+        code.push(true);
+        code.putField(thisType, JavaUtils.VALID_FIELD, Type.BOOLEAN_TYPE);
+      }
+    }
+
+    code.mark(skipInvariants);
+  }
+
+  /**
+   * Generates a call to the postcondition (or exceptional
+   * postcondition) contract method of the specified kind in
+   * {@code stub}, if any.
+   *
+   * @see #invokeCommonPostconditions(ContractKind,List,int)
+   */
+  @Requires({
+    "stub != null",
+    "kind != null",
+    "kind.isPostcondition()"
+  })
+  protected void invokeStubPostconditions(Stub stub, ContractKind kind) {
+    int offset = stub.oldCount;
+    if (stub.extraArg != -1) {
+      ++offset;
+    }
+    MethodContractHandle h =
+        contracts.getMethodHandle(kind, methodName, methodDesc, offset);
+    if (h == null) {
+      return;
+    }
+
+    MethodNode contractMethod = injectContractMethod(h);
+    GeneratorAdapter code = stub.code;
+
+    if (!statik) {
+      code.loadArg(stub.thisArg);
+    }
+    code.loadArgs(stub.firstArg, stub.argCount);
+
+    if (stub.extraArg != -1) {
+      code.loadArg(stub.extraArg);
+      if (kind == ContractKind.SIGNAL) {
+        code.checkCast(EXCEPTION_TYPE);
+      }
+    }
+
+    code.loadArgs(stub.oldArg, stub.oldCount);
+
+    invokeStubContractMethod(stub, contractMethod);
+  }
+
+  /**
+   * Generates code in {@code stub} to hand postconditions over to the
+   * background verifier.
+   *
+   * @see #offloadPostconditions(int)
+   */
+  @Requires({
+    "statik",
+    "stub != null"
+  })
+  protected void offloadStubPostconditions(Stub stub) {
+    int offset = stub.oldCount;
+    if (stub.extraArg != -1) {
+      ++offset;
+    }
+    MethodContractHandle h =
+        contracts.getMethodHandle(ContractKind.POST, methodName, methodDesc,
+                                  offset);
+    if (h == null) {
+      return;
+    }
+
+    MethodNode contractMethod = injectContractMethod(h);
+    GeneratorAdapter code = stub.code;
+    Type[] stubTypes = stub.method.getArgumentTypes();
+    pushContractHandle(code, contractMethod);
+
+    List<Integer> args = new ArrayList<Integer>();
+    for (int i = 0; i < stub.argCount; ++i) {
+      args.add(stub.firstArg + i);
+    }
+    if (stub.extraArg != -1) {
+      args.add(stub.extraArg);
+    }
+    for (int i = 0; i < stub.oldCount; ++i) {
+      args.add(stub.oldArg + i);
+    }
+    code.push(args.size());
+    code.newArray(OBJECT_TYPE);
+    for (int i = 0; i < args.size(); ++i) {
+      beginArrayElement(code, i);
+      code.loadArg(args.get(i));
+      endArrayElement(code, stubTypes[args.get(i)]);
+    }
+
+    code.invokeStatic(OFFLOADED_CONTRACT_RUNTIME_TYPE, SUBMIT_METHOD);
+  }
+
+  @Requires({
+    "stub != null",
+    "contractMethod != null"
+  })
+  protected void invokeStubContractMethod(Stub stub,
+                                          MethodNode contractMethod) {
+    if (!statik) {
+      stub.code.visitMethodInsn(INVOKESPECIAL, className,
+                                contractMethod.name, contractMethod.desc,
+                                false);
+    } else {
+      stub.code.visitMethodInsn(INVOKESTATIC, className,
+                                contractMethod.name, contractMethod.desc,
+                                false);
+    }
+  }
+
+  /**
+   * Marks the beginning of a busy section in {@code stub}.
+   *
+   * @see #enterBusySection()
+   */
+  @Requires("stub != null")
+  @Ensures("result != null")
+  protected Label enterStubBusySection(Stub stub) {
+    Label skip = new Label();
+    stub.code.loadArg(stub.activeArg);
+    stub.code.ifZCmp(EQ, skip);
+    stub.code.loadArg(stub.contextArg);
+    stub.code.invokeVirtual(CONTRACT_CONTEXT_TYPE, TRY_ENTER_CONTRACT_METHOD);
+    stub.code.ifZCmp(EQ, skip);
+    return skip;
+  }
+
+  /**
+   * Marks the end of a busy section in {@code stub}.
+   *
+   * @see #leaveBusySection(Label)
+   */
+  @Requires({
+    "stub != null",
+    "skip != null"
+  })
+  protected void leaveStubBusySection(Stub stub, Label skip) {
+    stub.code.loadArg(stub.contextArg);
+    stub.code.invokeVirtual(CONTRACT_CONTEXT_TYPE, LEAVE_CONTRACT_METHOD);
+    stub.code.mark(skip);
+  }
+
+  /**
+   * Cancels busy state of the current object in {@code stub}.
+   *
+   * @see #leaveContractedMethod()
+   */
+  @Requires("stub != null")
+  protected void leaveStubContractedMethod(Stub stub) {
+    if (!withEntryTracking) {
+      return;
+    }
+    GeneratorAdapter code = stub.code;
+    Label skip = new Label();
+    code.loadArg(stub.checkInvariantsArg);
+    code.ifZCmp(EQ, skip);
+
+    code.loadArg(stub.contextArg);
+    if (statik) {
+      code.push(thisType);
+    } else {
+      code.loadArg(stub.thisArg);
+    }
+    code.invokeVirtual(CONTRACT_CONTEXT_TYPE, LEAVE_METHOD);
+
+    code.mark(skip);
+  }
+
+  /**
+   * Ends the code of {@code stub}.
+   */
+  @Requires("stub != null")
+  protected void endStub(Stub stub) {
+    stub.code.returnValue();
+    stub.code.endMethod();
+  }
+
   /**
    * Marks the beginning of a busy section. A busy section is skipped
-   * if the context is already busy.
+   * if contracts were not active on entry to the method, or if the
+   * context is already busy.
    */
   @Requires({
     "contextLocal >= 0",
+    "activeLocal >= 0",
     "checkInvariantsLocal >= 0"
   })
   @Ensures("result != null")
   protected Label enterBusySection() {
     Label skip = new Label();
+    loadLocal(activeLocal);
+    ifZCmp(EQ, skip);
     loadLocal(contextLocal);
     invokeVirtual(CONTRACT_CONTEXT_TYPE, TRY_ENTER_CONTRACT_METHOD);
     ifZCmp(EQ, skip);
@@ -590,18 +1826,36 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
   }
 
   /**
-   * Retrieves busy state of the current object.
+   * Retrieves the activation state of the current thread and, if
+   * entry is tracked, the busy state of the current object, which is
+   * otherwise left unchecked. Both are kept for the whole
+   * call, so that contracts are either fully checked or not at all,
+   * even if the thread changes its activation state in the meantime.
    */
   @Ensures({
     "contextLocal >= 0",
+    "activeLocal >= 0",
     "checkInvariantsLocal >= 0"
   })
   protected void enterContractedMethod() {
     contextLocal = newLocal(CONTRACT_CONTEXT_TYPE);
+    activeLocal = newLocal(Type.BOOLEAN_TYPE);
     checkInvariantsLocal = newLocal(Type.BOOLEAN_TYPE);
+    push(false);
+    storeLocal(checkInvariantsLocal);
     invokeStatic(CONTRACT_RUNTIME_TYPE, GET_CONTEXT_METHOD);
     dup();
     storeLocal(contextLocal);
+    invokeVirtual(CONTRACT_CONTEXT_TYPE, IS_ACTIVE_METHOD);
+    if (!withEntryTracking) {
+      storeLocal(activeLocal);
+      return;
+    }
+    dup();
+    storeLocal(activeLocal);
+    Label skip = new Label();
+    ifZCmp(EQ, skip);
+    loadLocal(contextLocal);
     if (statik) {
       loadThisClass();
     } else {
@@ -609,6 +1863,7 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
     }
     invokeVirtual(CONTRACT_CONTEXT_TYPE, TRY_ENTER_METHOD);
     storeLocal(checkInvariantsLocal);
+    mark(skip);
   }
 
   /**
@@ -616,6 +1871,9 @@ public class SpecificationMethodAdapter extends AdviceAdapter {
    */
   @Requires("contextLocal >= 0")
   protected void leaveContractedMethod() {
+    if (!withEntryTracking) {
+      return;
+    }
     Label skip = new Label();
     loadLocal(checkInvariantsLocal);
     ifZCmp(EQ, skip);
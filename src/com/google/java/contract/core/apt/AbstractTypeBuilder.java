@@ -26,8 +26,13 @@ import com.google.java.contract.core.model.ContractAnnotationModel;
 import com.google.java.contract.core.model.ElementKind;
 import com.google.java.contract.core.model.ElementModel;
 import com.google.java.contract.core.model.TypeName;
+import com.google.java.contract.core.util.JavaTokenizer;
+import com.google.java.contract.core.util.JavaTokenizer.Token;
+import com.google.java.contract.core.util.JavaTokenizer.TokenKind;
 import com.google.java.contract.core.util.JavaUtils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -38,6 +43,14 @@ import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
 import javax.lang.model.util.ElementScanner6;
 
 /**
@@ -54,11 +67,19 @@ abstract class AbstractTypeBuilder
 
   protected DiagnosticManager diagnosticManager;
 
+  /**
+   * Whether postconditions on the values of returned futures are
+   * checked asynchronously.
+   */
+  protected boolean asyncPostconditions;
+
   @Requires("utils != null")
   protected AbstractTypeBuilder(FactoryUtils utils,
                                 DiagnosticManager diagnosticManager) {
     this.utils = utils;
     this.diagnosticManager = diagnosticManager;
+    asyncPostconditions = utils.processingEnv.getOptions()
+        .containsKey(AnnotationProcessor.OPT_ASYNC);
   }
 
   /**
@@ -67,6 +88,44 @@ abstract class AbstractTypeBuilder
    */
   protected Iterator<Long> rootLineNumberIterator;
 
+  /**
+   * Keywords that may appear in constant invariant expressions.
+   */
+  private static final Set<String> CONSTANT_WORDS =
+      new HashSet<String>(Arrays.asList(
+          "this", "null", "true", "false",
+          "boolean", "byte", "char", "short", "int", "long",
+          "float", "double"));
+
+  /**
+   * Keywords that may appear unqualified in asynchronous
+   * postconditions.
+   */
+  private static final Set<String> ASYNC_WORDS =
+      new HashSet<String>(Arrays.asList(
+          "null", "true", "false", "instanceof", "new",
+          "boolean", "byte", "char", "short", "int", "long",
+          "float", "double"));
+
+  /**
+   * Return types of methods whose postconditions on the result may be
+   * checked asynchronously.
+   */
+  private static final Set<String> ASYNC_RESULT_TYPES =
+      new HashSet<String>(Arrays.asList(
+          "java.util.concurrent.CompletableFuture",
+          "java.util.concurrent.CompletionStage"));
+
+  /**
+   * Return types of methods whose postconditions may be checked on
+   * each element of the result.
+   */
+  private static final Set<String> ELEMENT_RESULT_TYPES =
+      new HashSet<String>(Arrays.asList(
+          "java.util.stream.Stream",
+          "java.util.Iterator",
+          "java.lang.Iterable"));
+
   /**
    * Creates a blank {@code ContractAnnotationModel} from
    * an {@code AnnotationMirror}. The returned model is created with
@@ -92,6 +151,7 @@ abstract class AbstractTypeBuilder
 
     boolean virtual;
     TypeName returnType;
+    TypeName elementType = null;
     switch (parent.getKind()) {
       default:
         virtual =
@@ -121,11 +181,45 @@ abstract class AbstractTypeBuilder
           default:
             returnType = utils.getTypeNameForType(
                 utils.typeUtils.erasure(method.getReturnType()));
+            elementType = getElementType(method.getReturnType());
         }
     }
 
-    return new ContractAnnotationModel(kind, primary, virtual,
-                                       owner, returnType);
+    ContractAnnotationModel model =
+        new ContractAnnotationModel(kind, primary, virtual,
+                                    owner, returnType);
+    model.setElementType(elementType);
+    return model;
+  }
+
+  /**
+   * Returns the erased type of the elements of {@code type}, if it is
+   * a stream, an iterator or an iterable, or {@code null}.
+   */
+  @Requires("type != null")
+  private TypeName getElementType(TypeMirror type) {
+    if (type.getKind() != TypeKind.DECLARED) {
+      return null;
+    }
+    DeclaredType declaredType = (DeclaredType) type;
+    String name = utils.typeUtils.erasure(type).toString();
+    if (!ELEMENT_RESULT_TYPES.contains(name)) {
+      return null;
+    }
+
+    List<? extends TypeMirror> typeArguments =
+        declaredType.getTypeArguments();
+    if (typeArguments.size() != 1) {
+      return new TypeName("java.lang.Object");
+    }
+    TypeMirror elementType = typeArguments.get(0);
+    if (elementType.getKind() == TypeKind.WILDCARD) {
+      elementType = ((WildcardType) elementType).getExtendsBound();
+      if (elementType == null) {
+        return new TypeName("java.lang.Object");
+      }
+    }
+    return utils.getTypeNameForType(utils.typeUtils.erasure(elementType));
   }
 
   /**
@@ -217,11 +311,493 @@ abstract class AbstractTypeBuilder
       ContractAnnotationModel model =
           createContractModel(parent, annotation, primary, owner);
       if (model != null) {
-        p.addEnclosedElement(model);
+        for (ContractAnnotationModel m : splitContractModel(parent, model)) {
+          p.addEnclosedElement(m);
+        }
       }
     }
   }
 
+  /**
+   * Splits {@code model} into the annotations to add in its place.
+   * Invariant clauses that only depend on final fields are moved to a
+   * constant invariant annotation, and postcondition clauses on the
+   * value of a returned future to an asynchronous postcondition
+   * annotation.
+   *
+   * @param parent the target of the annotation
+   * @param model the contract model of the annotation
+   * @return the non-empty annotations to add in place of {@code model}
+   */
+  @Requires({
+    "parent != null",
+    "model != null"
+  })
+  @Ensures({
+    "result != null",
+    "!result.isEmpty()",
+    "!result.contains(null)"
+  })
+  protected List<ContractAnnotationModel> splitContractModel(
+      Element parent, ContractAnnotationModel model) {
+    switch (model.getKind()) {
+      case INVARIANT:
+        return splitConstantInvariants(parent, model);
+      case ENSURES:
+        if (model.getElementType() != null) {
+          return splitElementPostconditions(parent, model);
+        }
+        return splitAsyncPostconditions(parent, model);
+      default:
+        return Collections.singletonList(model);
+    }
+  }
+
+  /**
+   * Moves the clauses of {@code model}, an invariant annotation, that
+   * only depend on final fields declared in {@code parent} to a new
+   * constant invariant annotation.
+   */
+  @Requires({
+    "parent != null",
+    "model != null",
+    "model.getKind() == ElementKind.INVARIANT"
+  })
+  @Ensures({
+    "result != null",
+    "!result.isEmpty()",
+    "!result.contains(null)"
+  })
+  protected List<ContractAnnotationModel> splitConstantInvariants(
+      Element parent, ContractAnnotationModel model) {
+    if (!parent.getKind().isClass()) {
+      return Collections.singletonList(model);
+    }
+
+    Set<String> finalFieldNames = new HashSet<String>();
+    for (VariableElement field :
+         ElementFilter.fieldsIn(parent.getEnclosedElements())) {
+      if (field.getModifiers().contains(Modifier.FINAL)) {
+        finalFieldNames.add(field.getSimpleName().toString());
+      }
+    }
+
+    List<String> values = model.getValues();
+    boolean[] moved = new boolean[values.size()];
+    for (int i = 0; i < moved.length; ++i) {
+      moved[i] = isConstantExpression(values.get(i), finalFieldNames);
+    }
+
+    ContractAnnotationModel constantModel = model.clone();
+    constantModel.setConstant(true);
+    return splitValues(model, constantModel, moved);
+  }
+
+  /**
+   * Moves the clauses of {@code model}, a postcondition annotation on
+   * {@code parent}, a method that returns a {@code CompletableFuture}
+   * or a {@code CompletionStage}, that only depend on the value of
+   * the result and on parameters, to a new asynchronous postcondition
+   * annotation. These clauses are checked once the returned future
+   * completes, instead of on return from the method. Nothing is moved
+   * unless the {@code async} option is set.
+   */
+  @Requires({
+    "parent != null",
+    "model != null",
+    "model.getKind() == ElementKind.ENSURES"
+  })
+  @Ensures({
+    "result != null",
+    "!result.isEmpty()",
+    "!result.contains(null)"
+  })
+  protected List<ContractAnnotationModel> splitAsyncPostconditions(
+      Element parent, ContractAnnotationModel model) {
+    TypeName returnType = model.getReturnType();
+    if (!asyncPostconditions || returnType == null
+        || !ASYNC_RESULT_TYPES.contains(returnType.getDeclaredName())
+        || !(parent instanceof ExecutableElement)) {
+      return Collections.singletonList(model);
+    }
+
+    Set<String> parameterNames = new HashSet<String>();
+    for (VariableElement parameter :
+         ((ExecutableElement) parent).getParameters()) {
+      parameterNames.add(parameter.getSimpleName().toString());
+    }
+
+    List<String> values = model.getValues();
+    boolean[] moved = new boolean[values.size()];
+    for (int i = 0; i < moved.length; ++i) {
+      moved[i] = isAsyncExpression(values.get(i), parameterNames);
+    }
+
+    ContractAnnotationModel asyncModel = model.clone();
+    asyncModel.setAsync(true);
+    return splitValues(model, asyncModel, moved);
+  }
+
+  /**
+   * Moves the clauses of {@code model}, a postcondition annotation on
+   * {@code parent}, a method that returns a stream, an iterator or an
+   * iterable, that refer to the {@code element} keyword, but not to
+   * the result or old values, to a new element-wise postcondition
+   * annotation. These clauses are checked on each element of the
+   * result as it is consumed. The keyword is not recognized if it is
+   * the name of a parameter of the method or a field of its class.
+   */
+  @Requires({
+    "parent != null",
+    "model != null",
+    "model.getKind() == ElementKind.ENSURES",
+    "model.getElementType() != null"
+  })
+  @Ensures({
+    "result != null",
+    "!result.isEmpty()",
+    "!result.contains(null)"
+  })
+  protected List<ContractAnnotationModel> splitElementPostconditions(
+      Element parent, ContractAnnotationModel model) {
+    ExecutableElement method = (ExecutableElement) parent;
+    for (VariableElement param : method.getParameters()) {
+      if (param.getSimpleName().contentEquals(JavaUtils.ELEMENT_VARIABLE)) {
+        return Collections.singletonList(model);
+      }
+    }
+    TypeElement type = (TypeElement) method.getEnclosingElement();
+    for (VariableElement field : ElementFilter.fieldsIn(
+             utils.elementUtils.getAllMembers(type))) {
+      if (field.getSimpleName().contentEquals(JavaUtils.ELEMENT_VARIABLE)) {
+        return Collections.singletonList(model);
+      }
+    }
+
+    List<String> values = model.getValues();
+    boolean[] moved = new boolean[values.size()];
+    for (int i = 0; i < moved.length; ++i) {
+      moved[i] = isElementExpression(values.get(i));
+    }
+
+    ContractAnnotationModel elementModel = model.clone();
+    elementModel.setElementwise(true);
+    return splitValues(model, elementModel, moved);
+  }
+
+  /**
+   * Moves the clauses of {@code model} whose indexes are flagged in
+   * {@code moved} to {@code part}, a clone of {@code model}. Returns
+   * the non-empty annotations among {@code model} and {@code part}.
+   */
+  @Requires({
+    "model != null",
+    "part != null",
+    "moved != null",
+    "moved.length == model.getValues().size()"
+  })
+  @Ensures({
+    "result != null",
+    "!result.isEmpty()",
+    "!result.contains(null)"
+  })
+  private static List<ContractAnnotationModel> splitValues(
+      ContractAnnotationModel model, ContractAnnotationModel part,
+      boolean[] moved) {
+    List<String> values = new ArrayList<String>(model.getValues());
+    List<Long> lineNumbers = new ArrayList<Long>(model.getLineNumbers());
+    model.clearValues();
+    part.clearValues();
+    for (int i = 0; i < values.size(); ++i) {
+      if (moved[i]) {
+        part.addValue(values.get(i), lineNumbers.get(i));
+      } else {
+        model.addValue(values.get(i), lineNumbers.get(i));
+      }
+    }
+
+    if (part.getValues().isEmpty()) {
+      return Collections.singletonList(model);
+    }
+    AnnotationSourceInfo sourceInfo =
+        (AnnotationSourceInfo) model.getSourceInfo();
+    part.setSourceInfo(
+        new AnnotationSourceInfo(sourceInfo.getElement(),
+                                 sourceInfo.getAnnotationMirror(),
+                                 sourceInfo.getAnnotationValue(),
+                                 part.getValues()));
+    if (model.getValues().isEmpty()) {
+      return Collections.singletonList(part);
+    }
+    model.setSourceInfo(
+        new AnnotationSourceInfo(sourceInfo.getElement(),
+                                 sourceInfo.getAnnotationMirror(),
+                                 sourceInfo.getAnnotationValue(),
+                                 model.getValues()));
+    return Arrays.asList(model, part);
+  }
+
+  /**
+   * Returns {@code true} if the postcondition {@code expr} refers to
+   * the unqualified {@code element} keyword, and not to the result of
+   * its method or old values. The keyword is not recognized if
+   * {@code expr} declares a variable of the same name, such as the
+   * parameter of a lambda expression.
+   */
+  @Requires("expr != null")
+  protected static boolean isElementExpression(String expr) {
+    JavaTokenizer tokenizer = new JavaTokenizer(expr);
+    List<Token> tokens = new ArrayList<Token>();
+    while (tokenizer.hasNext()) {
+      Token token = tokenizer.next();
+      if (token.kind != TokenKind.SPACE && token.kind != TokenKind.COMMENT) {
+        tokens.add(token);
+      }
+    }
+    if (tokenizer.hasErrors()) {
+      return false;
+    }
+
+    boolean usesElement = false;
+    for (int i = 0; i < tokens.size(); ++i) {
+      Token token = tokens.get(i);
+      if (token.kind != TokenKind.WORD) {
+        continue;
+      }
+      if (token.textEquals("old")
+          || token.textEquals(JavaUtils.RESULT_VARIABLE)) {
+        return false;
+      }
+      if (token.textEquals(JavaUtils.ELEMENT_VARIABLE)
+          && (i == 0 || !tokens.get(i - 1).textEquals("."))) {
+        if (isDeclaration(tokens, i)) {
+          return false;
+        }
+        usesElement = true;
+      }
+    }
+    return usesElement;
+  }
+
+  /**
+   * Returns {@code true} if the name at index {@code i} in
+   * {@code tokens} is that of a declared variable: the parameter of a
+   * lambda expression, or a name preceded by its type.
+   */
+  @Requires({
+    "tokens != null",
+    "i >= 0",
+    "i < tokens.size()"
+  })
+  private static boolean isDeclaration(List<Token> tokens, int i) {
+    if (i > 0 && tokens.get(i - 1).kind == TokenKind.WORD) {
+      return true;
+    }
+    if (matchTokens(tokens, i + 1, "-", ">")) {
+      return true;
+    }
+
+    /* Parenthesized lambda parameters: (a, element) -> ... */
+    int depth = 0;
+    for (int k = i + 1; k < tokens.size(); ++k) {
+      Token token = tokens.get(k);
+      if (token.textEquals("(")) {
+        ++depth;
+      } else if (token.textEquals(")")) {
+        if (depth == 0) {
+          return matchTokens(tokens, k + 1, "-", ">");
+        }
+        --depth;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns {@code true} if the postcondition {@code expr} only
+   * depends on the value of the result of its method, and on the
+   * parameters named in {@code parameterNames}. The analysis is
+   * lexical and conservative: each reference to the result must read
+   * its value, through {@code join}, {@code get} or {@code getNow},
+   * called on the result or on {@code result.toCompletableFuture()};
+   * and the expression may not refer to old values, to {@code this}
+   * or {@code super}, or to any other unqualified name, except for
+   * keywords and names that start with an upper-case letter, which
+   * are taken to be types. In particular, clauses on the state of the
+   * future, such as {@code result.isDone()}, clauses that only
+   * compare the result reference, such as {@code result != null}, and
+   * clauses that read fields or call methods of the object are
+   * checked on return.
+   */
+  @Requires({
+    "expr != null",
+    "parameterNames != null"
+  })
+  protected static boolean isAsyncExpression(String expr,
+                                             Set<String> parameterNames) {
+    JavaTokenizer tokenizer = new JavaTokenizer(expr);
+    List<Token> tokens = new ArrayList<Token>();
+    while (tokenizer.hasNext()) {
+      Token token = tokenizer.next();
+      if (token.kind != TokenKind.SPACE && token.kind != TokenKind.COMMENT) {
+        tokens.add(token);
+      }
+    }
+    if (tokenizer.hasErrors()) {
+      return false;
+    }
+
+    boolean usesValue = false;
+    Token previous = null;
+    for (int i = 0; i < tokens.size(); previous = tokens.get(i++)) {
+      Token token = tokens.get(i);
+      if (token.kind != TokenKind.WORD
+          || (previous != null && previous.textEquals("."))) {
+        continue;
+      }
+      String word = token.getText();
+      if (word.equals(JavaUtils.RESULT_VARIABLE)) {
+        if (!isValueRead(tokens, i + 1)) {
+          return false;
+        }
+        usesValue = true;
+      } else if (word.equals("old") || word.equals("this")
+                 || word.equals("super")) {
+        return false;
+      } else if (!parameterNames.contains(word)
+                 && !ASYNC_WORDS.contains(word)
+                 && !Character.isUpperCase(word.charAt(0))
+                 && !(isNumberPart(previous)
+                      && previous.offset + previous.length
+                         == token.offset)) {
+        return false;
+      }
+    }
+    return usesValue;
+  }
+
+  /**
+   * Returns {@code true} if {@code tokens}, from index {@code i},
+   * start with a call that reads the value of the future before them:
+   * {@code .join(}, {@code .get(} or {@code .getNow(}, optionally
+   * preceded by {@code .toCompletableFuture()}.
+   */
+  @Requires({
+    "tokens != null",
+    "i >= 0"
+  })
+  private static boolean isValueRead(List<Token> tokens, int i) {
+    if (matchTokens(tokens, i, ".", "toCompletableFuture", "(", ")")) {
+      i += 4;
+    }
+    if (!matchTokens(tokens, i, ".") || !matchTokens(tokens, i + 2, "(")) {
+      return false;
+    }
+    return matchTokens(tokens, i + 1, "join")
+        || matchTokens(tokens, i + 1, "get")
+        || matchTokens(tokens, i + 1, "getNow");
+  }
+
+  /**
+   * Returns {@code true} if {@code tokens}, from index {@code i},
+   * start with tokens of text {@code texts}.
+   */
+  private static boolean matchTokens(List<Token> tokens, int i,
+                                     String... texts) {
+    if (i + texts.length > tokens.size()) {
+      return false;
+    }
+    for (int k = 0; k < texts.length; ++k) {
+      if (!tokens.get(i + k).textEquals(texts[k])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns {@code true} if the value of the contract expression
+   * {@code expr} only depends on the fields named in
+   * {@code fieldNames}. The analysis is lexical and conservative: the
+   * expression may only contain literals, operators, casts to
+   * primitive types, and the names of these fields, optionally
+   * qualified with {@code this}; in particular, method calls, array
+   * accesses and accesses to members of other objects are rejected.
+   */
+  @Requires({
+    "expr != null",
+    "fieldNames != null"
+  })
+  protected static boolean isConstantExpression(String expr,
+                                                Set<String> fieldNames) {
+    JavaTokenizer tokenizer = new JavaTokenizer(expr);
+    Token previous = null;
+    boolean expectField = false;
+    while (tokenizer.hasNext()) {
+      Token token = tokenizer.next();
+      switch (token.kind) {
+        case SPACE:
+        case COMMENT:
+          continue;
+        case QUOTE:
+          if (expectField) {
+            return false;
+          }
+          break;
+        case WORD:
+          if (expectField) {
+            if (!fieldNames.contains(token.getText())) {
+              return false;
+            }
+            expectField = false;
+          } else if (isNumberPart(previous)
+                     && previous.offset + previous.length == token.offset) {
+            /* Radix prefix, exponent or type suffix of a number. */
+          } else if (!fieldNames.contains(token.getText())
+                     && !CONSTANT_WORDS.contains(token.getText())) {
+            return false;
+          }
+          break;
+        case SYMBOL:
+          if (expectField) {
+            return false;
+          }
+          switch (token.charAt(0)) {
+            case '.':
+              if (previous != null && previous.kind == TokenKind.WORD
+                  && previous.textEquals("this")) {
+                expectField = true;
+              } else if (!isNumberPart(previous)) {
+                return false;
+              }
+              break;
+            case '(':
+              if (previous != null
+                  && (previous.kind == TokenKind.WORD
+                      || previous.textEquals(")"))) {
+                return false;
+              }
+              break;
+            case '[':
+            case '@':
+              return false;
+          }
+          break;
+      }
+      previous = token;
+    }
+    return !expectField && !tokenizer.hasErrors();
+  }
+
+  /**
+   * Returns {@code true} if {@code token} is part of a numeric
+   * literal.
+   */
+  private static boolean isNumberPart(Token token) {
+    return token != null && token.kind == TokenKind.SYMBOL
+        && Character.isDigit(token.charAt(0));
+  }
+
   /**
    * Returns the line numbers associated with {@code annotation} if
    * available.
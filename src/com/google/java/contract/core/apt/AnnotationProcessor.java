@@ -25,17 +25,28 @@ import com.google.java.contract.core.model.ContractAnnotationModel;
 import com.google.java.contract.core.model.TypeModel;
 import com.google.java.contract.core.util.DebugUtils;
 import com.google.java.contract.core.util.ElementScanner;
+import com.google.java.contract.core.util.JavaUtils;
 import com.google.java.contract.core.util.SyntheticJavaFile;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.Messager;
 import javax.annotation.processing.ProcessingEnvironment;
@@ -44,9 +55,12 @@ import javax.annotation.processing.SupportedAnnotationTypes;
 import javax.annotation.processing.SupportedOptions;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
-import javax.lang.model.util.ElementScanner6;
+import javax.tools.Diagnostic;
 import javax.tools.JavaCompiler.CompilationTask;
 import javax.tools.JavaFileObject.Kind;
 
@@ -67,7 +81,14 @@ import javax.tools.JavaFileObject.Kind;
   AnnotationProcessor.OPT_CLASSPATH,
   AnnotationProcessor.OPT_CLASSOUTPUT,
   AnnotationProcessor.OPT_DEPSPATH,
-  AnnotationProcessor.OPT_EXPERIMENTAL
+  AnnotationProcessor.OPT_EXPERIMENTAL,
+  AnnotationProcessor.OPT_BATCH,
+  AnnotationProcessor.OPT_POSTCOMPILE,
+  AnnotationProcessor.OPT_CACHE,
+  AnnotationProcessor.OPT_THREADS,
+  AnnotationProcessor.OPT_PROFILE,
+  AnnotationProcessor.OPT_COMPACT,
+  AnnotationProcessor.OPT_ASYNC
 })
 public class AnnotationProcessor extends AbstractProcessor {
   /**
@@ -117,6 +138,73 @@ public class AnnotationProcessor extends AbstractProcessor {
    */
   protected static final String OPT_EXPERIMENTAL = "com.google.java.contract.experimental";
 
+  /**
+   * This option defers the compilation of contract code until the
+   * last processing round, at which point all generated source files
+   * are compiled in a single task. Types referenced by contracts are
+   * then resolved once per build instead of once per round.
+   */
+  protected static final String OPT_BATCH = "com.google.java.contract.batch";
+
+  /**
+   * This option compiles contract code after the class files of the
+   * current compilation have been written, against the class output
+   * directory and class path only. Referenced types are then read
+   * from class files instead of being parsed again from the source
+   * path. This option implies {@link #OPT_BATCH}. It falls back to
+   * batch mode, with a warning, unless running inside javac, with a
+   * class output directory and without {@code -proc:only}.
+   */
+  protected static final String OPT_POSTCOMPILE = "com.google.java.contract.postcompile";
+
+  /**
+   * This option sets the file in which to keep digests of compiled
+   * contract sources. Contract sources that are unchanged since they
+   * were last compiled, and whose compiled files are still in the
+   * class output directory, are not compiled again. This option is
+   * ignored if no class output directory is known.
+   *
+   * @see ContractCache
+   */
+  protected static final String OPT_CACHE = "com.google.java.contract.cache";
+
+  /**
+   * This option sets the number of threads used to build contract
+   * methods and write contract source files (defaults to 1). Type
+   * models are always extracted from the compiler on the processing
+   * thread; the results do not depend on the number of threads.
+   */
+  protected static final String OPT_THREADS = "com.google.java.contract.threads";
+
+  /**
+   * This option records the time spent and memory allocated by each
+   * stage of the processor, overall and for each type, and writes
+   * them as {@code profile.json} in the dump directory.
+   *
+   * @see ProcessingProfile
+   */
+  protected static final String OPT_PROFILE = "com.google.java.contract.profile";
+
+  /**
+   * This option generates compact contract methods, which evaluate
+   * all their clauses in a single exception region and share their
+   * failure handling code. Compact contract methods are smaller, and
+   * thus more likely to be inlined into their callers.
+   *
+   * @see ContractCreation#addContractClauses
+   */
+  protected static final String OPT_COMPACT = "com.google.java.contract.compact";
+
+  /**
+   * This option checks postconditions that read the value of a
+   * returned future once the future completes, instead of on return
+   * from the method. Violations are then reported to a handler
+   * rather than thrown to the caller.
+   *
+   * @see AbstractTypeBuilder#isAsyncExpression
+   */
+  protected static final String OPT_ASYNC = "com.google.java.contract.async";
+
   protected TypeFactory factory;
   protected FactoryUtils utils;
 
@@ -126,11 +214,69 @@ public class AnnotationProcessor extends AbstractProcessor {
 
   protected boolean debug;
   protected boolean dump;
+  protected boolean batch;
+  protected boolean postCompile;
+  protected boolean compact;
+  protected int threads;
+
+  /**
+   * The executor that builds contract source files, or {@code null}
+   * if running on the processing thread only.
+   */
+  protected ExecutorService executor;
+
+  protected ProcessingProfile profile;
+
+  /**
+   * The index of contracted types, kept across processing rounds.
+   */
+  protected ContractFinder contractFinder;
+
+  /**
+   * Contract expression transformations shared by all types, so that
+   * inherited contracts are transformed once for all subtypes.
+   */
+  protected ContractExpressionTransformer.Memo transformerMemo;
+
+  /**
+   * The compiler used for contract code, created on first use and
+   * shared by all processing rounds.
+   */
+  protected ContractJavaCompiler compiler;
+
+  /**
+   * The cache of compiled contract sources, or {@code null}.
+   */
+  protected ContractCache cache;
+
+  /**
+   * Generated source files awaiting compilation, in batch mode.
+   */
+  protected List<SyntheticJavaFile> pendingSources;
+
+  /**
+   * Binary names of the types of this compilation, including member
+   * types, whose class files have not been written yet, in
+   * post-compile mode.
+   */
+  protected Set<String> ungeneratedTypeNames;
+
+  /**
+   * Whether the last processing round has been run.
+   */
+  protected boolean processingOver;
+
+  /**
+   * Whether all contract code has been compiled.
+   */
+  protected boolean finished;
 
   private Class<?> javacProcessingEnvironmentClass;
   private Method getContextMethod;
   private Method optionsInstanceMethod;
   private Method optionsGetMethod;
+  private Method logInstanceMethod;
+  private Field logErrorCountField;
 
   /**
    * Initialize classes and methods needed for OpenJDK javac reflection.
@@ -150,6 +296,9 @@ public class AnnotationProcessor extends AbstractProcessor {
       Class<?> optionsClass = Class.forName("com.sun.tools.javac.util.Options");
       optionsInstanceMethod = optionsClass.getMethod("instance", contextClass);
       optionsGetMethod = optionsClass.getMethod("get", String.class);
+      Class<?> logClass = Class.forName("com.sun.tools.javac.util.Log");
+      logInstanceMethod = logClass.getMethod("instance", contextClass);
+      logErrorCountField = logClass.getField("nerrors");
     } catch (Exception e) {
       throw new LinkageError(e.getMessage());
     }
@@ -183,6 +332,25 @@ public class AnnotationProcessor extends AbstractProcessor {
     }
   }
 
+  /**
+   * Returns the number of errors reported so far by javac, or 0 if
+   * not running inside javac.
+   */
+  @Ensures("result >= 0")
+  private int getJavacErrorCount() {
+    if (javacProcessingEnvironmentClass == null ||
+        !javacProcessingEnvironmentClass.isInstance(processingEnv)) {
+      return 0;
+    }
+    try {
+      Object log = logInstanceMethod.invoke(null,
+          getContextMethod.invoke(processingEnv));
+      return logErrorCountField.getInt(log);
+    } catch (Exception e) {
+      throw new LinkageError(e.getMessage());
+    }
+  }
+
   @Override
   public synchronized void init(ProcessingEnvironment processingEnv) {
     super.init(processingEnv);
@@ -190,6 +358,20 @@ public class AnnotationProcessor extends AbstractProcessor {
     Map<String, String> options = processingEnv.getOptions();
     debug = options.containsKey(OPT_DEBUG);
     dump = options.containsKey(OPT_DUMP);
+    batch = options.containsKey(OPT_BATCH);
+    postCompile = options.containsKey(OPT_POSTCOMPILE);
+    compact = options.containsKey(OPT_COMPACT);
+    profile = new ProcessingProfile(options.containsKey(OPT_PROFILE));
+    threads = 1;
+    String threadsOption = options.get(OPT_THREADS);
+    if (threadsOption != null) {
+      try {
+        threads = Math.max(1, Integer.parseInt(threadsOption.trim()));
+      } catch (NumberFormatException e) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+            "invalid number of threads: " + threadsOption);
+      }
+    }
     String dumpDir = options.get(OPT_DUMP);
     if (dumpDir != null) {
       DebugUtils.setDumpDirectory(dumpDir);
@@ -197,9 +379,126 @@ public class AnnotationProcessor extends AbstractProcessor {
 
     utils = new FactoryUtils(processingEnv);
     factory = new TypeFactory(utils, options.get(OPT_DEPSPATH));
+    contractFinder = new ContractFinder(utils);
 
     setupReflection();
     setupPaths();
+
+    String cacheFile = options.get(OPT_CACHE);
+    if (cacheFile != null && outputDirectory != null) {
+      cache = new ContractCache(new File(cacheFile), new File(outputDirectory),
+                                getCacheSalt(),
+                                processingEnv.getElementUtils());
+    }
+
+    transformerMemo = new ContractExpressionTransformer.Memo();
+    pendingSources = new ArrayList<SyntheticJavaFile>();
+    ungeneratedTypeNames = new HashSet<String>();
+    if (postCompile) {
+      postCompile = setupGenerateListener();
+      batch |= postCompile;
+    }
+  }
+
+  /**
+   * Returns a string summarizing the settings, other than the
+   * generated sources themselves, that affect compiled contract
+   * files.
+   */
+  @Ensures("result != null")
+  private String getCacheSalt() {
+    return ContractJavaCompiler.OPTIONS + " " + outputDirectory
+        + " " + classPath;
+  }
+
+  /**
+   * Registers a listener to be notified of written class files, for
+   * post-compile mode. Returns {@code true} on success; otherwise,
+   * warns that contract code is compiled in batch mode instead.
+   *
+   * <p>Contract code is compiled once the class files of all types,
+   * including member types, have been written, or at the end of the
+   * whole compilation if javac reports it. If javac reports errors
+   * instead, which prevent class files from being written, contract
+   * code is not compiled and a warning says so.
+   */
+  private boolean setupGenerateListener() {
+    if (outputDirectory == null) {
+      return warnPostCompileFallback("no class output directory");
+    }
+    Object options = getJavacOptions();
+    if (options == null) {
+      return warnPostCompileFallback("not running inside javac");
+    }
+    if (getJavacOption(options, "-proc:only") != null) {
+      return warnPostCompileFallback("-proc:only is set");
+    }
+    if (!JavaUtils.classExists("com.sun.source.util.JavacTask")) {
+      return warnPostCompileFallback("the compiler tree API is missing");
+    }
+
+    Runnable action = new Runnable() {
+      @Override
+      public void run() {
+        updatePostCompile();
+      }
+    };
+    try {
+      Class.forName("com.google.java.contract.core.apt.JavacUtils")
+          .getMethod("addGenerateListener", ProcessingEnvironment.class,
+                     Set.class, Runnable.class)
+          .invoke(null, processingEnv, ungeneratedTypeNames, action);
+      return true;
+    } catch (Exception e) {
+      return warnPostCompileFallback("the compilation task is unavailable ("
+                                     + e + ")");
+    }
+  }
+
+  /**
+   * Compiles pending contract code, in post-compile mode, if
+   * processing is over and all class files have been written, or
+   * abandons it if javac has reported errors.
+   */
+  protected void updatePostCompile() {
+    if (finished || !processingOver) {
+      return;
+    }
+    if (getJavacErrorCount() != 0) {
+      abandonPendingSources();
+    } else if (ungeneratedTypeNames.isEmpty()) {
+      finishProcessing();
+    }
+  }
+
+  /**
+   * Warns that post-compile mode is unavailable because of
+   * {@code reason}. Returns {@code false}.
+   */
+  @Requires("reason != null")
+  @Ensures("!result")
+  private boolean warnPostCompileFallback(String reason) {
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+        "option " + OPT_POSTCOMPILE + " ignored, compiling contracts "
+        + "in batch mode: " + reason);
+    return false;
+  }
+
+  /**
+   * Discards the sources set aside in post-compile mode, because
+   * javac reported errors and will not write the class files they are
+   * compiled against, and warns about it.
+   */
+  @Ensures("finished")
+  protected void abandonPendingSources() {
+    if (!pendingSources.isEmpty()) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+          "contract code not compiled: class files were not written "
+          + "because of compilation errors");
+      pendingSources.clear();
+    }
+    finished = true;
+    closeCompiler();
   }
 
   @Override
@@ -210,6 +509,24 @@ public class AnnotationProcessor extends AbstractProcessor {
   @Override
   public boolean process(Set<? extends TypeElement> annotations,
                          RoundEnvironment roundEnv) {
+    if (roundEnv.processingOver()) {
+      processingOver = true;
+      if (executor != null) {
+        executor.shutdown();
+        executor = null;
+      }
+      if (postCompile) {
+        updatePostCompile();
+      } else {
+        finishProcessing();
+      }
+      return false;
+    }
+
+    if (postCompile) {
+      addTypeNames(ungeneratedTypeNames, roundEnv.getRootElements());
+    }
+
     Set<TypeElement> rootElements = getContractedRootElements(roundEnv);
     if (rootElements.isEmpty()) {
       return false;
@@ -217,41 +534,273 @@ public class AnnotationProcessor extends AbstractProcessor {
 
     DiagnosticManager diagnosticManager = new DiagnosticManager();
 
-    List<TypeModel> types = createTypes(rootElements, diagnosticManager);
-    boolean success = diagnosticManager.getErrorCount() == 0;
+    List<TypeModel> undecoratedTypes =
+        createTypes(rootElements, diagnosticManager);
+    List<ContractSources> results = createSources(undecoratedTypes);
 
-    ArrayList<SyntheticJavaFile> sources =
-        new ArrayList<SyntheticJavaFile>(types.size());
-    if (success) {
-      for (TypeModel type : types) {
-        ContractWriter writer = new ContractWriter(debug);
-        type.accept(writer);
-        sources.add(new SyntheticJavaFile(type.getName().getBinaryName(),
-                                          writer.toByteArray(),
-                                          writer.getLineNumberMap()));
+    ArrayList<TypeModel> types = new ArrayList<TypeModel>();
+    ArrayList<SyntheticJavaFile> sources = new ArrayList<SyntheticJavaFile>();
+    for (ContractSources result : results) {
+      for (DiagnosticManager.Report r : result.diagnosticManager) {
+        diagnosticManager.report(r);
       }
+      types.addAll(result.types);
+      sources.addAll(result.sources);
+    }
+    boolean success = diagnosticManager.getErrorCount() == 0;
 
+    if (success) {
       if (dump) {
         dumpSources(types, sources);
       }
 
+      if (cache != null) {
+        removeUpToDateSources(types, sources);
+      }
+
+      if (batch) {
+        pendingSources.addAll(sources);
+      } else {
+        success = compileSources(sources, diagnosticManager);
+      }
+    }
+
+    printDiagnostics(success, diagnosticManager, false);
+
+    return true;
+  }
+
+  /**
+   * Adds to {@code names} the binary names of the types in
+   * {@code elements} and of their member types, recursively.
+   */
+  @Requires({
+    "names != null",
+    "elements != null"
+  })
+  private void addTypeNames(Set<String> names,
+                            Collection<? extends Element> elements) {
+    for (Element e : elements) {
+      if (e.getKind().isClass() || e.getKind().isInterface()) {
+        names.add(utils.elementUtils.getBinaryName((TypeElement) e)
+                  .toString());
+        addTypeNames(names, e.getEnclosedElements());
+      }
+    }
+  }
+
+  /**
+   * Removes from {@code sources} the files that the cache reports as
+   * already compiled. {@code types} is updated in parallel.
+   */
+  @Requires({
+    "types != null",
+    "sources != null",
+    "types.size() == sources.size()",
+    "cache != null"
+  })
+  @Ensures("types.size() == sources.size()")
+  protected void removeUpToDateSources(List<TypeModel> types,
+                                       List<SyntheticJavaFile> sources) {
+    Iterator<TypeModel> itType = types.iterator();
+    Iterator<SyntheticJavaFile> itFile = sources.iterator();
+    while (itType.hasNext() && itFile.hasNext()) {
+      TypeModel type = itType.next();
+      SyntheticJavaFile file = itFile.next();
+      if (cache.isUpToDate(type.getName().getBinaryName(), file)) {
+        itType.remove();
+        itFile.remove();
+      }
+    }
+  }
+
+  /**
+   * Compiles any remaining contract code and writes the profile, if
+   * enabled. Subsequent calls do nothing.
+   */
+  @Ensures("finished")
+  protected void finishProcessing() {
+    if (finished) {
+      return;
+    }
+    finished = true;
+
+    compilePendingSources();
+
+    if (profile.isEnabled()) {
+      File file = new File(DebugUtils.getDumpDirectory(), "profile.json");
       try {
-        ContractJavaCompiler compiler =
-            new ContractJavaCompiler(sourcePath, classPath, outputDirectory);
-        CompilationTask task = compiler.getTask(sources, diagnosticManager);
-        success = task.call();
+        profile.write(file);
       } catch (IOException e) {
-        throw new RuntimeException(e);
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+            "could not write profile to " + file + ": " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Compiles the sources set aside in batch mode, prints the
+   * resulting diagnostics and releases the contract compiler.
+   */
+  @Ensures({
+    "pendingSources.isEmpty()",
+    "compiler == null"
+  })
+  protected void compilePendingSources() {
+    if (!pendingSources.isEmpty()) {
+      DiagnosticManager diagnosticManager = new DiagnosticManager();
+      boolean success = compileSources(pendingSources, diagnosticManager);
+      pendingSources.clear();
+      printDiagnostics(success, diagnosticManager, true);
+    }
+    closeCompiler();
+  }
+
+  /**
+   * Compiles {@code sources} with the shared contract compiler,
+   * reporting diagnostics to {@code diagnosticManager}. Returns
+   * {@code true} on success.
+   */
+  @Requires({
+    "sources != null",
+    "diagnosticManager != null"
+  })
+  protected boolean compileSources(List<SyntheticJavaFile> sources,
+                                   DiagnosticManager diagnosticManager) {
+    if (sources.isEmpty()) {
+      return true;
+    }
+    try {
+      if (compiler == null) {
+        if (postCompile) {
+          String path = classPath == null
+              ? outputDirectory
+              : outputDirectory + File.pathSeparator + classPath;
+          compiler = new ContractJavaCompiler(null, path, outputDirectory);
+        } else if (cache != null) {
+          /*
+           * Helper classes of unchanged types are not compiled again;
+           * find them in the output directory. Other class files there
+           * may be older than their sources, for example those of
+           * types whose constants have just changed.
+           */
+          String path = classPath == null
+              ? outputDirectory
+              : classPath + File.pathSeparator + outputDirectory;
+          compiler =
+              new ContractJavaCompiler(sourcePath, path, outputDirectory);
+          compiler.preferSources();
+        } else {
+          compiler =
+              new ContractJavaCompiler(sourcePath, classPath, outputDirectory);
+        }
+      }
+      ProcessingProfile.Sample sample = profile.begin();
+      CompilationTask task = compiler.getTask(sources, diagnosticManager);
+      if (profile.isEnabled()) {
+        addProfilingListener(task);
       }
+      Map<URI, Set<String>> dependencies = new HashMap<URI, Set<String>>();
+      if (cache != null) {
+        addDependencyListener(task, dependencies);
+      }
+      boolean success = task.call();
+      profile.end(sample, "compile", null);
+      if (cache != null) {
+        if (success) {
+          cache.commit(sources, dependencies);
+          cache.save();
+        } else {
+          cache.discard(sources);
+        }
+      }
+      return success;
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Releases the resources held by the shared contract compiler, if
+   * any.
+   */
+  @Ensures("compiler == null")
+  protected void closeCompiler() {
+    if (compiler == null) {
+      return;
+    }
+    try {
+      compiler.close();
+    } catch (IOException e) {
+      /* Nothing left to write; ignore. */
     }
+    compiler = null;
+  }
 
+  /**
+   * Prints the diagnostics held by {@code diagnosticManager}, if
+   * there are any or {@code success} is {@code false}. If
+   * {@code stale} is {@code true}, the elements attached to the
+   * diagnostics come from an earlier round and are looked up again
+   * before printing.
+   */
+  @Requires("diagnosticManager != null")
+  protected void printDiagnostics(boolean success,
+                                  DiagnosticManager diagnosticManager,
+                                  boolean stale) {
+    ProcessingProfile.Sample sample = profile.begin();
     if (!success || diagnosticManager.getCount() != 0) {
       for (DiagnosticManager.Report r : diagnosticManager) {
-        printDiagnostic(r);
+        if (stale) {
+          printStaleDiagnostic(r);
+        } else {
+          printDiagnostic(r);
+        }
       }
     }
+    profile.end(sample, "diagnostics", null);
+  }
 
-    return true;
+  /**
+   * Attaches a listener to {@code task} that profiles the analysis
+   * and generation of each contract class, if supported.
+   */
+  @Requires("task != null")
+  private void addProfilingListener(CompilationTask task) {
+    if (!JavaUtils.classExists("com.sun.source.util.JavacTask")) {
+      return;
+    }
+    try {
+      Class.forName("com.google.java.contract.core.apt.JavacUtils")
+          .getMethod("addProfilingListener", CompilationTask.class,
+                     ProcessingProfile.class)
+          .invoke(null, task, profile);
+    } catch (Exception e) {
+      /* Profile the compilation as a whole only. */
+    }
+  }
+
+  /**
+   * Attaches a listener to {@code task} that records the types each
+   * compiled source refers to in {@code dependencies}, if supported.
+   */
+  @Requires({
+    "task != null",
+    "dependencies != null"
+  })
+  private void addDependencyListener(CompilationTask task,
+      Map<URI, Set<String>> dependencies) {
+    if (!JavaUtils.classExists("com.sun.source.util.JavacTask")) {
+      return;
+    }
+    try {
+      Class.forName("com.google.java.contract.core.apt.JavacUtils")
+          .getMethod("addDependencyListener", CompilationTask.class,
+                     Map.class)
+          .invoke(null, task, dependencies);
+    } catch (Exception e) {
+      /* Sources with unknown dependencies are not cached. */
+    }
   }
 
   /**
@@ -309,6 +858,107 @@ public class AnnotationProcessor extends AbstractProcessor {
     }
   }
 
+  /**
+   * Prints {@code r}, whose elements come from an earlier round,
+   * against their counterparts in the current round. Javac does not
+   * keep source positions for elements of past rounds.
+   */
+  @Requires("r != null")
+  protected void printStaleDiagnostic(DiagnosticManager.Report r) {
+    Messager messager = processingEnv.getMessager();
+    if (postCompile && r.getElement() != null) {
+      /*
+       * Source trees are gone once class files have been written; name
+       * the offending element instead.
+       */
+      messager.printMessage(r.getKind(),
+                            getElementDescription(r.getElement()) + ": "
+                            + r.getMessage(null));
+      return;
+    }
+
+    Element element = getCurrentElement(r.getElement());
+    if (element == null) {
+      messager.printMessage(r.getKind(), r.getMessage(null));
+      return;
+    }
+
+    AnnotationMirror annotation = null;
+    AnnotationValue value = null;
+    AnnotationMirror staleAnnotation = r.getAnnotationMirror();
+    if (staleAnnotation != null) {
+      String annotationName = staleAnnotation.getAnnotationType().toString();
+      for (AnnotationMirror a : element.getAnnotationMirrors()) {
+        if (a.getAnnotationType().toString().equals(annotationName)) {
+          annotation = a;
+          break;
+        }
+      }
+    }
+    if (annotation != null && r.getAnnotationValue() != null) {
+      String valueName = "";
+      for (Map.Entry<? extends ExecutableElement,
+                     ? extends AnnotationValue> entry :
+           staleAnnotation.getElementValues().entrySet()) {
+        if (entry.getValue() == r.getAnnotationValue()) {
+          valueName = entry.getKey().getSimpleName().toString();
+        }
+      }
+      for (Map.Entry<? extends ExecutableElement,
+                     ? extends AnnotationValue> entry :
+           annotation.getElementValues().entrySet()) {
+        if (entry.getKey().getSimpleName().contentEquals(valueName)) {
+          value = entry.getValue();
+        }
+      }
+    }
+
+    messager.printMessage(r.getKind(), r.getMessage(null),
+                          element, annotation, value);
+  }
+
+  /**
+   * Returns a human-readable qualified description of {@code element}.
+   */
+  @Requires("element != null")
+  @Ensures("result != null")
+  protected static String getElementDescription(Element element) {
+    if (element.getKind().isClass() || element.getKind().isInterface()) {
+      return ((TypeElement) element).getQualifiedName().toString();
+    }
+    Element parent = element.getEnclosingElement();
+    if (parent == null) {
+      return element.toString();
+    }
+    return getElementDescription(parent) + "." + element;
+  }
+
+  /**
+   * Returns the element of the current round that corresponds to
+   * {@code element}, or {@code null} if there is none.
+   */
+  protected Element getCurrentElement(Element element) {
+    if (element == null) {
+      return null;
+    }
+    if (element.getKind().isClass() || element.getKind().isInterface()) {
+      TypeElement type = (TypeElement) element;
+      return utils.elementUtils.getTypeElement(type.getQualifiedName());
+    }
+
+    Element parent = getCurrentElement(element.getEnclosingElement());
+    if (parent == null) {
+      return null;
+    }
+    String name = element.toString();
+    for (Element e : parent.getEnclosedElements()) {
+      if (e.getKind() == element.getKind() && e.toString().equals(name)) {
+        return e;
+      }
+    }
+    return null;
+  }
+
   /**
    * Dumps the computed Java source files in the dump directory of
    * Contracts for Java.
@@ -333,8 +983,7 @@ public class AnnotationProcessor extends AbstractProcessor {
 
   /**
    * Builds {@link TypeModel} objects from the {@code roots}. The
-   * types built contain contract methods. Helper types are created
-   * for interfaces.
+   * types built are not yet decorated with contract methods.
    */
   @Requires({
     "roots != null",
@@ -342,28 +991,17 @@ public class AnnotationProcessor extends AbstractProcessor {
   })
   @Ensures({
     "result != null",
-    "result.size() >= roots.size()",
-    "result.size() <= 2 * roots.size()"
+    "result.size() == roots.size()"
   })
   protected List<TypeModel> createTypes(Set<TypeElement> roots,
                                         DiagnosticManager diagnosticManager) {
-    boolean errors = false;
-
     /*
      * Extract all type names that will be part of this compilation
      * task.
      */
     final HashSet<String> knownTypeNames = new HashSet<String>();
     for (TypeElement r : roots) {
-      ElementScanner6<Void, Void> visitor =
-          new ElementScanner6<Void, Void>() {
-            @Override
-            public Void visitType(TypeElement e, Void p) {
-              knownTypeNames.add(e.getQualifiedName().toString());
-              return super.visitType(e, p);
-            }
-          };
-      r.accept(visitor, null);
+      knownTypeNames.addAll(contractFinder.getTypeNames(r));
     }
     /*
      * Mark annotations inherited from classes compiled in the same
@@ -373,7 +1011,9 @@ public class AnnotationProcessor extends AbstractProcessor {
     ArrayList<TypeModel> undecoratedTypes =
         new ArrayList<TypeModel>(roots.size());
     for (TypeElement r : roots) {
+      ProcessingProfile.Sample sample = profile.begin();
       TypeModel type = factory.createType(r, diagnosticManager);
+      profile.end(sample, "model", r.getQualifiedName().toString());
       ElementScanner annotator =
           new ElementScanner() {
             @Override
@@ -389,24 +1029,134 @@ public class AnnotationProcessor extends AbstractProcessor {
       type.accept(annotator);
       undecoratedTypes.add(type);
     }
-    /*
-     * Decorate the type models with contract methods and create
-     * helper types.
+
+    return undecoratedTypes;
+  }
+
+  /**
+   * The contract source files built from a single type model.
+   */
+  protected static class ContractSources {
+    /**
+     * The decorated type and its helper type, if any.
+     */
+    protected List<TypeModel> types;
+
+    /**
+     * The source files of {@link #types}, in the same order.
+     */
+    protected List<SyntheticJavaFile> sources;
+
+    /**
+     * The diagnostics reported while building this object.
      */
-    ArrayList<TypeModel> types =
-        new ArrayList<TypeModel>(undecoratedTypes.size());
-    for (TypeModel type : undecoratedTypes) {
-      ClassContractCreator creator =
-          new ClassContractCreator(diagnosticManager);
-      type.accept(creator);
-      TypeModel helper = creator.getHelperType();
-      types.add(type);
-      if (helper != null) {
-        types.add(helper);
+    protected DiagnosticManager diagnosticManager;
+  }
+
+  /**
+   * Decorates each of the {@code undecoratedTypes} with contract
+   * methods, creates helper types for interfaces, and writes their
+   * source files. Types are handled concurrently if this processor
+   * has been configured with more than one thread; the returned list
+   * is in the same order as {@code undecoratedTypes} in either case.
+   *
+   * <p>No {@code javax.lang.model} object is accessed during this
+   * step.
+   */
+  @Requires("undecoratedTypes != null")
+  @Ensures({
+    "result != null",
+    "result.size() == undecoratedTypes.size()"
+  })
+  protected List<ContractSources> createSources(
+      List<TypeModel> undecoratedTypes) {
+    ArrayList<ContractSources> results =
+        new ArrayList<ContractSources>(undecoratedTypes.size());
+    if (threads <= 1 || undecoratedTypes.size() <= 1) {
+      for (TypeModel type : undecoratedTypes) {
+        results.add(createSources(type));
+      }
+      return results;
+    }
+
+    if (executor == null) {
+      executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "cofoja-apt");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    ArrayList<Future<ContractSources>> futures =
+        new ArrayList<Future<ContractSources>>(undecoratedTypes.size());
+    for (final TypeModel type : undecoratedTypes) {
+      futures.add(executor.submit(new Callable<ContractSources>() {
+        @Override
+        public ContractSources call() {
+          return createSources(type);
+        }
+      }));
+    }
+    try {
+      for (Future<ContractSources> future : futures) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
       }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
     }
+    return results;
+  }
 
-    return types;
+  /**
+   * Decorates {@code type} with contract methods, creates its helper
+   * type if it is an interface, and writes their source files. Source
+   * files are not written if errors have been reported.
+   */
+  @Requires("type != null")
+  @Ensures("result != null")
+  protected ContractSources createSources(TypeModel type) {
+    ContractSources result = new ContractSources();
+    result.diagnosticManager = new DiagnosticManager();
+    result.types = new ArrayList<TypeModel>(2);
+    result.sources = new ArrayList<SyntheticJavaFile>(2);
+
+    ProcessingProfile.Sample sample = profile.begin();
+    ClassContractCreator creator =
+        new ClassContractCreator(result.diagnosticManager, transformerMemo,
+                                 compact);
+    type.accept(creator);
+    profile.end(sample, "create", type.getName().getQualifiedName());
+    TypeModel helper = creator.getHelperType();
+    result.types.add(type);
+    if (helper != null) {
+      result.types.add(helper);
+    }
+
+    if (!result.diagnosticManager.hasErrors()) {
+      for (TypeModel t : result.types) {
+        sample = profile.begin();
+        ContractWriter writer = new ContractWriter(debug);
+        t.accept(writer);
+        result.sources.add(
+            new SyntheticJavaFile(t.getName().getBinaryName(),
+                                  writer.toByteArray(),
+                                  writer.getLineNumberMap()));
+        profile.end(sample, "write", t.getName().getQualifiedName());
+      }
+    }
+    return result;
   }
 
   /**
@@ -424,9 +1174,11 @@ public class AnnotationProcessor extends AbstractProcessor {
     Set<TypeElement> contractedRootElements =
         new HashSet<TypeElement>(allElements.size());
 
-    ContractFinder cf = new ContractFinder(utils);
     for (Element e : allElements) {
-      if (e.accept(cf, null)) {
+      ProcessingProfile.Sample sample = profile.begin();
+      boolean contracted = e.accept(contractFinder, null);
+      profile.end(sample, "find", getElementDescription(e));
+      if (contracted) {
         contractedRootElements.add(getRootElement(e));
       }
     }
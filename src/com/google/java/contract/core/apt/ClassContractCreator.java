@@ -60,19 +60,39 @@ public class ClassContractCreator extends ElementScanner {
   protected TypeModel type;
   protected TypeModel helperType;
   protected ContractMethodModel invariant;
+  protected ContractMethodModel constantInvariant;
 
   protected ContractExpressionTransformer transformer;
+  protected ContractExpressionTransformer.Memo memo;
+  protected boolean compact;
 
   /**
    * Constructs a new ClassContractCreator.
    */
   @Requires("diagnosticManager != null")
   public ClassContractCreator(DiagnosticManager diagnosticManager) {
+    this(diagnosticManager, null, false);
+  }
+
+  /**
+   * Constructs a new ClassContractCreator sharing transformed
+   * contract expressions through {@code memo}, if not {@code null}.
+   * If {@code compact} is {@code true}, compact contract methods are
+   * built.
+   */
+  @Requires("diagnosticManager != null")
+  public ClassContractCreator(DiagnosticManager diagnosticManager,
+                              ContractExpressionTransformer.Memo memo,
+                              boolean compact) {
     this.diagnosticManager = diagnosticManager;
+    this.memo = memo;
+    this.compact = compact;
     type = null;
     helperType = null;
     invariant = null;
-    transformer = new ContractExpressionTransformer(diagnosticManager, false);
+    constantInvariant = null;
+    transformer =
+        new ContractExpressionTransformer(diagnosticManager, false, memo);
   }
 
   public TypeModel getHelperType() {
@@ -83,7 +103,7 @@ public class ClassContractCreator extends ElementScanner {
   public void visitType(TypeModel type) {
     if (this.type != null) {
       ClassContractCreator creator =
-          new ClassContractCreator(diagnosticManager);
+          new ClassContractCreator(diagnosticManager, memo, compact);
       type.accept(creator);
       if (creator.getHelperType() != null) {
         this.type.addEnclosedElement(creator.getHelperType());
@@ -101,7 +121,8 @@ public class ClassContractCreator extends ElementScanner {
 
   @Override
   public void visitMethod(MethodModel method) {
-    method.accept(new MethodContractCreator(diagnosticManager));
+    method.accept(
+        new MethodContractCreator(diagnosticManager, memo, compact));
   }
 
   @Override
@@ -116,6 +137,12 @@ public class ClassContractCreator extends ElementScanner {
             return "com.google.java.contract.InvariantError";
           }
         };
-    invariant = createContractMethods(trait, invariant, annotation);
+    if (annotation.isConstant()) {
+      constantInvariant = createContractMethods(trait, constantInvariant,
+                                                annotation, compact);
+    } else {
+      invariant =
+          createContractMethods(trait, invariant, annotation, compact);
+    }
   }
 }
@@ -0,0 +1,346 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.apt;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.Requires;
+import com.google.java.contract.core.util.JavaUtils;
+import com.google.java.contract.core.util.SyntheticJavaFile;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.Elements;
+
+/**
+ * A persistent record of the contract source files that have been
+ * compiled successfully, used to avoid compiling them again when they
+ * have not changed.
+ *
+ * <p>Each generated source file is identified by the binary name of
+ * its type and summarized by a digest of its content and of the types
+ * it refers to. Contract sources embed the contracts of the type, its
+ * method signatures and the contracts it inherits, but the compiled
+ * code also depends on the types that contract expressions use, for
+ * example through constants, which are inlined, or overload
+ * resolution. When a source is compiled, the names of the types its
+ * code resolves to are recorded along with the digest; each such type
+ * is summarized by its supertypes and the signatures, modifiers and
+ * constant values of its members, as seen by the current compilation.
+ *
+ * <p>Types of the {@code java} and {@code javax} packages are not
+ * tracked, and changes to method bodies of referenced types, which do
+ * not affect compiled contracts, are ignored. Sources whose
+ * referenced types could not be determined, because the contract
+ * compiler is not javac, are never considered up to date.
+ */
+@Invariant({
+  "file != null",
+  "outputDirectory != null",
+  "salt != null",
+  "elements != null",
+  "digests != null",
+  "stagedNames != null",
+  "fingerprints != null"
+})
+public class ContractCache {
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  protected File file;
+  protected File outputDirectory;
+  protected String salt;
+  protected Elements elements;
+
+  /**
+   * Entries of compiled sources, by binary name. Each entry is the
+   * digest of the source and its referenced types, followed by the
+   * names of these types, separated by spaces.
+   */
+  protected Properties digests;
+
+  /**
+   * Digests of sources that have been checked but not compiled yet.
+   */
+  protected Map<SyntheticJavaFile, String[]> stagedNames;
+
+  /**
+   * Summaries of referenced types, by qualified name, computed at
+   * most once per compilation.
+   */
+  protected Map<String, String> fingerprints;
+
+  /**
+   * Constructs a new ContractCache stored in {@code file}, for
+   * contract files compiled into {@code outputDirectory}. The
+   * {@code salt} string is mixed into every digest; it should capture
+   * any setting that affects the compiled output other than the
+   * source itself. Referenced types are looked up through
+   * {@code elements}. A missing or unreadable cache file is treated as
+   * empty.
+   */
+  @Requires({
+    "file != null",
+    "outputDirectory != null",
+    "salt != null",
+    "elements != null"
+  })
+  public ContractCache(File file, File outputDirectory, String salt,
+                       Elements elements) {
+    this.file = file;
+    this.outputDirectory = outputDirectory;
+    this.salt = salt;
+    this.elements = elements;
+    digests = new Properties();
+    stagedNames = new IdentityHashMap<SyntheticJavaFile, String[]>();
+    fingerprints = new HashMap<String, String>();
+
+    if (file.isFile()) {
+      InputStream in = null;
+      try {
+        in = new FileInputStream(file);
+        digests.load(in);
+      } catch (IOException e) {
+        digests.clear();
+      } finally {
+        if (in != null) {
+          try {
+            in.close();
+          } catch (IOException e) {
+            /* Ignore. */
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns {@code true} if {@code source}, the contract source file
+   * for the type named {@code binaryName}, has already been compiled,
+   * none of the types it refers to has changed since, and its output
+   * is still present. Otherwise, {@code source} is remembered so that
+   * it can be {@link #commit(List, Map) committed} once compiled.
+   */
+  @Requires({
+    "binaryName != null",
+    "source != null"
+  })
+  public boolean isUpToDate(String binaryName, SyntheticJavaFile source) {
+    String digest = getDigest(source);
+    String entry = digests.getProperty(binaryName);
+    if (entry != null) {
+      String[] parts = entry.split(" ");
+      List<String> typeNames = Arrays.asList(parts).subList(1, parts.length);
+      if (parts[0].equals(getDigest(digest, typeNames))
+          && getOutputFile(binaryName).isFile()) {
+        return true;
+      }
+    }
+    stagedNames.put(source, new String[] { binaryName, digest });
+    return false;
+  }
+
+  /**
+   * Records {@code sources} as successfully compiled.
+   * {@code dependencies} maps the URI of each source to the qualified
+   * names of the types its compiled code refers to; sources that are
+   * missing from it, or that have not been checked through
+   * {@link #isUpToDate}, are not recorded.
+   */
+  @Requires({
+    "sources != null",
+    "dependencies != null"
+  })
+  public void commit(List<SyntheticJavaFile> sources,
+                     Map<URI, Set<String>> dependencies) {
+    for (SyntheticJavaFile source : sources) {
+      String[] entry = stagedNames.remove(source);
+      Set<String> names = dependencies.get(source.toUri());
+      if (entry == null || names == null) {
+        continue;
+      }
+
+      TreeSet<String> typeNames = new TreeSet<String>();
+      for (String name : names) {
+        if (!name.startsWith("java.") && !name.startsWith("javax.")) {
+          typeNames.add(name);
+        }
+      }
+      StringBuilder buffer = new StringBuilder();
+      buffer.append(getDigest(entry[1], typeNames));
+      for (String name : typeNames) {
+        buffer.append(' ').append(name);
+      }
+      digests.setProperty(entry[0], buffer.toString());
+    }
+  }
+
+  /**
+   * Forgets about {@code sources}, which failed to compile.
+   */
+  @Requires("sources != null")
+  public void discard(List<SyntheticJavaFile> sources) {
+    for (SyntheticJavaFile source : sources) {
+      stagedNames.remove(source);
+    }
+  }
+
+  /**
+   * Writes this cache back to its file.
+   */
+  public void save() throws IOException {
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (parent != null) {
+      parent.mkdirs();
+    }
+    OutputStream out = new FileOutputStream(file);
+    try {
+      digests.store(out, "Contracts for Java compilation cache");
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Returns the compiled contract file for the type named
+   * {@code binaryName}.
+   */
+  @Requires("binaryName != null")
+  @Ensures("result != null")
+  protected File getOutputFile(String binaryName) {
+    String fileName;
+    if (binaryName.endsWith(JavaUtils.HELPER_CLASS_SUFFIX)) {
+      fileName = binaryName + ".class";
+    } else {
+      fileName = binaryName + JavaUtils.CONTRACTS_EXTENSION;
+    }
+    return new File(outputDirectory, fileName);
+  }
+
+  /**
+   * Returns the digest of {@code source} alone.
+   */
+  @Requires("source != null")
+  @Ensures("result != null")
+  protected String getDigest(SyntheticJavaFile source) {
+    return getDigest(salt, source.getCharContent(true).toString());
+  }
+
+  /**
+   * Returns the digest combining {@code sourceDigest} with the
+   * current summaries of the types named {@code typeNames}.
+   */
+  @Requires({
+    "sourceDigest != null",
+    "typeNames != null"
+  })
+  @Ensures("result != null")
+  protected String getDigest(String sourceDigest,
+                             Iterable<String> typeNames) {
+    StringBuilder buffer = new StringBuilder();
+    for (String name : typeNames) {
+      buffer.append(name).append('\0');
+      buffer.append(getFingerprint(name)).append('\0');
+    }
+    return getDigest(sourceDigest, buffer.toString());
+  }
+
+  /**
+   * Returns a summary of the type named {@code typeName}, which
+   * changes whenever code compiled against it may change.
+   */
+  @Requires("typeName != null")
+  @Ensures("result != null")
+  protected String getFingerprint(String typeName) {
+    String fingerprint = fingerprints.get(typeName);
+    if (fingerprint != null) {
+      return fingerprint;
+    }
+
+    TypeElement type = elements.getTypeElement(typeName);
+    if (type == null) {
+      fingerprint = "";
+    } else {
+      StringBuilder buffer = new StringBuilder();
+      buffer.append(type.getKind()).append(' ').append(type.getModifiers());
+      buffer.append(' ').append(type.getSuperclass());
+      buffer.append(' ').append(type.getInterfaces());
+      for (Element e : type.getEnclosedElements()) {
+        buffer.append('\n').append(e.getKind());
+        buffer.append(' ').append(e.getModifiers());
+        buffer.append(' ').append(e).append(' ').append(e.asType());
+        if (e instanceof VariableElement) {
+          buffer.append(" = ")
+              .append(((VariableElement) e).getConstantValue());
+        }
+      }
+      fingerprint = buffer.toString();
+    }
+    fingerprints.put(typeName, fingerprint);
+    return fingerprint;
+  }
+
+  /**
+   * Returns the hexadecimal SHA-1 digest of {@code prefix} and
+   * {@code content}.
+   */
+  @Requires({
+    "prefix != null",
+    "content != null"
+  })
+  @Ensures("result != null")
+  private static String getDigest(String prefix, String content) {
+    MessageDigest md;
+    try {
+      md = MessageDigest.getInstance("SHA-1");
+      md.update(prefix.getBytes("UTF-8"));
+      md.update((byte) 0);
+      md.update(content.getBytes("UTF-8"));
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+
+    byte[] bytes = md.digest();
+    char[] chars = new char[2 * bytes.length];
+    for (int i = 0; i < bytes.length; ++i) {
+      chars[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+      chars[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xf];
+    }
+    return new String(chars);
+  }
+}
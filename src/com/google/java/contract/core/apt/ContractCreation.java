@@ -36,9 +36,8 @@ import com.google.java.contract.core.util.Elements;
 import com.google.java.contract.core.util.JavaTokenizer.Token;
 import com.google.java.contract.core.util.JavaTokenizer.TokenKind;
 import com.google.java.contract.core.util.JavaUtils;
-import com.google.java.contract.core.util.PushbackTokenizer;
+import com.google.java.contract.core.util.TokenList;
 
-import java.io.StringReader;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
@@ -53,6 +52,10 @@ public class ContractCreation {
   static final String RAISE_METHOD =
       "com.google.java.contract.core.runtime.ContractRuntime.raise";
 
+  static final String CLAUSE_MESSAGE_METHOD =
+      "com.google.java.contract.core.runtime.ContractRuntime"
+      + ".getClauseMessage";
+
   /**
    * Returns {@code code} with all unqualified or this-qualified
    * identifiers followed by an open parenthesis rebased to
@@ -66,44 +69,69 @@ public class ContractCreation {
   @Ensures("result != null")
   static String rebaseLocalCalls(String code, String that,
                                  Set<String> whitelist) {
-    StringBuilder buffer = new StringBuilder();
-    PushbackTokenizer tokenizer = new PushbackTokenizer(new StringReader(code));
+    return rebaseLocalCalls(new TokenList(code), that, whitelist).toString();
+  }
+
+  /**
+   * Returns a copy of {@code code} with all unqualified or
+   * this-qualified identifiers followed by an open parenthesis
+   * rebased to {@code that}. Unqualified identifiers in
+   * {@code whitelist} are not subject to this change.
+   */
+  @Requires({
+    "code != null",
+    "that != null"
+  })
+  @Ensures("result != null")
+  static TokenList rebaseLocalCalls(TokenList code, String that,
+                                    Set<String> whitelist) {
+    TokenList list = new TokenList();
     boolean qualified = false;
-    while (tokenizer.hasNext()) {
-      Token token = tokenizer.next();
+    int size = code.size();
+    for (int i = 0; i < size; ++i) {
+      Token token = code.get(i);
       if (!qualified && token.kind == TokenKind.WORD
-          && (whitelist == null || !whitelist.contains(token.text))) {
-        if (token.text.equals("this")) {
-          buffer.append("( ");
-          buffer.append(JavaUtils.BEGIN_GENERATED_CODE);
-          buffer.append(that);
-          buffer.append(JavaUtils.END_GENERATED_CODE);
-          buffer.append(" )");
+          && (whitelist == null || !whitelist.contains(token.getText()))) {
+        if (token.textEquals("this")) {
+          list.add(TokenKind.SYMBOL, "(");
+          list.add(TokenKind.SPACE, " ");
+          list.add(TokenKind.COMMENT, JavaUtils.BEGIN_GENERATED_CODE);
+          list.add(TokenKind.WORD, that);
+          list.add(TokenKind.COMMENT, JavaUtils.END_GENERATED_CODE);
+          list.add(TokenKind.SPACE, " ");
+          list.add(TokenKind.SYMBOL, ")");
         } else {
-          if (JavaUtils.lookingAt(tokenizer, "(")) {
-            buffer.append(JavaUtils.BEGIN_GENERATED_CODE);
-            buffer.append(that);
-            buffer.append(".");
-            buffer.append(JavaUtils.END_GENERATED_CODE);
-            buffer.append(token.text);
-          } else {
-            buffer.append(token.text);
+          if (code.lookingAt(i + 1, "(")) {
+            list.add(TokenKind.COMMENT, JavaUtils.BEGIN_GENERATED_CODE);
+            list.add(TokenKind.WORD, that);
+            list.add(TokenKind.SYMBOL, ".");
+            list.add(TokenKind.COMMENT, JavaUtils.END_GENERATED_CODE);
           }
+          list.add(token);
         }
       } else {
-        buffer.append(token.text);
+        list.add(token);
       }
-      qualified = token.text.equals(".");
+      qualified = token.textEquals(".");
     }
-    return buffer.toString();
+    return list;
   }
 
   /**
    * Builds a contract method body from the {@code trait}.
    *
+   * <p>By default, each clause is evaluated in its own exception
+   * region and followed by its own failure handling code. If
+   * {@code compact} is {@code true} and there are several clauses,
+   * they are all evaluated in a single exception region instead, with
+   * the index of the current clause kept in a variable, and failures
+   * are handled once, at the end of the method. This results in
+   * smaller contract methods, which are more likely to be inlined.
+   *
    * @param contract the contract method to add the clauses to
    * @param trait the trait to get contract code information from
    * @param annotation the source of the contract
+   * @param compact whether to build a compact method body
    */
   @Requires({
     "contract != null",
@@ -112,17 +140,23 @@ public class ContractCreation {
   })
   static void addContractClauses(ContractMethodModel contract,
                                  ContractCreationTrait trait,
-                                 ContractAnnotationModel annotation) {
+                                 ContractAnnotationModel annotation,
+                                 boolean compact) {
+    if (compact && trait.getExpressionTokens().size() > 1) {
+      addCompactContractClauses(contract, trait, annotation);
+      return;
+    }
+
     ContractKind kind = getContractKind(annotation);
 
-    Iterator<String> itCode = trait.getExpressions().iterator();
+    Iterator<TokenList> itCode = trait.getExpressionTokens().iterator();
     Iterator<String> itMsg = trait.getMessages().iterator();
     Iterator<String> itComment = trait.getSourceExpressions().iterator();
     int successVariableCount = 0;
     int exceptionVariableCount = 0;
     while (itCode.hasNext()) {
       StringBuilder buffer = new StringBuilder();
-      String expr = itCode.next();
+      TokenList expr = itCode.next();
       String exprMsg = itMsg.next();
       String exprComment = itComment.next();
 
@@ -150,9 +184,10 @@ public class ContractCreation {
       buffer.append(JavaUtils.quoteComment(exprComment));
       buffer.append(JavaUtils.END_LOCATION_COMMENT);
       if (!annotation.isVirtual()) {
-        buffer.append(rebaseLocalCalls(expr, JavaUtils.THAT_VARIABLE, null));
+        rebaseLocalCalls(expr, JavaUtils.THAT_VARIABLE, null)
+            .appendTo(buffer);
       } else {
-        buffer.append(expr);
+        expr.appendTo(buffer);
       }
       buffer.append("; ");
       buffer.append("} catch(Throwable ");
@@ -193,6 +228,126 @@ public class ContractCreation {
     }
   }
 
+  /**
+   * Builds a compact contract method body from the {@code trait}.
+   *
+   * @see #addContractClauses(ContractMethodModel,ContractCreationTrait,ContractAnnotationModel,boolean)
+   */
+  @Requires({
+    "contract != null",
+    "trait != null",
+    "annotation != null"
+  })
+  private static void addCompactContractClauses(
+      ContractMethodModel contract, ContractCreationTrait trait,
+      ContractAnnotationModel annotation) {
+    ContractKind kind = getContractKind(annotation);
+    List<TokenList> exprs = trait.getExpressionTokens();
+
+    String clauseVariableName = JavaUtils.CLAUSE_VARIABLE;
+    String exceptionTempVariableName =
+        JavaUtils.EXCEPTION_VARIABLE_PREFIX + "$0";
+    String exceptionVariableName =
+        JavaUtils.EXCEPTION_VARIABLE_PREFIX + "$1";
+
+    StringBuilder buffer = new StringBuilder();
+    buffer.append("int ");
+    buffer.append(clauseVariableName);
+    buffer.append(" = 0; ");
+    buffer.append("Throwable ");
+    buffer.append(exceptionVariableName);
+    buffer.append(" = null; ");
+    buffer.append(JavaUtils.CLAUSE_LABEL);
+    buffer.append(": try { ");
+
+    /*
+     * Evaluate predicates in turn. Success variables are kept, and
+     * first assigned a dummy value, so as to be able to track the
+     * start of the evaluation of each clause in the generated
+     * bytecode.
+     */
+    Iterator<String> itComment = trait.getSourceExpressions().iterator();
+    int successVariableCount = 0;
+    for (TokenList expr : exprs) {
+      String successVariableName =
+          JavaUtils.SUCCESS_VARIABLE_PREFIX + "$" + successVariableCount++;
+      buffer.append("boolean ");
+      buffer.append(successVariableName);
+      buffer.append(" = false; ");
+      buffer.append(successVariableName);
+      buffer.append(" = ");
+      buffer.append(JavaUtils.BEGIN_LOCATION_COMMENT);
+      buffer.append(JavaUtils.quoteComment(itComment.next()));
+      buffer.append(JavaUtils.END_LOCATION_COMMENT);
+      if (!annotation.isVirtual()) {
+        rebaseLocalCalls(expr, JavaUtils.THAT_VARIABLE, null)
+            .appendTo(buffer);
+      } else {
+        expr.appendTo(buffer);
+      }
+      buffer.append("; ");
+      buffer.append("if (!");
+      buffer.append(successVariableName);
+      buffer.append(") { break ");
+      buffer.append(JavaUtils.CLAUSE_LABEL);
+      buffer.append("; } ");
+      buffer.append("++");
+      buffer.append(clauseVariableName);
+      buffer.append("; ");
+    }
+    if (kind.getVariance() == ContractVariance.CONTRAVARIANT) {
+      buffer.append("return null; ");
+    } else {
+      buffer.append("return; ");
+    }
+    buffer.append("} catch (Throwable ");
+    buffer.append(exceptionTempVariableName);
+    buffer.append(") { ");
+    buffer.append(exceptionVariableName);
+    buffer.append(" = ");
+    buffer.append(exceptionTempVariableName);
+    buffer.append("; } ");
+
+    contract.addStatement(buffer.toString());
+
+    /*
+     * Handle failure of any clause. Only failures reach the end of
+     * the method, so this is the epilogue.
+     */
+    StringBuilder messages = new StringBuilder();
+    Iterator<String> itMsg = trait.getMessages().iterator();
+    while (itMsg.hasNext()) {
+      messages.append(ContractWriter.quoteString(itMsg.next()));
+      if (itMsg.hasNext()) {
+        messages.append("\\000");
+      }
+    }
+    String messageCode = CLAUSE_MESSAGE_METHOD + "(\"" + messages + "\", "
+        + clauseVariableName + ")";
+    buffer = new StringBuilder();
+    if (kind.getVariance() == ContractVariance.CONTRAVARIANT) {
+      buffer.append("return new ");
+      buffer.append(trait.getExceptionName());
+      buffer.append("(");
+      buffer.append(messageCode);
+      buffer.append(", ");
+      buffer.append(JavaUtils.ERROR_VARIABLE);
+      buffer.append(", ");
+      buffer.append(exceptionVariableName);
+      buffer.append("); ");
+    } else {
+      buffer.append(RAISE_METHOD);
+      buffer.append("(new ");
+      buffer.append(trait.getExceptionName());
+      buffer.append("(");
+      buffer.append(messageCode);
+      buffer.append(", ");
+      buffer.append(exceptionVariableName);
+      buffer.append("));");
+    }
+    contract.setEpilogue(buffer.toString());
+  }
+
   /**
    * Builds a contract method body that calls the specified helper
    * contract method.
@@ -234,11 +389,18 @@ public class ContractCreation {
   static ContractKind getContractKind(ContractAnnotationModel annotation) {
     switch (annotation.getKind()) {
       case INVARIANT:
-        return ContractKind.INVARIANT;
+        return annotation.isConstant()
+            ? ContractKind.CONSTANT_INVARIANT
+            : ContractKind.INVARIANT;
       case REQUIRES:
         return ContractKind.PRE;
       case ENSURES:
-        return ContractKind.POST;
+        if (annotation.isAsync()) {
+          return ContractKind.ASYNC_POST;
+        }
+        return annotation.isElementwise()
+            ? ContractKind.ELEMENT_POST
+            : ContractKind.POST;
       case THROW_ENSURES:
         return ContractKind.SIGNAL;
       default:
@@ -251,7 +413,7 @@ public class ContractCreation {
    * helper methods as needed.
    *
    * @see #createContractMethod(ContractCreationTrait,ContractMethodModel,ContractAnnotationModel,MethodModel)
-   * @see #createContractHelper(ContractCreationTrait,ContractAnnotationModel)
+   * @see #createContractHelper(ContractCreationTrait,ContractAnnotationModel,boolean)
    */
   @Requires({
     "trait != null",
@@ -259,11 +421,11 @@ public class ContractCreation {
   })
   static ContractMethodModel createContractMethods(
       ContractCreationTrait trait, ContractMethodModel contract,
-      ContractAnnotationModel annotation) {
+      ContractAnnotationModel annotation, boolean compact) {
     if (!trait.visit(annotation)) {
       return null;
     }
-    MethodModel helper = createContractHelper(trait, annotation);
+    MethodModel helper = createContractHelper(trait, annotation, compact);
     return createContractMethod(trait, contract, annotation, helper);
   }
 
@@ -441,6 +603,7 @@ public class ContractCreation {
    *
    * @param trait the trait object used to create the contract
    * @param annotation the source of the contract
+   * @param compact whether to build a compact method body
    */
   @Requires({
     "trait != null",
@@ -448,7 +611,8 @@ public class ContractCreation {
   })
   @Ensures("result != null")
   static MethodModel createContractHelper(ContractCreationTrait trait,
-                                          ContractAnnotationModel annotation) {
+                                          ContractAnnotationModel annotation,
+                                          boolean compact) {
     ContractKind kind = getContractKind(annotation);
     MethodModel method = createBlankContractHelper(kind, annotation, null);
 
@@ -474,8 +638,9 @@ public class ContractCreation {
       Elements.copyParameters(contract, trait.getInitialParameters());
       Elements.copyParameters(contract, trait.getExtraParameters());
 
-      addContractClauses(contract, trait, annotation);
-      if (kind.getVariance() == ContractVariance.CONTRAVARIANT) {
+      addContractClauses(contract, trait, annotation, compact);
+      if (kind.getVariance() == ContractVariance.CONTRAVARIANT
+          && contract.getEpilogue() == null) {
         contract.setEpilogue("return null;");
       }
 
@@ -22,6 +22,7 @@ import com.google.java.contract.Ensures;
 import com.google.java.contract.Requires;
 import com.google.java.contract.core.model.ContractAnnotationModel;
 import com.google.java.contract.core.model.VariableModel;
+import com.google.java.contract.core.util.TokenList;
 
 import java.util.List;
 
@@ -49,6 +50,17 @@ interface ContractCreationTrait {
   @Ensures("result != null")
   public List<String> getExpressions();
 
+  /**
+   * Returns the list of expressions to be evaluated by the contract,
+   * as tokens. The text of each token list is the corresponding
+   * element of {@link #getExpressions()}.
+   */
+  @Ensures({
+    "result != null",
+    "result.size() == getExpressions().size()"
+  })
+  public List<TokenList> getExpressionTokens();
+
   /**
    * Returns the list of failure messages associated with the
    * assertions of the contract.
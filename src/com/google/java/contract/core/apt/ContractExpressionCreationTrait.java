@@ -20,6 +20,7 @@ package com.google.java.contract.core.apt;
 import com.google.java.contract.Invariant;
 import com.google.java.contract.Requires;
 import com.google.java.contract.core.model.ContractAnnotationModel;
+import com.google.java.contract.core.util.TokenList;
 
 import java.util.List;
 
@@ -70,4 +71,9 @@ class ContractExpressionCreationTrait
   public List<String> getExpressions() {
     return transformer.getTransformedCode();
   }
+
+  @Override
+  public List<TokenList> getExpressionTokens() {
+    return transformer.getTransformedTokens();
+  }
 }
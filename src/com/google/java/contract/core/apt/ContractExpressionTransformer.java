@@ -27,11 +27,14 @@ import com.google.java.contract.core.util.BalancedTokenizer;
 import com.google.java.contract.core.util.JavaTokenizer.Token;
 import com.google.java.contract.core.util.JavaTokenizer.TokenKind;
 import com.google.java.contract.core.util.JavaUtils;
+import com.google.java.contract.core.util.TokenList;
 
-import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A contract expression checker and transformer. An instance of this
@@ -54,24 +57,68 @@ import java.util.List;
  * <p>All generated code is marked up with the appropriate tags, as
  * defined in {@link com.google.java.contract.core.util.JavaUtils}.
  *
+ * <p>Successful transformations can be shared between transformers
+ * through a {@link Memo}, so that contracts inherited by many types
+ * are only processed once.
+ *
  * @author nhat.minh.le@huoc.org (Nhat Minh Lê)
  * @author chatain@google.com (Leonardo Chatain)
  */
 @Invariant({
   "diagnosticManager != null",
   "oldId >= 0",
-  "oldParameters == null || oldParametersCode != null",
+  "oldParameters == null || oldParametersTokens != null",
   "oldParameters == null || oldParametersLineNumbers != null",
   "oldParameters == null || !oldParameters.contains(null)",
-  "oldParameters == null || !oldParametersCode.contains(null)",
-  "oldParameters == null || oldParameters.size() == oldParametersCode.size()",
+  "oldParameters == null || !oldParametersTokens.contains(null)",
+  "oldParameters == null " +
+      "|| oldParameters.size() == oldParametersTokens.size()",
   "oldParameters == null " +
       "|| oldParameters.size() == oldParametersLineNumbers.size()"
 })
 public class ContractExpressionTransformer {
+  /**
+   * A thread-safe record of successful transformations. The result
+   * of a transformation only depends on the contract expressions,
+   * their line numbers, whether old expressions are accepted, and the
+   * identifier of the first old variable to allocate, which together
+   * form the key of a memoized transformation.
+   */
+  public static class Memo {
+    protected ConcurrentHashMap<List<Object>, Transformation> transformations;
+
+    public Memo() {
+      transformations = new ConcurrentHashMap<List<Object>, Transformation>();
+    }
+
+    @Ensures("result >= 0")
+    public int size() {
+      return transformations.size();
+    }
+  }
+
+  /**
+   * The memoized results of a transformation. Old parameters are
+   * recreated from their number, as their names are the only thing
+   * that distinguishes them.
+   */
+  protected static class Transformation {
+    protected List<TokenList> newTokens;
+    protected List<TokenList> oldParametersTokens;
+    protected List<Long> oldParametersLineNumbers;
+  }
+
   private static final String MAGIC_CAST_METHOD =
       "com.google.java.contract.core.runtime.ContractRuntime.magicCast";
 
+  private static final TokenList MAGIC_CAST_CALL =
+      new TokenList(MAGIC_CAST_METHOD + "(");
+
+  private static final TokenList MAGIC_CAST_SEPARATOR =
+      new TokenList(", true ? null : ");
+
+  private static final TokenList MAGIC_CAST_END = new TokenList(")");
+
   /**
    * The diagnostic manager to report errors to.
    */
@@ -91,7 +138,7 @@ public class ContractExpressionTransformer {
   /**
    * The code corresponding to the old parameters.
    */
-  protected List<String> oldParametersCode;
+  protected List<TokenList> oldParametersTokens;
 
   /**
    * The line numbers corresponding to the old parameters.
@@ -101,7 +148,7 @@ public class ContractExpressionTransformer {
   /**
    * The processed code, free of {@code old()} expressions.
    */
-  protected List<String> newCode;
+  protected List<TokenList> newTokens;
 
   /**
    * Whether the last call to {@link #transform(List,Object)}
@@ -114,6 +161,12 @@ public class ContractExpressionTransformer {
    */
   protected int oldId;
 
+  /**
+   * The memo to look transformations up in and record them to, or
+   * {@code null}.
+   */
+  protected Memo memo;
+
   /**
    * Constructs a new ContractExpressionTransformer.
    *
@@ -122,12 +175,27 @@ public class ContractExpressionTransformer {
    */
   public ContractExpressionTransformer(DiagnosticManager diagnosticManager,
                                        boolean acceptOld) {
+    this(diagnosticManager, acceptOld, null);
+  }
+
+  /**
+   * Constructs a new ContractExpressionTransformer sharing successful
+   * transformations through {@code memo}.
+   *
+   * @param diagnosticManager manager to report errors to
+   * @param acceptOld whether old expressions are recognized
+   * @param memo the memo to share transformations through, or
+   * {@code null}
+   */
+  public ContractExpressionTransformer(DiagnosticManager diagnosticManager,
+                                       boolean acceptOld, Memo memo) {
     this.diagnosticManager = diagnosticManager;
+    this.memo = memo;
     this.acceptOld = acceptOld;
     oldParameters = null;
-    oldParametersCode = null;
+    oldParametersTokens = null;
     oldParametersLineNumbers = null;
-    newCode = null;
+    newTokens = null;
     parsed = false;
     oldId = 0;
   }
@@ -137,17 +205,16 @@ public class ContractExpressionTransformer {
     "tokenizer != null",
     "token != null"
   })
-  private void transformCommon(StringBuilder currentBuffer,
+  private void transformCommon(TokenList currentBuffer,
                               BalancedTokenizer tokenizer, Token token) {
     switch (token.kind) {
       case COMMENT:
-        int length = token.text.length();
-        for (int i = 0; i < length; ++i) {
-          currentBuffer.append(" ");
-        }
+        char[] spaces = new char[token.length];
+        Arrays.fill(spaces, ' ');
+        currentBuffer.add(TokenKind.SPACE, new String(spaces));
         break;
       default:
-        currentBuffer.append(token.text);
+        currentBuffer.add(token);
     }
   }
 
@@ -168,15 +235,27 @@ public class ContractExpressionTransformer {
   })
   @Ensures({
     "result == canQueryResults()",
-    "!result || newCode.size() == code.size()"
+    "!result || newTokens.size() == code.size()"
   })
   @SuppressWarnings("fallthrough")
   public boolean transform(List<String> code, List<Long> lineNumbers,
                            Object sourceInfo) {
+    List<Object> key = null;
+    if (memo != null) {
+      key = Arrays.<Object>asList(acceptOld, oldId,
+                                  new ArrayList<String>(code),
+                                  new ArrayList<Long>(lineNumbers));
+      Transformation transformation = memo.transformations.get(key);
+      if (transformation != null) {
+        reuse(transformation);
+        return true;
+      }
+    }
+
     oldParameters = new ArrayList<VariableModel>();
-    oldParametersCode = new ArrayList<String>();
+    oldParametersTokens = new ArrayList<TokenList>();
     oldParametersLineNumbers = new ArrayList<Long>();
-    newCode = new ArrayList<String>();
+    newTokens = new ArrayList<TokenList>();
     parsed = true;
 
     Iterator<Long> iterLineNumber = lineNumbers.iterator();
@@ -185,14 +264,13 @@ public class ContractExpressionTransformer {
     for (String expr : code) {
       Long lineNumber = iterLineNumber.hasNext() ? iterLineNumber.next() : null;
 
-      BalancedTokenizer tokenizer =
-          new BalancedTokenizer(new StringReader(expr));
+      BalancedTokenizer tokenizer = new BalancedTokenizer(expr);
       int currentLevel = 0;
       int newLevel = 0;
 
-      StringBuilder buffer = new StringBuilder();
+      TokenList buffer = new TokenList();
 
-      StringBuilder oldBuffer = null;
+      TokenList oldBuffer = null;
       String oldName = null;
       int oldContext = -1;
 
@@ -200,10 +278,10 @@ public class ContractExpressionTransformer {
         Token token = tokenizer.next();
         newLevel = tokenizer.getCurrentLevel();
 
-        StringBuilder currentBuffer = oldBuffer != null ? oldBuffer : buffer;
+        TokenList currentBuffer = oldBuffer != null ? oldBuffer : buffer;
 
         /* Unexpected ';' error. */
-        if (newLevel == 0 && token.text.equals(";")) {
+        if (newLevel == 0 && token.textEquals(";")) {
           diagnosticManager.error("'\"' expected",
               expr, token.offset, token.offset, token.offset,
               sourceInfo);
@@ -215,31 +293,27 @@ public class ContractExpressionTransformer {
         if (oldBuffer != null) {
           if (newLevel == oldContext) {
             /* End of old expression. */
-            String oldExpr = oldBuffer.toString();
             oldParameters.add(
                 new VariableModel(ElementKind.PARAMETER, oldName,
                                   new ClassName("java/lang/Object")));
-            oldParametersCode.add(oldExpr);
+            oldParametersTokens.add(oldBuffer);
             oldParametersLineNumbers.add(lineNumber);
 
             /* Pad buffer (for error reporting purposes). */
-            buffer.append("(   ");
+            buffer.add(TokenKind.SYMBOL, "(");
+            buffer.add(TokenKind.SPACE, "   ");
 
             /* Replace old expression in original expression. */
-            buffer.append(JavaUtils.BEGIN_GENERATED_CODE);
-            buffer.append(MAGIC_CAST_METHOD);
-            buffer.append("(");
-            buffer.append(oldName);
-            buffer.append(", ");
-            buffer.append("true ? null : ");
-            buffer.append(JavaUtils.END_GENERATED_CODE);
-            buffer.append(oldExpr);
-            buffer.append(JavaUtils.BEGIN_GENERATED_CODE);
-            buffer.append(")");
-            buffer.append(JavaUtils.END_GENERATED_CODE);
+            TokenList castCode = new TokenList();
+            castCode.addAll(MAGIC_CAST_CALL);
+            castCode.add(TokenKind.WORD, oldName);
+            castCode.addAll(MAGIC_CAST_SEPARATOR);
+            buffer.addGenerated(castCode);
+            buffer.addAll(oldBuffer);
+            buffer.addGenerated(MAGIC_CAST_END);
 
             /* Pad buffer (for error reporting purposes). */
-            buffer.append(")");
+            buffer.add(TokenKind.SYMBOL, ")");
 
             /* Exit old context. */
             oldBuffer = null;
@@ -247,14 +321,14 @@ public class ContractExpressionTransformer {
           } else {
             switch (token.kind) {
               case WORD:
-                if (token.text.equals("old")) {
+                if (token.textEquals("old")) {
                   diagnosticManager.error("nested old expression",
                       expr, token.offset, token.offset, token.offset,
                       sourceInfo);
                   parsed = false;
                   continue code;
                 }
-                oldBuffer.append(token.text);
+                oldBuffer.add(token);
                 break;
               default:
                 transformCommon(oldBuffer, tokenizer, token);
@@ -263,14 +337,14 @@ public class ContractExpressionTransformer {
         } else {
           switch (token.kind) {
             case WORD:
-              if (acceptOld && token.text.equals("old")) {
+              if (acceptOld && token.textEquals("old")) {
                 /* Start of old expression. */
                 Token afterOld = null;
                 if (!tokenizer.hasNext()
-                    || !((afterOld = tokenizer.next()).text.equals("(")
+                    || !((afterOld = tokenizer.next()).textEquals("(")
                          || (afterOld.kind == TokenKind.SPACE
                              && tokenizer.hasNext()
-                             && tokenizer.next().text.equals("(")))) {
+                             && tokenizer.next().textEquals("(")))) {
                   int errorPos = afterOld != null ? afterOld.offset
                       : tokenizer.getCurrentOffset();
                   diagnosticManager.error("'(' expected",
@@ -284,10 +358,9 @@ public class ContractExpressionTransformer {
                 oldName = JavaUtils.OLD_VARIABLE_PREFIX + oldId++;
 
                 /* Enter old context. */
+                oldBuffer = new TokenList();
                 if (afterOld.kind == TokenKind.SPACE) {
-                  oldBuffer = new StringBuilder(afterOld.text);
-                } else {
-                  oldBuffer = new StringBuilder();
+                  oldBuffer.add(afterOld);
                 }
                 oldContext = currentLevel;
                 break;
@@ -309,12 +382,43 @@ public class ContractExpressionTransformer {
         parsed = false;
         continue code;
       }
-      newCode.add(buffer.toString());
+      newTokens.add(buffer);
+    }
+
+    if (parsed && key != null) {
+      Transformation transformation = new Transformation();
+      transformation.newTokens = Collections.unmodifiableList(newTokens);
+      transformation.oldParametersTokens =
+          Collections.unmodifiableList(oldParametersTokens);
+      transformation.oldParametersLineNumbers =
+          Collections.unmodifiableList(oldParametersLineNumbers);
+      memo.transformations.putIfAbsent(key, transformation);
     }
 
     return parsed;
   }
 
+  /**
+   * Sets the results of this transformer to those of
+   * {@code transformation}, allocating its old variables.
+   */
+  @Requires("transformation != null")
+  @Ensures("canQueryResults()")
+  private void reuse(Transformation transformation) {
+    newTokens = transformation.newTokens;
+    oldParametersTokens = transformation.oldParametersTokens;
+    oldParametersLineNumbers = transformation.oldParametersLineNumbers;
+    int n = oldParametersTokens.size();
+    oldParameters = new ArrayList<VariableModel>(n);
+    for (int i = 0; i < n; ++i) {
+      oldParameters.add(
+          new VariableModel(ElementKind.PARAMETER,
+                            JavaUtils.OLD_VARIABLE_PREFIX + oldId++,
+                            new ClassName("java/lang/Object")));
+    }
+    parsed = true;
+  }
+
   /**
    * Returns {@code true} if results are ready to be queried.
    */
@@ -344,7 +448,16 @@ public class ContractExpressionTransformer {
     "result.size() == getOldParametersLineNumbers().size()"
   })
   public List<String> getOldParametersCode() {
-    return oldParametersCode;
+    return toStrings(oldParametersTokens);
+  }
+
+  @Requires("canQueryResults()")
+  @Ensures({
+    "result != null",
+    "result.size() == getOldParameters().size()"
+  })
+  public List<TokenList> getOldParametersTokens() {
+    return oldParametersTokens;
   }
 
   @Requires("canQueryResults()")
@@ -360,6 +473,22 @@ public class ContractExpressionTransformer {
   @Requires("canQueryResults()")
   @Ensures("result != null")
   public List<String> getTransformedCode() {
-    return newCode;
+    return toStrings(newTokens);
+  }
+
+  @Requires("canQueryResults()")
+  @Ensures("result != null")
+  public List<TokenList> getTransformedTokens() {
+    return newTokens;
+  }
+
+  @Requires("lists != null")
+  @Ensures("result.size() == lists.size()")
+  private static List<String> toStrings(List<TokenList> lists) {
+    ArrayList<String> strings = new ArrayList<String>(lists.size());
+    for (TokenList list : lists) {
+      strings.add(list.toString());
+    }
+    return strings;
   }
 }
@@ -23,9 +23,12 @@ import com.google.java.contract.Requires;
 import com.google.java.contract.core.runtime.BlacklistManager;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
@@ -34,6 +37,7 @@ import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.TypeParameterElement;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.ElementScanner6;
 
@@ -41,44 +45,139 @@ import javax.lang.model.util.ElementScanner6;
  * Recursively scans the type tree looking for contract annotations. Results
  * are cached so there's no need to scan the same element twice.
  *
+ * <p>Results are indexed by qualified type name, so that a single
+ * instance can be kept for the lifetime of the annotation processor:
+ * element objects change between processing rounds, but the types
+ * they denote, and in particular supertypes outside the compilation,
+ * do not need to be scanned again.
+ *
  * @author chatain@google.com (Leonardo Chatain)
  */
-@Invariant("this.contractedElements != null")
+@Invariant({
+  "this.contractedTypes != null",
+  "this.pendingTypes != null",
+  "this.nestedTypeNames != null"
+})
 public class ContractFinder
     extends ElementScanner6<Boolean, Void> {
   private FactoryUtils utils;
-  private Map<TypeElement, Boolean> contractedElements;
+  private Map<String, Boolean> contractedTypes;
+  private Map<String, Set<String>> nestedTypeNames;
   private BlacklistManager blackList;
 
+  /**
+   * Names of the types being scanned.
+   */
+  private Set<String> pendingTypes;
+
+  /**
+   * Whether the current result depends on a type being scanned, and
+   * so may not be final.
+   */
+  private boolean provisional;
+
+  /**
+   * Whether the current result depends on a type that could not be
+   * resolved, and may be generated in a later round.
+   */
+  private boolean unresolved;
+
   @Requires("utils != null")
   public ContractFinder(FactoryUtils utils) {
     this.utils = utils;
-    this.contractedElements = new HashMap<TypeElement, Boolean>();
+    this.contractedTypes = new HashMap<String, Boolean>();
+    this.nestedTypeNames = new HashMap<String, Set<String>>();
+    this.pendingTypes = new HashSet<String>();
+    this.provisional = false;
+    this.unresolved = false;
     this.blackList = BlacklistManager.getInstance();
   }
 
+  /**
+   * Returns the qualified names of {@code e} and all types nested in
+   * it. Results are cached along with contract information.
+   */
+  @Requires("e != null")
+  @Ensures("result != null")
+  public Set<String> getTypeNames(TypeElement e) {
+    String name = e.getQualifiedName().toString();
+    Set<String> names = nestedTypeNames.get(name);
+    if (names == null) {
+      final HashSet<String> collected = new HashSet<String>();
+      ElementScanner6<Void, Void> visitor =
+          new ElementScanner6<Void, Void>() {
+            @Override
+            public Void visitType(TypeElement e, Void p) {
+              collected.add(e.getQualifiedName().toString());
+              return super.visitType(e, p);
+            }
+          };
+      e.accept(visitor, null);
+      names = Collections.unmodifiableSet(collected);
+      if (name.length() != 0) {
+        nestedTypeNames.put(name, names);
+      }
+    }
+    return names;
+  }
+
   @Override
   @Ensures("result != null")
   public Boolean visitType(TypeElement e, Void v) {
+    String name = e.getQualifiedName().toString();
+
     /* The current element has already been analyzed. */
-    if (contractedElements.containsKey(e)) {
-      return contractedElements.get(e);
+    Boolean known = contractedTypes.get(name);
+    if (known != null) {
+      return known;
     }
 
-    /* The element is in the blacklist, do not scan. */
-    if (blackList.isIgnored(e.getQualifiedName().toString())) {
-      contractedElements.put(e, Boolean.FALSE);
+    /* The type is missing; it may be generated in a later round. */
+    if (e.asType().getKind() == TypeKind.ERROR) {
+      unresolved = true;
       return Boolean.FALSE;
     }
 
     /*
-     * Before searching for contracts, add the element to the visited cache.
-     * This is important to avoid recursion (e.g. when an enclosed element
-     * extends the enclosing one).
+     * The element is being analyzed. This happens, for example, when
+     * an enclosed element extends the enclosing one.
      */
-    contractedElements.put(e, Boolean.FALSE);
+    if (pendingTypes.contains(name)) {
+      provisional = true;
+      return Boolean.FALSE;
+    }
+
+    /* The element is in the blacklist, do not scan. */
+    if (blackList.isIgnored(name)) {
+      contractedTypes.put(name, Boolean.FALSE);
+      return Boolean.FALSE;
+    }
+
+    boolean outerProvisional = provisional;
+    boolean outerUnresolved = unresolved;
+    provisional = false;
+    unresolved = false;
+    pendingTypes.add(name);
     Boolean contracted = isContractedType(e);
-    contractedElements.put(e, contracted);
+    pendingTypes.remove(name);
+
+    /*
+     * A negative result is not final if it depends on an enclosing
+     * scan, until that scan is over, or on unresolved types; it is
+     * then recomputed the next time around. Anonymous types are never
+     * cached.
+     */
+    boolean pending = provisional && !pendingTypes.isEmpty();
+    if ((contracted || (!pending && !unresolved)) && name.length() != 0) {
+      contractedTypes.put(name, contracted);
+    }
+    if (pendingTypes.isEmpty()) {
+      provisional = false;
+      unresolved = false;
+    } else {
+      provisional = outerProvisional || (!contracted && pending);
+      unresolved = outerUnresolved || (!contracted && unresolved);
+    }
     return contracted;
   }
 
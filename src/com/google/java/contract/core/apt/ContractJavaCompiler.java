@@ -72,6 +72,12 @@ public class ContractJavaCompiler {
 
   protected ContractJavaFileManager fileManager;
 
+  /**
+   * The options of compilation tasks: {@link #OPTIONS}, and any added
+   * to this compiler.
+   */
+  protected List<String> options;
+
   public ContractJavaCompiler(String sourcePath, String classPath,
                               String outputDirectory)
       throws IOException {
@@ -81,6 +87,7 @@ public class ContractJavaCompiler {
                             + "are you using a JRE instead of a JDK?");
     }
 
+    options = OPTIONS;
     fileManager = new ContractJavaFileManager(
         javaCompiler.getStandardFileManager(null, null, null));
 
@@ -96,7 +103,9 @@ public class ContractJavaCompiler {
   }
 
   /**
-   * Returns a new compilation task.
+   * Returns a new compilation task. Tasks obtained from the same
+   * compiler share its file manager, and may be run one after the
+   * other.
    */
   @Requires({
     "files != null",
@@ -106,7 +115,28 @@ public class ContractJavaCompiler {
   public CompilationTask getTask(List<? extends JavaFileObject> files,
       DiagnosticListener<JavaFileObject> diagnostics) {
     return javaCompiler.getTask(null, fileManager, diagnostics,
-                                OPTIONS, null, files);
+                                options, null, files);
+  }
+
+  /**
+   * Makes subsequent tasks read types found both in the source path
+   * and in the class path from their source files, regardless of
+   * which is newer. Class files in the class path may then be stale.
+   */
+  @Ensures("options.contains(\"-Xprefer:source\")")
+  public void preferSources() {
+    if (!options.contains("-Xprefer:source")) {
+      options = new ArrayList<String>(options);
+      options.add("-Xprefer:source");
+    }
+  }
+
+  /**
+   * Closes the underlying file manager. No further tasks may be
+   * created afterwards.
+   */
+  public void close() throws IOException {
+    fileManager.close();
   }
 
   @Requires({
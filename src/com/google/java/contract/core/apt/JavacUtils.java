@@ -21,24 +21,36 @@ import com.sun.source.tree.AnnotationTree;
 import com.sun.source.tree.AssignmentTree;
 import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
 import com.sun.source.tree.ImportTree;
 import com.sun.source.tree.LineMap;
+import com.sun.source.tree.MemberSelectTree;
 import com.sun.source.tree.NewArrayTree;
 import com.sun.source.tree.Tree.Kind;
+import com.sun.source.util.JavacTask;
 import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
 import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
 import com.sun.source.util.Trees;
 import com.google.java.contract.Ensures;
 import com.google.java.contract.Requires;
 
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.tools.JavaCompiler.CompilationTask;
 
 /**
  * A com.sun.source-based utility class that extracts source
@@ -128,4 +140,188 @@ class JavacUtils {
 
     return importNames;
   }
+
+  /**
+   * Registers a listener on the compilation task of
+   * {@code processingEnv} that removes the binary name of each type
+   * from {@code typeNames} once its class file has been written, and
+   * then runs {@code action}. {@code action} is also run after each
+   * type has been analyzed, and at the end of the whole task, if the
+   * compiler reports it, after {@code typeNames} has been cleared.
+   *
+   * @throws IllegalArgumentException if {@code processingEnv} does not
+   * belong to a javac compilation task
+   */
+  @Requires({
+    "processingEnv != null",
+    "typeNames != null",
+    "action != null"
+  })
+  public static void addGenerateListener(ProcessingEnvironment processingEnv,
+      final Set<String> typeNames, final Runnable action) {
+    final Elements elements = processingEnv.getElementUtils();
+    JavacTask task = JavacTask.instance(processingEnv);
+    task.addTaskListener(new TaskListener() {
+      @Override
+      public void started(TaskEvent e) {
+      }
+
+      @Override
+      public void finished(TaskEvent e) {
+        switch (e.getKind()) {
+          case ANALYZE:
+            break;
+          case GENERATE:
+            TypeElement type = e.getTypeElement();
+            if (type == null) {
+              return;
+            }
+            typeNames.remove(elements.getBinaryName(type).toString());
+            break;
+          default:
+            /* Kind.COMPILATION, which Java 8 does not have. */
+            if (!e.getKind().name().equals("COMPILATION")) {
+              return;
+            }
+            typeNames.clear();
+            break;
+        }
+        action.run();
+      }
+    });
+  }
+
+  /**
+   * Registers a listener on {@code task} that records the time spent
+   * analyzing and generating each class in {@code profile}. Does
+   * nothing if {@code task} is not a javac task.
+   */
+  @Requires({
+    "task != null",
+    "profile != null"
+  })
+  public static void addProfilingListener(CompilationTask task,
+      final ProcessingProfile profile) {
+    if (!(task instanceof JavacTask)) {
+      return;
+    }
+    final HashMap<String, ProcessingProfile.Sample> samples =
+        new HashMap<String, ProcessingProfile.Sample>();
+    ((JavacTask) task).addTaskListener(new TaskListener() {
+      @Override
+      public void started(TaskEvent e) {
+        String key = getKey(e);
+        if (key != null) {
+          samples.put(key, profile.begin());
+        }
+      }
+
+      @Override
+      public void finished(TaskEvent e) {
+        String key = getKey(e);
+        if (key != null) {
+          profile.end(samples.remove(key),
+                      "compile." + e.getKind().name().toLowerCase(),
+                      e.getTypeElement().getQualifiedName().toString());
+        }
+      }
+
+      private String getKey(TaskEvent e) {
+        switch (e.getKind()) {
+          case ANALYZE:
+          case GENERATE:
+            if (e.getTypeElement() == null) {
+              return null;
+            }
+            return e.getKind() + " " + e.getTypeElement().getQualifiedName();
+          default:
+            return null;
+        }
+      }
+    });
+  }
+
+  /**
+   * Registers a listener on {@code task} that records, for each
+   * source file it compiles, the qualified names of the types that
+   * the code of the file refers to, in {@code dependencies}, keyed by
+   * the URI of the file.
+   *
+   * @throws IllegalArgumentException if {@code task} is not a javac
+   * task
+   */
+  @Requires({
+    "task != null",
+    "dependencies != null"
+  })
+  public static void addDependencyListener(CompilationTask task,
+      final Map<URI, Set<String>> dependencies) {
+    if (!(task instanceof JavacTask)) {
+      throw new IllegalArgumentException();
+    }
+    final Trees treeUtils = Trees.instance((JavacTask) task);
+    ((JavacTask) task).addTaskListener(new TaskListener() {
+      @Override
+      public void started(TaskEvent e) {
+      }
+
+      @Override
+      public void finished(TaskEvent e) {
+        if (e.getKind() != TaskEvent.Kind.ANALYZE
+            || e.getTypeElement() == null) {
+          return;
+        }
+        TreePath path = treeUtils.getPath(e.getTypeElement());
+        if (path == null) {
+          return;
+        }
+        URI uri = e.getSourceFile().toUri();
+        Set<String> names = dependencies.get(uri);
+        if (names == null) {
+          names = new HashSet<String>();
+          dependencies.put(uri, names);
+        }
+        new DependencyScanner(treeUtils, names).scan(path, null);
+      }
+    });
+  }
+
+  /**
+   * A scanner that collects the qualified names of the types that
+   * the identifiers of a tree resolve to, or are members of.
+   */
+  private static class DependencyScanner
+      extends TreePathScanner<Void, Void> {
+    private Trees treeUtils;
+    private Set<String> names;
+
+    DependencyScanner(Trees treeUtils, Set<String> names) {
+      this.treeUtils = treeUtils;
+      this.names = names;
+    }
+
+    @Override
+    public Void visitIdentifier(IdentifierTree node, Void p) {
+      addName(treeUtils.getElement(getCurrentPath()));
+      return super.visitIdentifier(node, p);
+    }
+
+    @Override
+    public Void visitMemberSelect(MemberSelectTree node, Void p) {
+      addName(treeUtils.getElement(getCurrentPath()));
+      return super.visitMemberSelect(node, p);
+    }
+
+    private void addName(Element element) {
+      while (element != null && !(element instanceof TypeElement)) {
+        element = element.getEnclosingElement();
+      }
+      if (element != null) {
+        String name = ((TypeElement) element).getQualifiedName().toString();
+        if (!name.isEmpty()) {
+          names.add(name);
+        }
+      }
+    }
+  }
 }
@@ -35,6 +35,7 @@ import com.google.java.contract.core.model.TypeName;
 import com.google.java.contract.core.model.VariableModel;
 import com.google.java.contract.core.util.ElementScanner;
 import com.google.java.contract.core.util.JavaUtils;
+import com.google.java.contract.core.util.TokenList;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -52,6 +53,8 @@ import java.util.NoSuchElementException;
   "diagnosticManager != null",
   "preTransformer != null",
   "postTransformer != null",
+  "asyncPostTransformer != null",
+  "elementPostTransformer != null",
   "postSignalTransformer != null"
 })
 public class MethodContractCreator extends ElementScanner {
@@ -99,8 +102,8 @@ public class MethodContractCreator extends ElementScanner {
       if (success) {
         ContractKind oldKind =
             ContractCreation.getContractKind(annotation).getOldKind();
-        Iterator<String> iterCode =
-            transformer.getOldParametersCode().iterator();
+        Iterator<TokenList> iterCode =
+            transformer.getOldParametersTokens().iterator();
         Iterator<Long> iterLineNumber =
             transformer.getOldParametersLineNumbers().iterator();
         int pos = 0;
@@ -157,6 +160,24 @@ public class MethodContractCreator extends ElementScanner {
     }
   }
 
+  /**
+   * Creation trait for element-wise postconditions.
+   */
+  protected class ElementPostMethodCreationTrait
+      extends CommonPostMethodCreationTrait {
+    @Requires("transformer != null")
+    public ElementPostMethodCreationTrait(
+        ContractExpressionTransformer transformer) {
+      super(transformer);
+    }
+
+    @Override
+    public List<? extends VariableModel> getInitialParameters() {
+      return Collections.singletonList(
+          getElementVariable(annotation.getElementType()));
+    }
+  }
+
   /**
    * Creation trait for exceptional postconditions.
    */
@@ -240,28 +261,54 @@ public class MethodContractCreator extends ElementScanner {
   protected MethodModel method;
   protected ContractMethodModel preMethod;
   protected ContractMethodModel postMethod;
+  protected ContractMethodModel asyncPostMethod;
+  protected ContractMethodModel elementPostMethod;
   protected ContractMethodModel postSignalMethod;
 
   protected ContractExpressionTransformer preTransformer;
   protected ContractExpressionTransformer postTransformer;
+  protected ContractExpressionTransformer asyncPostTransformer;
+  protected ContractExpressionTransformer elementPostTransformer;
   protected ContractExpressionTransformer postSignalTransformer;
 
+  protected boolean compact;
+
   /**
    * Constructs a new MethodContractCreator.
    */
   @Requires("diagnosticManager != null")
   public MethodContractCreator(DiagnosticManager diagnosticManager) {
+    this(diagnosticManager, null, false);
+  }
+
+  /**
+   * Constructs a new MethodContractCreator sharing transformed
+   * contract expressions through {@code memo}, if not {@code null}.
+   * If {@code compact} is {@code true}, compact contract methods are
+   * built.
+   */
+  @Requires("diagnosticManager != null")
+  public MethodContractCreator(DiagnosticManager diagnosticManager,
+                               ContractExpressionTransformer.Memo memo,
+                               boolean compact) {
     this.diagnosticManager = diagnosticManager;
+    this.compact = compact;
     method = null;
     preMethod = null;
     postMethod = null;
+    asyncPostMethod = null;
+    elementPostMethod = null;
     postSignalMethod = null;
     preTransformer =
-        new ContractExpressionTransformer(diagnosticManager, false);
+        new ContractExpressionTransformer(diagnosticManager, false, memo);
     postTransformer =
-        new ContractExpressionTransformer(diagnosticManager, true);
+        new ContractExpressionTransformer(diagnosticManager, true, memo);
+    asyncPostTransformer =
+        new ContractExpressionTransformer(diagnosticManager, true, memo);
+    elementPostTransformer =
+        new ContractExpressionTransformer(diagnosticManager, true, memo);
     postSignalTransformer =
-        new ContractExpressionTransformer(diagnosticManager, true);
+        new ContractExpressionTransformer(diagnosticManager, true, memo);
   }
 
   @Override
@@ -279,16 +326,30 @@ public class MethodContractCreator extends ElementScanner {
 
     if (annotation.getKind().equals(ElementKind.REQUIRES)) {
       PreMethodCreationTrait trait = new PreMethodCreationTrait(preTransformer);
-      preMethod = createContractMethods(trait, preMethod, annotation);
+      preMethod = createContractMethods(trait, preMethod, annotation,
+                                        compact);
+    } else if (annotation.getKind().equals(ElementKind.ENSURES)
+               && annotation.isAsync()) {
+      PostMethodCreationTrait trait =
+          new PostMethodCreationTrait(asyncPostTransformer);
+      asyncPostMethod = createContractMethods(trait, asyncPostMethod,
+                                              annotation, compact);
+    } else if (annotation.getKind().equals(ElementKind.ENSURES)
+               && annotation.isElementwise()) {
+      ElementPostMethodCreationTrait trait =
+          new ElementPostMethodCreationTrait(elementPostTransformer);
+      elementPostMethod = createContractMethods(trait, elementPostMethod,
+                                                annotation, compact);
     } else if (annotation.getKind().equals(ElementKind.ENSURES)) {
       PostMethodCreationTrait trait =
           new PostMethodCreationTrait(postTransformer);
-      postMethod = createContractMethods(trait, postMethod, annotation);
+      postMethod = createContractMethods(trait, postMethod, annotation,
+                                         compact);
     } else if (annotation.getKind().equals(ElementKind.THROW_ENSURES)) {
       PostSignalMethodCreationTrait trait =
           new PostSignalMethodCreationTrait(postSignalTransformer);
       postSignalMethod = createContractMethods(trait, postSignalMethod,
-                                               annotation);
+                                               annotation, compact);
     } else {
       throw new IllegalArgumentException();
     }
@@ -304,6 +365,16 @@ public class MethodContractCreator extends ElementScanner {
     return var;
   }
 
+  @Requires("type != null")
+  @Ensures("result != null")
+  private static VariableModel getElementVariable(TypeName type) {
+    VariableModel var =
+        new VariableModel(ElementKind.PARAMETER, JavaUtils.ELEMENT_VARIABLE,
+                          type);
+    var.addModifier(ElementModifier.FINAL);
+    return var;
+  }
+
   @Ensures("result != null")
   private static VariableModel getSignalVariable() {
     VariableModel var =
@@ -336,7 +407,7 @@ public class MethodContractCreator extends ElementScanner {
     "lineNumber == null || lineNumber >= 1"
   })
   private void createOldMethods(ContractKind kind,
-      int pos, int id, String expr, ContractAnnotationModel annotation,
+      int pos, int id, TokenList expr, ContractAnnotationModel annotation,
       Long lineNumber) {
     MethodModel helper =
         ContractCreation.createBlankContractHelper(kind, annotation,
@@ -348,7 +419,7 @@ public class MethodContractCreator extends ElementScanner {
       if (lineNumber != null) {
         helperContract.setLineNumbers(Collections.singletonList(lineNumber));
       }
-      String code = expr;
+      TokenList code = expr;
       if (!annotation.isVirtual()) {
         code = ContractCreation
             .rebaseLocalCalls(expr, JavaUtils.THAT_VARIABLE, null);
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.apt;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.Requires;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Wall time and memory allocation statistics of the annotation
+ * processor, by stage and by type. A disabled profile records
+ * nothing.
+ *
+ * <p>Allocation is measured through the HotSpot-specific
+ * {@code com.sun.management.ThreadMXBean} interface, where available,
+ * and only accounts for the thread running each stage.
+ */
+@Invariant({
+  "stages != null",
+  "types != null"
+})
+public class ProcessingProfile {
+  /**
+   * A measurement in progress.
+   */
+  public static class Sample {
+    protected long startTime;
+    protected long startBytes;
+  }
+
+  /**
+   * Accumulated statistics.
+   */
+  protected static class Entry {
+    protected long count;
+    protected long nanos;
+    protected long bytes;
+  }
+
+  protected boolean enabled;
+
+  protected Map<String, Entry> stages;
+  protected Map<String, Map<String, Entry>> types;
+
+  private ThreadMXBean threadBean;
+  private Method allocatedBytesMethod;
+
+  /**
+   * Constructs a new profile, which records statistics only if
+   * {@code enabled} is {@code true}.
+   */
+  public ProcessingProfile(boolean enabled) {
+    this.enabled = enabled;
+    stages = new TreeMap<String, Entry>();
+    types = new TreeMap<String, Map<String, Entry>>();
+
+    if (enabled) {
+      threadBean = ManagementFactory.getThreadMXBean();
+      try {
+        Class<?> beanClass =
+            Class.forName("com.sun.management.ThreadMXBean");
+        if (beanClass.isInstance(threadBean)) {
+          beanClass.getMethod("setThreadAllocatedMemoryEnabled",
+                              boolean.class)
+              .invoke(threadBean, true);
+          allocatedBytesMethod =
+              beanClass.getMethod("getThreadAllocatedBytes", long.class);
+        }
+      } catch (Exception e) {
+        allocatedBytesMethod = null;
+      }
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Starts a measurement on the current thread. Returns {@code null}
+   * if this profile is disabled.
+   */
+  @Ensures("isEnabled() == (result != null)")
+  public Sample begin() {
+    if (!enabled) {
+      return null;
+    }
+    Sample sample = new Sample();
+    sample.startBytes = getAllocatedBytes();
+    sample.startTime = System.nanoTime();
+    return sample;
+  }
+
+  /**
+   * Ends the measurement {@code sample}, begun on the current thread,
+   * and adds it to {@code stage}, both overall and for the type named
+   * {@code typeName}, if not {@code null}. Does nothing if
+   * {@code sample} is {@code null}.
+   */
+  @Requires("stage != null")
+  public void end(Sample sample, String stage, String typeName) {
+    if (sample == null) {
+      return;
+    }
+    long nanos = System.nanoTime() - sample.startTime;
+    long bytes = sample.startBytes < 0
+        ? -1 : getAllocatedBytes() - sample.startBytes;
+
+    synchronized (this) {
+      add(stages, stage, nanos, bytes);
+      if (typeName != null) {
+        Map<String, Entry> typeStages = types.get(typeName);
+        if (typeStages == null) {
+          typeStages = new TreeMap<String, Entry>();
+          types.put(typeName, typeStages);
+        }
+        add(typeStages, stage, nanos, bytes);
+      }
+    }
+  }
+
+  /**
+   * Writes this profile, in JSON format, to {@code file}.
+   */
+  @Requires("file != null")
+  public synchronized void write(File file) throws IOException {
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (parent != null) {
+      parent.mkdirs();
+    }
+    Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+    try {
+      out.write("{\n  \"stages\": ");
+      writeEntries(out, stages, "  ");
+      out.write(",\n  \"types\": {");
+      Iterator<Map.Entry<String, Map<String, Entry>>> iter =
+          types.entrySet().iterator();
+      while (iter.hasNext()) {
+        Map.Entry<String, Map<String, Entry>> type = iter.next();
+        out.write("\n    ");
+        writeString(out, type.getKey());
+        out.write(": ");
+        writeEntries(out, type.getValue(), "    ");
+        if (iter.hasNext()) {
+          out.write(",");
+        }
+      }
+      out.write("\n  }\n}\n");
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Returns the number of bytes allocated so far by the current
+   * thread, or -1 if unavailable.
+   */
+  private long getAllocatedBytes() {
+    if (allocatedBytesMethod == null) {
+      return -1;
+    }
+    try {
+      return (Long) allocatedBytesMethod.invoke(
+          threadBean, Thread.currentThread().getId());
+    } catch (Exception e) {
+      return -1;
+    }
+  }
+
+  @Requires({
+    "map != null",
+    "stage != null"
+  })
+  private static void add(Map<String, Entry> map, String stage,
+                          long nanos, long bytes) {
+    Entry entry = map.get(stage);
+    if (entry == null) {
+      entry = new Entry();
+      map.put(stage, entry);
+    }
+    ++entry.count;
+    entry.nanos += nanos;
+    if (bytes < 0 || entry.bytes < 0) {
+      entry.bytes = -1;
+    } else {
+      entry.bytes += bytes;
+    }
+  }
+
+  @Requires({
+    "out != null",
+    "map != null",
+    "indent != null"
+  })
+  private static void writeEntries(Writer out, Map<String, Entry> map,
+                                   String indent) throws IOException {
+    out.write("{");
+    Iterator<Map.Entry<String, Entry>> iter = map.entrySet().iterator();
+    while (iter.hasNext()) {
+      Map.Entry<String, Entry> stage = iter.next();
+      Entry entry = stage.getValue();
+      out.write("\n" + indent + "  ");
+      writeString(out, stage.getKey());
+      out.write(": { \"count\": " + entry.count
+                + ", \"millis\": " + (entry.nanos / 1000000.0)
+                + ", \"bytes\": "
+                + (entry.bytes < 0 ? "null" : Long.toString(entry.bytes))
+                + " }");
+      if (iter.hasNext()) {
+        out.write(",");
+      }
+    }
+    out.write("\n" + indent + "}");
+  }
+
+  @Requires({
+    "out != null",
+    "s != null"
+  })
+  private static void writeString(Writer out, String s) throws IOException {
+    out.write('"');
+    for (int i = 0; i < s.length(); ++i) {
+      char c = s.charAt(i);
+      switch (c) {
+        case '"':
+        case '\\':
+          out.write('\\');
+          out.write(c);
+          break;
+        default:
+          if (c < 0x20) {
+            out.write(String.format("\\u%04x", (int) c));
+          } else {
+            out.write(c);
+          }
+      }
+    }
+    out.write('"');
+  }
+}
@@ -19,7 +19,9 @@ package com.google.java.contract.core.apt;
 
 import com.google.java.contract.core.model.ContractAnnotationModel;
 import com.google.java.contract.core.model.VariableModel;
+import com.google.java.contract.core.util.TokenList;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -43,6 +45,16 @@ class SimpleContractCreationTrait implements ContractCreationTrait {
     return annotation.getValues();
   }
 
+  @Override
+  public List<TokenList> getExpressionTokens() {
+    List<String> expressions = getExpressions();
+    ArrayList<TokenList> tokens = new ArrayList<TokenList>(expressions.size());
+    for (String expr : expressions) {
+      tokens.add(new TokenList(expr));
+    }
+    return tokens;
+  }
+
   @Override
   public List<String> getMessages() {
     return annotation.getValues();
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.apt;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.Requires;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The contents of a source dependency ({@code .java.d}) file: the
+ * import statements in effect in a source file and the line numbers
+ * of the contracts of one of its top-level types.
+ *
+ * <p>Source dependency files use a compact binary format:
+ * <ul>
+ * <li>the magic number {@code "CJD\0"} followed by a format version
+ * byte;
+ * <li>the number of import names, followed by each import name as a
+ * UTF-8 byte count and the corresponding bytes;
+ * <li>the number of line numbers, followed by each line number as the
+ * difference from the previous one (or from 0, for the first).
+ * </ul>
+ *
+ * <p>All integers are variable-length: seven bits per byte, least
+ * significant group first, the high bit set on all bytes but the
+ * last. Line number differences are zigzag-encoded, so that small
+ * negative differences stay short. Files of other versions are
+ * rejected.
+ */
+@Invariant({
+  "importNames != null",
+  "!importNames.contains(null)",
+  "lineNumbers != null",
+  "!lineNumbers.contains(null)"
+})
+class SourceDependencyFile {
+  private static final byte[] MAGIC = { 'C', 'J', 'D', 0 };
+
+  /**
+   * The current version of the format.
+   */
+  static final int VERSION = 1;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /**
+   * The size from which files are memory-mapped rather than read.
+   * Source dependency files are almost always far smaller; mapping
+   * them costs more than reading them, and the mapping, which lasts
+   * until the buffer is garbage-collected, keeps the file locked
+   * against rewrites on some platforms, such as Windows.
+   */
+  private static final long MAP_THRESHOLD = 64 * 1024;
+
+  protected Set<String> importNames;
+  protected List<Long> lineNumbers;
+
+  @Requires({
+    "importNames != null",
+    "lineNumbers != null"
+  })
+  SourceDependencyFile(Set<String> importNames, List<Long> lineNumbers) {
+    this.importNames = importNames;
+    this.lineNumbers = lineNumbers;
+  }
+
+  @Ensures("result != null")
+  Set<String> getImportNames() {
+    return importNames;
+  }
+
+  @Ensures("result != null")
+  List<Long> getLineNumbers() {
+    return lineNumbers;
+  }
+
+  /**
+   * Writes the source dependency file {@code file}.
+   */
+  @Requires({
+    "file != null",
+    "importNames != null",
+    "lineNumbers != null"
+  })
+  static void write(File file, Collection<String> importNames,
+                    List<Long> lineNumbers) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    buffer.write(MAGIC);
+    buffer.write(VERSION);
+
+    writeVarint(buffer, importNames.size());
+    for (String importName : importNames) {
+      byte[] bytes = importName.getBytes(UTF_8);
+      writeVarint(buffer, bytes.length);
+      buffer.write(bytes);
+    }
+
+    writeVarint(buffer, lineNumbers.size());
+    long previous = 0;
+    for (Long lineNumber : lineNumbers) {
+      long delta = lineNumber - previous;
+      writeVarint(buffer, (delta << 1) ^ (delta >> 63));
+      previous = lineNumber;
+    }
+
+    OutputStream out = new FileOutputStream(file);
+    try {
+      buffer.writeTo(out);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Reads the source dependency file named {@code fileName} from
+   * {@code loader}. Files found in the file system are read directly,
+   * and memory-mapped if they are larger than {@link #MAP_THRESHOLD}.
+   *
+   * @throws FileNotFoundException if there is no such file
+   * @throws IOException if the file cannot be read or is not in the
+   * current format
+   */
+  @Requires({
+    "loader != null",
+    "fileName != null"
+  })
+  @Ensures("result != null")
+  static SourceDependencyFile load(ClassLoader loader, String fileName)
+      throws IOException {
+    URL url = loader.getResource(fileName);
+    if (url == null) {
+      throw new FileNotFoundException(fileName);
+    }
+
+    if (url.getProtocol().equals("file")) {
+      File file;
+      try {
+        file = new File(url.toURI());
+      } catch (URISyntaxException e) {
+        throw new IOException(e);
+      }
+      FileInputStream in = new FileInputStream(file);
+      try {
+        FileChannel channel = in.getChannel();
+        long size = channel.size();
+        if (size >= MAP_THRESHOLD) {
+          return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+          /* Keep reading. */
+        }
+        buffer.flip();
+        return read(buffer);
+      } finally {
+        in.close();
+      }
+    }
+
+    InputStream in = url.openStream();
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] chunk = new byte[4096];
+      int n;
+      while ((n = in.read(chunk)) != -1) {
+        out.write(chunk, 0, n);
+      }
+      return read(ByteBuffer.wrap(out.toByteArray()));
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Parses the source dependency data in {@code buffer}.
+   *
+   * @throws IOException if the data is not in the current format
+   */
+  @Requires("buffer != null")
+  @Ensures("result != null")
+  static SourceDependencyFile read(ByteBuffer buffer) throws IOException {
+    try {
+      for (byte b : MAGIC) {
+        if (buffer.get() != b) {
+          throw new IOException("not a source dependency file");
+        }
+      }
+      int version = buffer.get() & 0xff;
+      if (version != VERSION) {
+        throw new IOException("unsupported source dependency file version "
+                              + version);
+      }
+
+      int importCount = readCount(buffer);
+      Set<String> importNames = new LinkedHashSet<String>(2 * importCount);
+      for (int i = 0; i < importCount; ++i) {
+        byte[] bytes = new byte[readCount(buffer)];
+        buffer.get(bytes);
+        importNames.add(new String(bytes, UTF_8));
+      }
+
+      int lineCount = readCount(buffer);
+      List<Long> lineNumbers = new ArrayList<Long>(lineCount);
+      long previous = 0;
+      for (int i = 0; i < lineCount; ++i) {
+        long zigzag = readVarint(buffer);
+        previous += (zigzag >>> 1) ^ -(zigzag & 1);
+        lineNumbers.add(previous);
+      }
+
+      return new SourceDependencyFile(importNames, lineNumbers);
+    } catch (BufferUnderflowException e) {
+      throw new IOException("truncated source dependency file");
+    }
+  }
+
+  @Requires("out != null")
+  private static void writeVarint(ByteArrayOutputStream out, long value) {
+    while ((value & ~0x7fL) != 0) {
+      out.write((int) (value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+
+  @Requires("buffer != null")
+  private static long readVarint(ByteBuffer buffer) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = buffer.get();
+      value |= (long) (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("malformed source dependency file");
+  }
+
+  /**
+   * Reads a count, which must fit within the remaining data.
+   */
+  @Requires("buffer != null")
+  @Ensures("result >= 0")
+  private static int readCount(ByteBuffer buffer) throws IOException {
+    long count = readVarint(buffer);
+    if (count < 0 || count > buffer.remaining()) {
+      throw new IOException("malformed source dependency file");
+    }
+    return (int) count;
+  }
+}
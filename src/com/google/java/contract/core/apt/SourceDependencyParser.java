@@ -119,15 +119,15 @@ public class SourceDependencyParser {
         switch (token.kind) {
           case WORD:
             if (tokenizer.getCurrentLevel() == 0) {
-              if (token.text.equals("package")) {
+              if (token.textEquals("package")) {
                 packageName = JavaUtils.parseQualifiedName(tokenizer);
-              } else if (token.text.equals("import")) {
+              } else if (token.textEquals("import")) {
                 String name = JavaUtils.parseQualifiedName(tokenizer, true);
                 if (name.equals("static")) {
                   name += " " + JavaUtils.parseQualifiedName(tokenizer, true);
                 }
                 importNames.add(name);
-              } else if (TYPE_KEYWORDS.contains(token.text)) {
+              } else if (TYPE_KEYWORDS.contains(token.getText())) {
                 String name = JavaUtils.parseQualifiedName(tokenizer);
                 if (packageName != null) {
                   name = packageName + "." + name;
@@ -142,10 +142,10 @@ public class SourceDependencyParser {
             break;
 
           case SYMBOL:
-            if (tokenizer.getCurrentLevel() == 0 && token.text.equals("}")) {
+            if (tokenizer.getCurrentLevel() == 0 && token.textEquals("}")) {
               className = null;
             } else {
-              if (token.text.equals("@")) {
+              if (token.textEquals("@")) {
                 String annotationType = JavaUtils.parseQualifiedName(tokenizer);
                 if (annotationType.startsWith("com.google.java.contract.")
                     || (CONTRACT_TYPES.contains(annotationType)
@@ -186,12 +186,12 @@ public class SourceDependencyParser {
     while (tokenizer.hasNext()) {
       long lineNumber = tokenizer.getCurrentLineNumber();
       JavaTokenizer.Token token = tokenizer.next();
-      if (token.text.equals(")")) {
+      if (token.textEquals(")")) {
         return;
       } else if (expectClause && token.kind == JavaTokenizer.TokenKind.QUOTE) {
         lineNumbers.add(lineNumber);
         expectClause = false;
-      } else if (token.text.equals(",")) {
+      } else if (token.textEquals(",")) {
         expectClause = true;
       }
     }
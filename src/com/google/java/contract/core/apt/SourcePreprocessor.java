@@ -23,13 +23,17 @@ import com.google.java.contract.core.util.JavaUtils.ParseException;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.tools.JavaFileObject.Kind;
 
 /**
@@ -50,31 +54,98 @@ import javax.tools.JavaFileObject.Kind;
  * the annotation processor through the {@code com.google.java.contract.depspath}
  * option.
  *
+ * <p>Source files are processed in parallel, by as many threads as
+ * there are processors, unless the system property
+ * {@code com.google.java.contract.threads} specifies otherwise.
+ *
  * @author nhat.minh.le@huoc.org (Nhat Minh Lê)
  */
 public class SourcePreprocessor {
   public static void main(String[] args)
       throws IOException, ParseException {
-    String depout = System.getProperty("com.google.java.contract.depsoutput");
+    final String depout =
+        System.getProperty("com.google.java.contract.depsoutput");
+    int threads = Runtime.getRuntime().availableProcessors();
+    String threadsProperty =
+        System.getProperty("com.google.java.contract.threads");
+    if (threadsProperty != null) {
+      threads = Math.max(1, Integer.parseInt(threadsProperty.trim()));
+    }
+
+    ArrayList<String> fileNames = new ArrayList<String>(args.length);
     for (String arg : args) {
-      if (arg.startsWith("-")) {
-        continue;
+      if (!arg.startsWith("-")) {
+        fileNames.add(arg);
       }
+    }
+    if (threads == 1 || fileNames.size() <= 1) {
+      for (String fileName : fileNames) {
+        preprocess(fileName, depout);
+      }
+      return;
+    }
 
-      String baseName = arg;
-      if (arg.endsWith(Kind.SOURCE.extension)) {
-        baseName = baseName
-            .substring(0, baseName.length() - Kind.SOURCE.extension.length());
+    ExecutorService executor =
+        Executors.newFixedThreadPool(Math.min(threads, fileNames.size()));
+    try {
+      ArrayList<Future<Void>> futures =
+          new ArrayList<Future<Void>>(fileNames.size());
+      for (final String fileName : fileNames) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws IOException, ParseException {
+            preprocess(fileName, depout);
+            return null;
+          }
+        }));
       }
 
-      File fileName = new File(baseName + Kind.SOURCE.extension);
-      String dir = fileName.getParent();
-      dir = dir == null ? "" : dir + "/";
+      /* Report the first error in argument order. */
+      for (Future<Void> future : futures) {
+        try {
+          future.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException(e);
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof IOException) {
+            throw (IOException) cause;
+          } else if (cause instanceof ParseException) {
+            throw (ParseException) cause;
+          } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          } else {
+            throw new RuntimeException(cause);
+          }
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
 
-      FileInputStream in = new FileInputStream(arg);
+  /**
+   * Writes the source dependency files of the source file
+   * {@code arg}, in {@code depout}, if not {@code null}, or next to
+   * it.
+   */
+  protected static void preprocess(String arg, String depout)
+      throws IOException, ParseException {
+    String baseName = arg;
+    if (arg.endsWith(Kind.SOURCE.extension)) {
+      baseName = baseName
+          .substring(0, baseName.length() - Kind.SOURCE.extension.length());
+    }
+
+    File fileName = new File(baseName + Kind.SOURCE.extension);
+    String dir = fileName.getParent();
+    dir = dir == null ? "" : dir + "/";
 
-      SourceDependencyParser parser =
-          new SourceDependencyParser(new InputStreamReader(in));
+    SourceDependencyParser parser;
+    FileInputStream in = new FileInputStream(arg);
+    try {
+      parser = new SourceDependencyParser(new InputStreamReader(in));
       try {
         parser.parse();
       } catch (ParseException e) {
@@ -86,37 +157,29 @@ public class SourcePreprocessor {
             + "please email 'davidmorgan@google.com'",
             e);
       }
+    } finally {
+      in.close();
+    }
 
-      Set<String> importNames = parser.getImportNames();
-      Map<ClassName, List<Long>> contractLineNumbers =
-          parser.getContractLineNumbers();
-
-      if (contractLineNumbers.isEmpty()) {
-        continue;
-      }
-
-      for (Map.Entry<ClassName, List<Long>> entry :
-           contractLineNumbers.entrySet()) {
-        ClassName className = entry.getKey();
-        File outputFileName;
-        if (depout == null) {
-          outputFileName = new File(dir + className.getSimpleName()
-                                    + JavaUtils.SOURCE_DEPENDENCY_EXTENSION);
-        } else {
-          outputFileName = new File(depout + "/" + className.getBinaryName()
-                                    + JavaUtils.SOURCE_DEPENDENCY_EXTENSION);
-        }
-
-        outputFileName.getParentFile().mkdirs();
-        FileOutputStream out = new FileOutputStream(outputFileName);
-        ObjectOutputStream oout = new ObjectOutputStream(out);
+    Set<String> importNames = parser.getImportNames();
+    Map<ClassName, List<Long>> contractLineNumbers =
+        parser.getContractLineNumbers();
 
-        oout.writeObject(importNames);
-        oout.writeObject(entry.getValue());
-        oout.close();
+    for (Map.Entry<ClassName, List<Long>> entry :
+         contractLineNumbers.entrySet()) {
+      ClassName className = entry.getKey();
+      File outputFileName;
+      if (depout == null) {
+        outputFileName = new File(dir + className.getSimpleName()
+                                  + JavaUtils.SOURCE_DEPENDENCY_EXTENSION);
+      } else {
+        outputFileName = new File(depout + "/" + className.getBinaryName()
+                                  + JavaUtils.SOURCE_DEPENDENCY_EXTENSION);
       }
 
-      in.close();
+      outputFileName.getParentFile().mkdirs();
+      SourceDependencyFile.write(outputFileName, importNames,
+                                 entry.getValue());
     }
   }
 }
@@ -31,10 +31,7 @@ import com.google.java.contract.core.model.TypeModel;
 import com.google.java.contract.core.model.VariableModel;
 import com.google.java.contract.core.util.JavaUtils;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -291,13 +288,15 @@ class TypeBuilder extends AbstractTypeBuilder {
                                   asi.getAnnotationValue().toString(), 0, 0, 0,
                                   asi);
       } else {
-        p.addEnclosedElement(model);
+        for (ContractAnnotationModel m : splitContractModel(parent, model)) {
+          p.addEnclosedElement(m);
+        }
       }
     }
   }
 
   /**
-   * Fetches source dependency information from the system class
+   * Fetches source dependency information from the source dependency
    * loader.
    */
   @Requires({
@@ -308,23 +307,13 @@ class TypeBuilder extends AbstractTypeBuilder {
     "importNames != null",
     "rootLineNumberIterator != null"
   })
-  @SuppressWarnings("unchecked")
   protected void fetchSourceDependency() throws IOException {
     String fileName = type.getName().getBinaryName()
         + JavaUtils.SOURCE_DEPENDENCY_EXTENSION;
-    InputStream in =
-        sourceDependencyLoader.getResourceAsStream(fileName);
-    if (in == null) {
-      throw new FileNotFoundException();
-    }
-    ObjectInputStream oin = new ObjectInputStream(in);
-    try {
-      importNames = (Set<String>) oin.readObject();
-      rootLineNumberIterator = ((List<Long>) oin.readObject()).iterator();
-    } catch (ClassNotFoundException e) {
-      throw new IOException(e);
-    }
-    oin.close();
+    SourceDependencyFile deps =
+        SourceDependencyFile.load(sourceDependencyLoader, fileName);
+    importNames = deps.getImportNames();
+    rootLineNumberIterator = deps.getLineNumbers().iterator();
   }
 
   @Override
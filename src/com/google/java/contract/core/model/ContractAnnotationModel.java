@@ -66,6 +66,27 @@ public class ContractAnnotationModel extends ElementModel {
    */
   protected boolean weakVirtual;
 
+  /**
+   * {@code true} if this annotation denotes invariants that only
+   * depend on final fields of their class, and thus need only be
+   * checked once the object is constructed.
+   */
+  protected boolean constant;
+
+  /**
+   * {@code true} if this annotation denotes postconditions on the
+   * eventual value of a returned future, and thus need only be
+   * checked once the future completes.
+   */
+  protected boolean async;
+
+  /**
+   * {@code true} if this annotation denotes postconditions on each
+   * element of a returned stream, iterator or iterable, and thus need
+   * only be checked as the elements are consumed.
+   */
+  protected boolean elementwise;
+
   /**
    * The name of the owner type of this annotation, from which it is
    * inherited.
@@ -79,6 +100,13 @@ public class ContractAnnotationModel extends ElementModel {
    */
   protected TypeName returnType;
 
+  /**
+   * The erased type of the elements of the result of the method
+   * contracted by this annotation, if it returns a stream, an
+   * iterator or an iterable, or {@code null}.
+   */
+  protected TypeName elementType;
+
   /**
    * The values of this annotation. These are assertion expressions,
    * as strings.
@@ -117,8 +145,12 @@ public class ContractAnnotationModel extends ElementModel {
     this.primary = primary;
     this.virtual = virtual;
     weakVirtual = false;
+    constant = false;
+    async = false;
+    elementwise = false;
     this.owner = owner;
     this.returnType = returnType;
+    elementType = null;
     values = new ArrayList<String>();
     lineNumbers = new ArrayList<Long>();
   }
@@ -134,8 +166,12 @@ public class ContractAnnotationModel extends ElementModel {
     primary = that.primary;
     virtual = that.virtual;
     weakVirtual = that.weakVirtual;
+    constant = that.constant;
+    async = that.async;
+    elementwise = that.elementwise;
     owner = that.owner;
     returnType = that.returnType;
+    elementType = that.elementType;
     values = new ArrayList<String>(that.values);
     lineNumbers = new ArrayList<Long>(that.lineNumbers);
   }
@@ -161,6 +197,36 @@ public class ContractAnnotationModel extends ElementModel {
     this.weakVirtual = weakVirtual;
   }
 
+  public boolean isConstant() {
+    return constant;
+  }
+
+  @Requires("!constant || getKind() == ElementKind.INVARIANT")
+  public void setConstant(boolean constant) {
+    this.constant = constant;
+  }
+
+  public boolean isAsync() {
+    return async;
+  }
+
+  @Requires("!async || getKind() == ElementKind.ENSURES")
+  public void setAsync(boolean async) {
+    this.async = async;
+  }
+
+  public boolean isElementwise() {
+    return elementwise;
+  }
+
+  @Requires({
+    "!elementwise || getKind() == ElementKind.ENSURES",
+    "!elementwise || getElementType() != null"
+  })
+  public void setElementwise(boolean elementwise) {
+    this.elementwise = elementwise;
+  }
+
   public ClassName getOwner() {
     return owner;
   }
@@ -169,6 +235,14 @@ public class ContractAnnotationModel extends ElementModel {
     return returnType;
   }
 
+  public TypeName getElementType() {
+    return elementType;
+  }
+
+  public void setElementType(TypeName elementType) {
+    this.elementType = elementType;
+  }
+
   public List<String> getValues() {
     return Collections.unmodifiableList(values);
   }
@@ -201,7 +275,8 @@ public class ContractAnnotationModel extends ElementModel {
   /**
    * Returns {@code true} if the specified argument is equal to this
    * object. Two ContractAnnotationModel objects are equal if they
-   * are of the same kind and have the same values.
+   * are of the same kind, constness, asynchrony and element-wiseness,
+   * and have the same values.
    */
   @Override
   public boolean equals(Object obj) {
@@ -214,6 +289,9 @@ public class ContractAnnotationModel extends ElementModel {
 
     ContractAnnotationModel annotation = (ContractAnnotationModel) obj;
     return annotation.getKind() == getKind()
+        && annotation.isConstant() == isConstant()
+        && annotation.isAsync() == isAsync()
+        && annotation.isElementwise() == isElementwise()
         && annotation.getValues().equals(getValues());
   }
 
@@ -42,6 +42,23 @@ public enum ContractKind {
    */
   POST,
 
+  /**
+   * An asynchronous postcondition contract method, which evaluates
+   * the direct (non-inherited) postconditions of the target method
+   * that depend on its result, a future, once it completes.
+   * Asynchronous postconditions have no old values.
+   */
+  ASYNC_POST,
+
+  /**
+   * An element-wise postcondition contract method, which evaluates
+   * the direct (non-inherited) postconditions of the target method
+   * on each element of its result, a stream, iterator or iterable,
+   * as it is consumed. Element-wise postconditions have no old
+   * values.
+   */
+  ELEMENT_POST,
+
   /**
    * An exceptional postcondition contract method, which evaluates all
    * direct (non-inherited) exceptional postconditions of the target
@@ -55,6 +72,14 @@ public enum ContractKind {
    */
   INVARIANT,
 
+  /**
+   * A constant invariant contract method, which evaluates the direct
+   * (non-inherited) invariants of the target class that only depend
+   * on its final fields. These need only be checked once, at the end
+   * of construction.
+   */
+  CONSTANT_INVARIANT,
+
   /**
    * An old value contract method, which computes one old value
    * expression for the corresponding postcondition contract method.
@@ -95,6 +120,7 @@ public enum ContractKind {
   public boolean isClassContract() {
     switch (this) {
       case INVARIANT:
+      case CONSTANT_INVARIANT:
         return true;
       default:
         return false;
@@ -110,6 +136,8 @@ public enum ContractKind {
     switch (this) {
       case PRE:
       case POST:
+      case ASYNC_POST:
+      case ELEMENT_POST:
       case SIGNAL:
       case OLD:
       case SIGNAL_OLD:
@@ -139,6 +167,8 @@ public enum ContractKind {
   public boolean isPostcondition() {
     switch (this) {
       case POST:
+      case ASYNC_POST:
+      case ELEMENT_POST:
       case SIGNAL:
         return true;
       default:
@@ -172,6 +202,8 @@ public enum ContractKind {
   public ContractKind getOldKind() {
     switch (this) {
       case POST:
+      case ASYNC_POST:
+      case ELEMENT_POST:
         return OLD;
       case SIGNAL:
         return SIGNAL_OLD;
@@ -196,10 +228,16 @@ public enum ContractKind {
         return "com$google$java$contract$P";
       case POST:
         return "com$google$java$contract$Q";
+      case ASYNC_POST:
+        return "com$google$java$contract$QA";
+      case ELEMENT_POST:
+        return "com$google$java$contract$QE";
       case SIGNAL:
         return "com$google$java$contract$E";
       case INVARIANT:
         return "com$google$java$contract$I";
+      case CONSTANT_INVARIANT:
+        return "com$google$java$contract$IC";
       case OLD:
         return "com$google$java$contract$QO";
       case SIGNAL_OLD:
@@ -225,10 +263,16 @@ public enum ContractKind {
         return "com$google$java$contract$PH";
       case POST:
         return "com$google$java$contract$QH";
+      case ASYNC_POST:
+        return "com$google$java$contract$QAH";
+      case ELEMENT_POST:
+        return "com$google$java$contract$QEH";
       case SIGNAL:
         return "com$google$java$contract$EH";
       case INVARIANT:
         return "com$google$java$contract$IH";
+      case CONSTANT_INVARIANT:
+        return "com$google$java$contract$ICH";
       case OLD:
         return "com$google$java$contract$QOH";
       case SIGNAL_OLD:
@@ -247,8 +291,11 @@ public enum ContractKind {
       case PRE:
         return ContractVariance.CONTRAVARIANT;
       case POST:
+      case ASYNC_POST:
+      case ELEMENT_POST:
       case SIGNAL:
       case INVARIANT:
+      case CONSTANT_INVARIANT:
         return ContractVariance.COVARIANT;
       default:
         return null;
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.runtime;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+
+/**
+ * Runtime support for asynchronous postconditions, which are checked
+ * once the future returned by their method completes, rather than on
+ * return from the method. This class requires Java 8.
+ *
+ * <p>A method with asynchronous postconditions returns the future
+ * computed by its original code, unchanged. The postconditions are
+ * checked by a callback attached to this future, once it completes
+ * normally; since the future is already complete by then, violations
+ * are reported to a handler rather than thrown to the caller.
+ * Postconditions are not checked if the future completes
+ * exceptionally.
+ */
+public class AsyncContractRuntime {
+  /**
+   * The executor on which asynchronous postconditions are checked,
+   * or {@code null} to check them in the thread that completes the
+   * future.
+   */
+  private static volatile Executor executor;
+
+  private static volatile Thread.UncaughtExceptionHandler violationHandler;
+
+  /**
+   * Sets the executor on which asynchronous postconditions are
+   * checked. By default, or if {@code executor} is {@code null},
+   * they are checked in the thread that completes the future, or in
+   * the calling thread if the future is already complete.
+   */
+  public static void setCompletionExecutor(Executor executor) {
+    AsyncContractRuntime.executor = executor;
+  }
+
+  /**
+   * Sets the handler that violations are reported to. If
+   * {@code handler} is {@code null}, violations are reported to the
+   * uncaught exception handler of the thread that checks them.
+   */
+  public static void setViolationHandler(
+      Thread.UncaughtExceptionHandler handler) {
+    violationHandler = handler;
+  }
+
+  /**
+   * Arranges for {@code check}, the asynchronous postcondition
+   * contract method, to be invoked with {@code args} once
+   * {@code future} has completed normally, and returns
+   * {@code future}. If {@code future} is not a stage, {@code check}
+   * is invoked right away. This method is called on exit from
+   * contracted methods that return futures.
+   */
+  public static Object checkWhenComplete(Object future,
+                                         final MethodHandle check,
+                                         final Object[] args) {
+    if (!(future instanceof CompletionStage)) {
+      invoke(check, args);
+      return future;
+    }
+
+    CompletionStage<?> stage = (CompletionStage<?>) future;
+    BiConsumer<Object, Throwable> action = new BiConsumer<Object, Throwable>() {
+      @Override
+      public void accept(Object value, Throwable failure) {
+        if (failure != null) {
+          return;
+        }
+        verify(check, args);
+      }
+    };
+    Executor e = executor;
+    if (e == null) {
+      stage.whenComplete(action);
+    } else {
+      stage.whenCompleteAsync(action, e);
+    }
+    return future;
+  }
+
+  /**
+   * Invokes {@code check} with {@code args}, and reports violations.
+   */
+  protected static void verify(MethodHandle check, Object[] args) {
+    ContractContext context = ContractRuntime.getContext();
+    if (!context.tryEnterContract()) {
+      return;
+    }
+    try {
+      check.invokeWithArguments(args);
+    } catch (Throwable t) {
+      Thread thread = Thread.currentThread();
+      Thread.UncaughtExceptionHandler handler = violationHandler;
+      if (handler == null) {
+        handler = thread.getUncaughtExceptionHandler();
+      }
+      handler.uncaughtException(thread, t);
+    } finally {
+      context.leaveContract();
+    }
+  }
+
+  /**
+   * Invokes {@code check} with {@code args}. Checked exceptions,
+   * which contract methods do not throw, are wrapped.
+   */
+  private static void invoke(MethodHandle check, Object[] args) {
+    try {
+      check.invokeWithArguments(args);
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new CompletionException(t);
+    }
+  }
+}
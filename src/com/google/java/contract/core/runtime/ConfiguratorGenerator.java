@@ -0,0 +1,232 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.runtime;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Main class of Contracts for Java configurator generator.
+ *
+ * <p>The program takes a profile, as written by
+ * {@link ContractProfiler}, and prints the source of a
+ * {@link com.google.java.contract.ContractEnvironmentConfigurator}
+ * that disables the most expensive contracts, class by class, until
+ * the time spent in the remaining ones is below a target fraction of
+ * the profiled run time. The fraction, in percent, is given by the
+ * system property {@code com.google.java.contract.overhead} (5 by
+ * default). The optional second argument is the name of the
+ * configurator class.
+ *
+ * <p>Contracts are grouped the way configurators handle them:
+ * preconditions, postconditions (including the computation of old
+ * values) and invariants, of each class.
+ */
+public class ConfiguratorGenerator {
+  /**
+   * The contracts of one group of a class, and their cost.
+   */
+  protected static class Group {
+    protected String kind;
+    protected String className;
+    protected long count;
+    protected long nanos;
+
+    protected Group(String kind, String className) {
+      this.kind = kind;
+      this.className = className;
+    }
+  }
+
+  /**
+   * The uptime of the profiled JVM, in milliseconds.
+   */
+  protected long uptime;
+
+  protected Map<String, Group> groups = new LinkedHashMap<String, Group>();
+
+  /**
+   * Reads the profile from {@code in}, adding its counts to those
+   * read so far.
+   *
+   * @throws IllegalArgumentException if the profile is malformed
+   */
+  public void read(BufferedReader in) throws IOException {
+    String line;
+    while ((line = in.readLine()) != null) {
+      if (line.startsWith("#")) {
+        String[] parts = line.split("\t");
+        if (parts.length == 2 && parts[0].equals("# uptime")) {
+          uptime += parseLong(parts[1], line);
+        }
+        continue;
+      }
+      if (line.trim().length() == 0) {
+        continue;
+      }
+
+      String[] parts = line.split("\t", -1);
+      if (parts.length != 5) {
+        throw new IllegalArgumentException("malformed profile line: "
+                                           + line);
+      }
+      String kind = getGroupKind(parts[2]);
+      if (kind == null) {
+        continue;
+      }
+      String key = kind + " " + parts[3];
+      Group group = groups.get(key);
+      if (group == null) {
+        group = new Group(kind, parts[3]);
+        groups.put(key, group);
+      }
+      group.count += parseLong(parts[0], line);
+      group.nanos += parseLong(parts[1], line);
+    }
+  }
+
+  /**
+   * Returns the groups to disable so that the time spent in the
+   * remaining contracts is at most {@code overhead} percent of the
+   * profiled run time, most expensive first.
+   */
+  public List<Group> select(double overhead) {
+    List<Group> sorted = new ArrayList<Group>(groups.values());
+    Collections.sort(sorted, new Comparator<Group>() {
+      @Override
+      public int compare(Group g1, Group g2) {
+        return g1.nanos < g2.nanos ? 1 : g1.nanos == g2.nanos ? 0 : -1;
+      }
+    });
+
+    long total = 0;
+    for (Group group : sorted) {
+      total += group.nanos;
+    }
+    double budget = overhead / 100 * uptime * 1000000;
+    List<Group> selected = new ArrayList<Group>();
+    for (Group group : sorted) {
+      if (total <= budget) {
+        break;
+      }
+      selected.add(group);
+      total -= group.nanos;
+    }
+    return selected;
+  }
+
+  /**
+   * Prints the source of the configurator class {@code name}, which
+   * disables the groups selected for {@code overhead}, to
+   * {@code out}.
+   */
+  public void generate(PrintWriter out, String name, double overhead) {
+    String simpleName = name;
+    int dot = name.lastIndexOf('.');
+    if (dot != -1) {
+      out.println("package " + name.substring(0, dot) + ";");
+      out.println();
+      simpleName = name.substring(dot + 1);
+    }
+    out.println("import com.google.java.contract.ContractEnvironment;");
+    out.println("import "
+                + "com.google.java.contract.ContractEnvironmentConfigurator;");
+    out.println();
+    out.println("/**");
+    out.println(" * Disables the most expensive contracts of a profiled run,");
+    out.println(" * for an overhead of at most " + overhead
+                + "% of " + uptime + " ms.");
+    out.println(" */");
+    out.println("public class " + simpleName
+                + " implements ContractEnvironmentConfigurator {");
+    out.println("  @Override");
+    out.println("  public void configure(ContractEnvironment env) {");
+    for (Group group : select(overhead)) {
+      out.println("    /* " + group.nanos / 1000000 + " ms in "
+                  + group.count + " evaluations. */");
+      out.println("    env.disable" + group.kind + "(\""
+                  + group.className + "\");");
+    }
+    out.println("  }");
+    out.println("}");
+    out.flush();
+  }
+
+  /**
+   * Returns the name of the group of contracts of kind
+   * {@code contractKind}, as it appears in the names of the methods
+   * of {@link com.google.java.contract.ContractEnvironment}, or
+   * {@code null} if such contracts cannot be disabled.
+   */
+  protected static String getGroupKind(String contractKind) {
+    if (contractKind.equals("PRE")) {
+      return "Preconditions";
+    }
+    if (contractKind.equals("INVARIANT")
+        || contractKind.equals("CONSTANT_INVARIANT")) {
+      return "Invariants";
+    }
+    if (contractKind.equals("POST")
+        || contractKind.equals("SIGNAL")
+        || contractKind.equals("OLD")
+        || contractKind.equals("SIGNAL_OLD")
+        || contractKind.equals("ASYNC_POST")
+        || contractKind.equals("ELEMENT_POST")) {
+      return "Postconditions";
+    }
+    return null;
+  }
+
+  private static long parseLong(String s, String line) {
+    try {
+      return Long.parseLong(s.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("malformed profile line: "
+                                         + line);
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1 || args.length > 2) {
+      System.err.println("usage: ConfiguratorGenerator PROFILE [CLASS]");
+      System.exit(1);
+    }
+    double overhead = Double.parseDouble(
+        System.getProperty("com.google.java.contract.overhead", "5"));
+    String name = args.length > 1 ? args[1] : "ProfiledConfigurator";
+
+    ConfiguratorGenerator generator = new ConfiguratorGenerator();
+    BufferedReader in = new BufferedReader(
+        new InputStreamReader(new FileInputStream(args[0]), "UTF-8"));
+    try {
+      generator.read(in);
+    } finally {
+      in.close();
+    }
+    generator.generate(new PrintWriter(System.out), name, overhead);
+  }
+}
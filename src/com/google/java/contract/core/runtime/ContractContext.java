@@ -19,7 +19,10 @@
  */
 package com.google.java.contract.core.runtime;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.IdentityHashMap;
+import java.util.Map;
 
 /**
  * A helper to evaluate and enable method specifications. At runtime
@@ -30,7 +33,9 @@ import java.util.IdentityHashMap;
  *
  * <ul>
  * <li>Disabling contract checking inside of contracts.
+ * <li>Enabling or disabling contract checking on a thread.
  * <li>Storage for failed predicate information.
+ * <li>Deferring invariant checks to the end of batches.
  * </ul>
  *
  * @author nhat.minh.le@huoc.org (Nhat Minh Lê)
@@ -38,9 +43,27 @@ import java.util.IdentityHashMap;
  */
 public class ContractContext {
   /**
-   * The default size of the {@link #entered} object map.
+   * The expected size of the {@link #entered} object map, when it is
+   * first allocated; it grows as needed.
    */
-  private static final int ENTERED_DEFAULT_SIZE = 100;
+  private static final int ENTERED_INITIAL_SIZE = 4;
+
+  /**
+   * The {@link #entered} object map of contexts that have not entered
+   * any object yet, shared by all of them, so that threads do not pay
+   * for a map until they check the contracts of a method, which may
+   * never happen, for example on threads with contracts inactive. It
+   * is never modified.
+   */
+  private static final IdentityHashMap<Object, Void> NOTHING_ENTERED =
+      new IdentityHashMap<Object, Void>(0);
+
+  /**
+   * Whether contracts are checked on threads that have not changed
+   * their activation state.
+   */
+  static final boolean ACTIVE_BY_DEFAULT =
+      !Boolean.getBoolean("com.google.java.contract.inactive");
 
   static ThreadLocal<ContractContext> context =
       new ThreadLocal<ContractContext>() {
@@ -50,11 +73,61 @@ public class ContractContext {
     }
   };
 
+  /**
+   * The invariant contract method of a class, to be called on an
+   * object at the end of a batch.
+   */
+  protected static class DeferredInvariant {
+    protected Class<?> clazz;
+    protected String methodName;
+
+    protected DeferredInvariant(Class<?> clazz, String methodName) {
+      this.clazz = clazz;
+      this.methodName = methodName;
+    }
+  }
+
   protected boolean busy;
+  protected boolean active;
   protected IdentityHashMap<Object, Void> entered;
 
+  /**
+   * The number of nested batches open on this context.
+   */
+  protected int batchDepth;
+
+  /**
+   * The objects whose invariants have been deferred in the current
+   * batch, if any, mapped to the invariants of their most derived
+   * class, which include those of its superclasses.
+   */
+  protected IdentityHashMap<Object, DeferredInvariant> deferred;
+
   protected ContractContext() {
-    entered = new IdentityHashMap<Object, Void>(ENTERED_DEFAULT_SIZE);
+    active = ACTIVE_BY_DEFAULT;
+    entered = NOTHING_ENTERED;
+  }
+
+  /**
+   * Returns {@code true} if contracts are checked on this thread.
+   * Contracted methods query this once on entry; if it returns
+   * {@code false}, they check none of their contracts.
+   */
+  public boolean isActive() {
+    return active;
+  }
+
+  /**
+   * Enables or disables contract checking on this thread. The change
+   * applies to calls made afterwards: methods already running keep
+   * the activation state they were entered with.
+   *
+   * @return the previous activation state
+   */
+  public boolean setActive(boolean active) {
+    boolean wasActive = this.active;
+    this.active = active;
+    return wasActive;
   }
 
   /**
@@ -91,6 +164,9 @@ public class ContractContext {
     if (entered.containsKey(obj)) {
       return false;
     } else {
+      if (entered == NOTHING_ENTERED) {
+        entered = new IdentityHashMap<Object, Void>(ENTERED_INITIAL_SIZE);
+      }
       entered.put(obj, null);
       return true;
     }
@@ -104,6 +180,115 @@ public class ContractContext {
     entered.remove(obj);
   }
 
+  /**
+   * Opens a batch. Until the batch is closed, invariant checks are
+   * deferred: each object whose invariants would have been checked
+   * gets checked once, when the batch is closed. Batches nest; only
+   * the outermost one has an effect.
+   *
+   * @see #closeBatch()
+   * @see #abortBatch()
+   */
+  public void openBatch() {
+    if (batchDepth++ == 0) {
+      deferred = new IdentityHashMap<Object, DeferredInvariant>();
+    }
+  }
+
+  /**
+   * Closes the innermost open batch. If it is the outermost one, the
+   * deferred invariants are checked, and the first one that does not
+   * hold is thrown; the remaining ones are not checked.
+   *
+   * @throws IllegalStateException if no batch is open
+   */
+  public void closeBatch() {
+    if (batchDepth == 0) {
+      throw new IllegalStateException("no open batch");
+    }
+    if (--batchDepth != 0) {
+      return;
+    }
+
+    IdentityHashMap<Object, DeferredInvariant> objects = deferred;
+    deferred = null;
+    boolean enteredContract = tryEnterContract();
+    try {
+      for (Map.Entry<Object, DeferredInvariant> entry : objects.entrySet()) {
+        DeferredInvariant d = entry.getValue();
+        invokeInvariants(entry.getKey(), d.clazz, d.methodName);
+      }
+    } finally {
+      if (enteredContract) {
+        leaveContract();
+      }
+    }
+  }
+
+  /**
+   * Closes the innermost open batch without checking the deferred
+   * invariants. If it is the outermost one, they are discarded. This
+   * is meant for batches left because of an exception, which the
+   * errors of deferred checks would otherwise replace.
+   *
+   * @throws IllegalStateException if no batch is open
+   */
+  public void abortBatch() {
+    if (batchDepth == 0) {
+      throw new IllegalStateException("no open batch");
+    }
+    if (--batchDepth == 0) {
+      deferred = null;
+    }
+  }
+
+  /**
+   * Defers the invariants of {@code obj}, declared in {@code clazz}
+   * and checked by its method {@code methodName}, to the end of the
+   * current batch, if any.
+   *
+   * @return {@code true} if the invariants have been deferred,
+   * {@code false} if they must be checked now
+   */
+  public boolean deferInvariants(Object obj, Class<?> clazz,
+                                 String methodName) {
+    if (deferred == null) {
+      return false;
+    }
+    DeferredInvariant d = deferred.get(obj);
+    if (d == null
+        || (d.clazz != clazz && d.clazz.isAssignableFrom(clazz))) {
+      deferred.put(obj, new DeferredInvariant(clazz, methodName));
+    }
+    return true;
+  }
+
+  /**
+   * Calls the invariant contract method {@code methodName}, declared
+   * in {@code clazz}, on {@code obj}, rethrowing any error it raises.
+   */
+  static void invokeInvariants(Object obj, Class<?> clazz,
+                               String methodName) {
+    try {
+      Method method = clazz.getDeclaredMethod(methodName);
+      method.setAccessible(true);
+      method.invoke(obj);
+    } catch (InvocationTargetException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException(e);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
   /**
    * Resets the busy state of this context.
    */
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.runtime;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A recorder of the number of evaluations and the cumulative time
+ * spent in each contract. Contract methods are timed by the Java
+ * agent if the {@code com.google.java.contract.profile} JVM property
+ * is set, and the profile is written to the file it names when the
+ * JVM exits.
+ *
+ * <p>A profile is a text file. Lines that start with {@code #} are
+ * comments, except for the {@code # uptime} line, which holds the
+ * uptime of the JVM, in milliseconds. Other lines hold, separated by
+ * tabs: the number of evaluations, the cumulative time in
+ * nanoseconds, the kind of contract, the class it belongs to, and
+ * the name of the contracted method, which is empty for invariants.
+ * Lines are sorted by decreasing time.
+ */
+public class ContractProfiler {
+  /**
+   * The name of the profile file, or {@code null} if contracts are
+   * not profiled.
+   */
+  static final String PROFILE =
+      System.getProperty("com.google.java.contract.profile");
+
+  /**
+   * The counters of a contract.
+   */
+  protected static class Entry {
+    protected String key;
+    protected AtomicLong count = new AtomicLong();
+    protected AtomicLong nanos = new AtomicLong();
+
+    protected Entry(String key) {
+      this.key = key;
+    }
+  }
+
+  protected static final ConcurrentMap<String, Entry> entries =
+      new ConcurrentHashMap<String, Entry>();
+
+  static {
+    if (PROFILE != null) {
+      Runtime.getRuntime().addShutdownHook(
+          new Thread("Contracts for Java profile writer") {
+            @Override
+            public void run() {
+              try {
+                write(PROFILE);
+              } catch (IOException e) {
+                System.err.println("[com.google.java.contract] "
+                                   + "cannot write profile: " + e);
+              }
+            }
+          });
+    }
+  }
+
+  /**
+   * Records an evaluation of the contract identified by {@code key},
+   * which started at {@code start}, as returned by
+   * {@link System#nanoTime()}. This method is called on exit from
+   * timed contract methods.
+   */
+  public static void record(String key, long start) {
+    long elapsed = System.nanoTime() - start;
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      Entry newEntry = new Entry(key);
+      entry = entries.putIfAbsent(key, newEntry);
+      if (entry == null) {
+        entry = newEntry;
+      }
+    }
+    entry.count.incrementAndGet();
+    entry.nanos.addAndGet(elapsed);
+  }
+
+  /**
+   * Writes the profile recorded so far to {@code fileName}.
+   */
+  public static void write(String fileName) throws IOException {
+    List<Entry> sorted = new ArrayList<Entry>(entries.values());
+    Collections.sort(sorted, new Comparator<Entry>() {
+      @Override
+      public int compare(Entry e1, Entry e2) {
+        long n1 = e1.nanos.get();
+        long n2 = e2.nanos.get();
+        return n1 < n2 ? 1 : n1 == n2 ? 0 : -1;
+      }
+    });
+
+    PrintWriter out = new PrintWriter(
+        new OutputStreamWriter(new FileOutputStream(fileName), "UTF-8"));
+    try {
+      out.println("# Contracts for Java profile");
+      out.println("# uptime\t"
+                  + ManagementFactory.getRuntimeMXBean().getUptime());
+      for (Entry entry : sorted) {
+        out.println(entry.count.get() + "\t" + entry.nanos.get()
+                    + "\t" + entry.key);
+      }
+    } finally {
+      out.close();
+    }
+  }
+}
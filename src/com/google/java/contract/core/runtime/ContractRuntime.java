@@ -34,6 +34,95 @@ public class ContractRuntime {
     return ContractContext.context.get();
   }
 
+  /**
+   * Returns {@code true} if contracts are checked on the current
+   * thread.
+   */
+  public static boolean isActive() {
+    return getContext().isActive();
+  }
+
+  /**
+   * Enables or disables contract checking on the current thread, for
+   * example to only check contracts while serving a sample of
+   * requests. Threads start with contracts active, unless the
+   * {@code com.google.java.contract.inactive} JVM property is set to
+   * {@code true}. Calls made on threads with contracts inactive check
+   * none of their contracts, and methods already running when the
+   * state changes keep the state they were entered with.
+   *
+   * <p>The previous state should be restored in a {@code finally}
+   * block:
+   *
+   * <pre>
+   * boolean wasActive = ContractRuntime.setActive(true);
+   * try {
+   *   ...
+   * } finally {
+   *   ContractRuntime.setActive(wasActive);
+   * }
+   * </pre>
+   *
+   * @return the previous activation state
+   */
+  public static boolean setActive(boolean active) {
+    return getContext().setActive(active);
+  }
+
+  /**
+   * Opens an invariant batch on the current thread. Until the
+   * matching call to {@link #closeBatch()}, the invariants of
+   * contracted objects are not checked on entry to and exit from
+   * their methods, but once per object when the batch is closed.
+   * Invariants checked at the end of constructors are not deferred.
+   *
+   * <p>Batches should be closed in a {@code finally} block, with
+   * {@link #closeBatch()} if the work completed, and with
+   * {@link #abortBatch()} if it was interrupted by an exception, so
+   * that the exception is not replaced by the error of a deferred
+   * check:
+   *
+   * <pre>
+   * ContractRuntime.openBatch();
+   * boolean completed = false;
+   * try {
+   *   ...
+   *   completed = true;
+   * } finally {
+   *   if (completed) {
+   *     ContractRuntime.closeBatch();
+   *   } else {
+   *     ContractRuntime.abortBatch();
+   *   }
+   * }
+   * </pre>
+   */
+  public static void openBatch() {
+    getContext().openBatch();
+  }
+
+  /**
+   * Closes the innermost invariant batch opened on the current
+   * thread, and checks the deferred invariants if it is the
+   * outermost one.
+   *
+   * @throws IllegalStateException if no batch is open
+   */
+  public static void closeBatch() {
+    getContext().closeBatch();
+  }
+
+  /**
+   * Closes the innermost invariant batch opened on the current
+   * thread without checking the deferred invariants, which are
+   * discarded if it is the outermost one.
+   *
+   * @throws IllegalStateException if no batch is open
+   */
+  public static void abortBatch() {
+    getContext().abortBatch();
+  }
+
   /**
    * Resets the contract context and throws this assertion.
    */
@@ -43,6 +132,24 @@ public class ContractRuntime {
     throw ex;
   }
 
+  /**
+   * Returns the {@code index}-th message of {@code messages}, a list
+   * of messages separated by {@code '\0'} characters. This method
+   * is called by compact contract methods on failure.
+   */
+  public static String getClauseMessage(String messages, int index) {
+    int start = 0;
+    for (int i = 0; i < index; ++i) {
+      start = messages.indexOf('\0', start) + 1;
+      if (start == 0) {
+        return messages;
+      }
+    }
+    int end = messages.indexOf('\0', start);
+    return end == -1 ? messages.substring(start)
+        : messages.substring(start, end);
+  }
+
   /**
    * Magically casts the first argument to the type of the second
    * argument.
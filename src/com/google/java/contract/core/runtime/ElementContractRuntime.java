@@ -0,0 +1,176 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.runtime;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Runtime support for element-wise postconditions, which are checked
+ * on each element of the stream, iterator or iterable returned by
+ * their method, as it is consumed, rather than on return from the
+ * method. Elements that are never consumed are not checked, and
+ * nothing is buffered.
+ *
+ * <p>A method with element-wise postconditions returns a view of the
+ * result computed by its original code, which yields the same
+ * elements, and throws the contract error in place of the first one
+ * that fails the postconditions. Since the view is a different
+ * object, which callers cannot downcast to the type of the original
+ * result, only iterators and iterables whose classes implement no
+ * other interface are wrapped. Collections, which are materialized
+ * already, are checked on return instead, and returned as is; other
+ * results are returned unchecked. Streams are handled by
+ * {@link StreamContractRuntime}.
+ */
+public class ElementContractRuntime {
+  /**
+   * An iterator that checks elements as they are returned.
+   */
+  protected static class CheckedIterator<T> implements Iterator<T> {
+    protected Iterator<T> iterator;
+    protected MethodHandle check;
+    protected Object[] args;
+
+    protected CheckedIterator(Iterator<T> iterator, MethodHandle check,
+                              Object[] args) {
+      this.iterator = iterator;
+      this.check = check;
+      this.args = args;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return iterator.hasNext();
+    }
+
+    @Override
+    public T next() {
+      T element = iterator.next();
+      ElementContractRuntime.check(check, args, element);
+      return element;
+    }
+
+    @Override
+    public void remove() {
+      iterator.remove();
+    }
+  }
+
+  /**
+   * An iterable whose iterators check elements as they are returned.
+   */
+  protected static class CheckedIterable<T> implements Iterable<T> {
+    protected Iterable<T> iterable;
+    protected MethodHandle check;
+    protected Object[] args;
+
+    protected CheckedIterable(Iterable<T> iterable, MethodHandle check,
+                              Object[] args) {
+      this.iterable = iterable;
+      this.check = check;
+      this.args = args;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+      return new CheckedIterator<T>(iterable.iterator(), check, args);
+    }
+  }
+
+  /**
+   * Whether instances of a class may be wrapped, that is, whether the
+   * class implements no interface other than {@link Iterator} or
+   * {@link Iterable}.
+   */
+  private static final ClassValue<Boolean> wrappable =
+      new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> clazz) {
+          for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+            for (Class<?> i : c.getInterfaces()) {
+              if (i != Iterator.class && i != Iterable.class) {
+                return false;
+              }
+            }
+          }
+          return true;
+        }
+      };
+
+  /**
+   * Returns a view of {@code value}, an iterator or an iterable, that
+   * invokes {@code check}, the element-wise postcondition contract
+   * method, on each element as it is consumed. The last of
+   * {@code args} stands for the element. If {@code value} is a
+   * collection, {@code check} is invoked on each of its elements
+   * right away. Collections, and values whose classes implement
+   * other interfaces, are returned as is. This method is called on
+   * exit from contracted methods that return iterators or iterables.
+   */
+  @SuppressWarnings("unchecked")
+  public static Object checkEach(Object value, MethodHandle check,
+                                 Object[] args) {
+    if (value instanceof Collection) {
+      for (Object element : (Collection<?>) value) {
+        check(check, args, element);
+      }
+      return value;
+    }
+    if (value == null || !wrappable.get(value.getClass())) {
+      return value;
+    }
+    if (value instanceof Iterator) {
+      return new CheckedIterator<Object>((Iterator<Object>) value,
+                                         check, args);
+    } else if (value instanceof Iterable) {
+      return new CheckedIterable<Object>((Iterable<Object>) value,
+                                         check, args);
+    } else {
+      return value;
+    }
+  }
+
+  /**
+   * Invokes {@code check} with {@code args}, and {@code element} in
+   * place of the last argument, unless contracts are being checked on
+   * the current thread already. Checked exceptions, which contract
+   * methods do not throw, are wrapped.
+   */
+  static void check(MethodHandle check, Object[] args, Object element) {
+    ContractContext context = ContractRuntime.getContext();
+    if (!context.tryEnterContract()) {
+      return;
+    }
+    try {
+      Object[] elementArgs = args.clone();
+      elementArgs[elementArgs.length - 1] = element;
+      check.invokeWithArguments(elementArgs);
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new UndeclaredThrowableException(t);
+    } finally {
+      context.leaveContract();
+    }
+  }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.runtime;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A background auditor of the invariants of live contracted objects.
+ * Constructors of contracted classes register their objects, which
+ * are only weakly referenced, and a daemon thread periodically checks
+ * the invariants of a sample of them, in a round-robin fashion.
+ *
+ * <p>The auditor is controlled by two JVM properties:
+ * {@code com.google.java.contract.audit}, the period of audits, in
+ * milliseconds, and {@code com.google.java.contract.audit.sample},
+ * the maximum number of objects checked per audit. An audit also
+ * stops after a tenth of the period has elapsed, so that the auditor
+ * never takes more than a tenth of a processor.
+ *
+ * <p>Violations are reported to the uncaught exception handler of the
+ * auditor thread, which does not die; an object is not audited again
+ * after a violation.
+ *
+ * <p>Audits are not synchronized with the threads that own the
+ * objects: the auditor does not take any lock, and may check an
+ * object while one of its methods is in the middle of changing it.
+ * Such an audit may report a violation that no method call would
+ * ever expose, after which the object is no longer audited. Unless
+ * audited objects are not changed concurrently with audits, or their
+ * methods keep their invariants at every step, reports should be
+ * taken as hints rather than proof.
+ */
+public class InvariantAuditor {
+  /**
+   * The period of audits, in milliseconds, or 0 if objects are not
+   * audited.
+   */
+  static final int PERIOD =
+      Integer.getInteger("com.google.java.contract.audit", 0);
+
+  /**
+   * The maximum number of objects checked per audit.
+   */
+  static final int SAMPLE =
+      Integer.getInteger("com.google.java.contract.audit.sample", 100);
+
+  /**
+   * The number of stripes of the registry; a power of two.
+   */
+  private static final int STRIPE_COUNT = 16;
+
+  /**
+   * A registered object, and the invariant contract method it is
+   * checked with.
+   */
+  protected static class Entry extends WeakReference<Object> {
+    protected Class<?> clazz;
+    protected String methodName;
+
+    protected Entry(Object obj, Class<?> clazz, String methodName) {
+      super(obj);
+      this.clazz = clazz;
+      this.methodName = methodName;
+    }
+  }
+
+  /**
+   * A part of the registry. Threads register objects in different
+   * stripes, so that they rarely contend for the same lock.
+   */
+  protected static class Stripe {
+    protected Entry[] entries = new Entry[16];
+    protected int size;
+
+    /**
+     * The index of the next entry to audit.
+     */
+    protected int cursor;
+
+    /**
+     * Adds {@code entry} to this stripe. Entries whose objects have
+     * been collected are purged whenever the stripe fills up.
+     */
+    synchronized void add(Entry entry) {
+      if (size == entries.length) {
+        purge();
+        if (size >= entries.length * 3 / 4) {
+          Entry[] newEntries = new Entry[entries.length * 2];
+          System.arraycopy(entries, 0, newEntries, 0, size);
+          entries = newEntries;
+        }
+      }
+      entries[size++] = entry;
+    }
+
+    /**
+     * Adds up to {@code count} entries of this stripe to
+     * {@code sample}, starting after the last one sampled. Entries
+     * whose objects have been collected are removed along the way.
+     */
+    synchronized void sample(List<Entry> sample, int count) {
+      int added = 0;
+      for (int n = size; n > 0 && added < count; --n) {
+        if (cursor >= size) {
+          cursor = 0;
+        }
+        Entry entry = entries[cursor];
+        if (entry.get() == null) {
+          entries[cursor] = entries[--size];
+          entries[size] = null;
+        } else {
+          sample.add(entry);
+          ++added;
+          ++cursor;
+        }
+      }
+    }
+
+    protected void purge() {
+      int j = 0;
+      for (int i = 0; i < size; ++i) {
+        if (entries[i].get() != null) {
+          entries[j++] = entries[i];
+        }
+      }
+      for (int i = j; i < size; ++i) {
+        entries[i] = null;
+      }
+      size = j;
+      cursor = 0;
+    }
+  }
+
+  protected static final Stripe[] stripes;
+
+  static {
+    stripes = new Stripe[STRIPE_COUNT];
+    for (int i = 0; i < STRIPE_COUNT; ++i) {
+      stripes[i] = new Stripe();
+    }
+
+    if (PERIOD > 0) {
+      Thread thread = new Thread("Contracts for Java invariant auditor") {
+        @Override
+        public void run() {
+          runAudits();
+        }
+      };
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      thread.start();
+    }
+  }
+
+  /**
+   * Registers {@code obj} for auditing with the invariant contract
+   * method {@code methodName}, declared in {@code clazz}. This method
+   * is called at the end of constructors of contracted classes.
+   */
+  public static void register(Object obj, Class<?> clazz,
+                              String methodName) {
+    int index = (int) Thread.currentThread().getId() & (STRIPE_COUNT - 1);
+    stripes[index].add(new Entry(obj, clazz, methodName));
+  }
+
+  /**
+   * Runs audits forever.
+   */
+  protected static void runAudits() {
+    int next = 0;
+    List<Entry> sample = new ArrayList<Entry>();
+    for (;;) {
+      try {
+        Thread.sleep(PERIOD);
+      } catch (InterruptedException e) {
+        return;
+      }
+
+      sample.clear();
+      for (int i = 0; i < STRIPE_COUNT && sample.size() < SAMPLE; ++i) {
+        stripes[next].sample(sample, SAMPLE - sample.size());
+        next = (next + 1) & (STRIPE_COUNT - 1);
+      }
+      audit(sample, System.nanoTime() + PERIOD * 100000L);
+    }
+  }
+
+  /**
+   * Checks the invariants of the objects in {@code sample} until
+   * {@code deadline}, as returned by {@link System#nanoTime()}.
+   */
+  protected static void audit(List<Entry> sample, long deadline) {
+    ContractContext context = ContractRuntime.getContext();
+    for (Entry entry : sample) {
+      if (System.nanoTime() - deadline > 0) {
+        break;
+      }
+      Object obj = entry.get();
+      if (obj == null) {
+        continue;
+      }
+
+      boolean enteredContract = context.tryEnterContract();
+      try {
+        ContractContext.invokeInvariants(obj, entry.clazz,
+                                         entry.methodName);
+      } catch (Throwable t) {
+        entry.clear();
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+      } finally {
+        if (enteredContract) {
+          context.leaveContract();
+        }
+      }
+    }
+  }
+}
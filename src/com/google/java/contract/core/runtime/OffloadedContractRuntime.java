@@ -0,0 +1,168 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.runtime;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of background threads that check postconditions handed over
+ * by contracted methods, off the critical path of their callers.
+ * Contracted methods submit a handle to their postcondition contract
+ * method, together with the arguments to call it with, which must be
+ * safe to use from another thread: such methods only have immutable
+ * parameters and return values.
+ *
+ * <p>The pool is controlled by the following JVM properties:
+ *
+ * <ul>
+ * <li>{@code com.google.java.contract.offload.threads}, the number
+ * of verifier threads;
+ * <li>{@code com.google.java.contract.offload.queue}, the maximum
+ * number of pending checks;
+ * <li>{@code com.google.java.contract.offload.policy}, the policy
+ * applied under load: {@code drop}, to drop checks submitted while
+ * the queue is full, or {@code sample}, to also only accept one in
+ * {@code com.google.java.contract.offload.sample} checks while the
+ * queue is more than half full.
+ * </ul>
+ *
+ * <p>Violations are reported to the violation handler, if set, or
+ * else to the uncaught exception handler of the verifier thread,
+ * which does not die.
+ */
+public class OffloadedContractRuntime {
+  static final int THREADS =
+      Integer.getInteger("com.google.java.contract.offload.threads", 1);
+
+  static final int QUEUE =
+      Integer.getInteger("com.google.java.contract.offload.queue", 1024);
+
+  static final boolean SAMPLE_POLICY =
+      System.getProperty("com.google.java.contract.offload.policy", "drop")
+      .equals("sample");
+
+  static final int SAMPLE =
+      Integer.getInteger("com.google.java.contract.offload.sample", 10);
+
+  protected static final ThreadPoolExecutor executor;
+
+  /**
+   * The number of checks submitted, and dropped.
+   */
+  protected static final AtomicLong submitted = new AtomicLong();
+  protected static final AtomicLong dropped = new AtomicLong();
+
+  private static volatile Thread.UncaughtExceptionHandler violationHandler;
+
+  static {
+    ThreadFactory threadFactory = new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread =
+            new Thread(r, "Contracts for Java postcondition verifier");
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+    RejectedExecutionHandler rejectionHandler =
+        new RejectedExecutionHandler() {
+          @Override
+          public void rejectedExecution(Runnable r,
+                                        ThreadPoolExecutor executor) {
+            dropped.incrementAndGet();
+          }
+        };
+    executor = new ThreadPoolExecutor(
+        THREADS, THREADS, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(QUEUE),
+        threadFactory, rejectionHandler);
+  }
+
+  /**
+   * Sets the handler that violations are reported to. If
+   * {@code handler} is {@code null}, violations are reported to the
+   * uncaught exception handler of the verifier thread.
+   */
+  public static void setViolationHandler(
+      Thread.UncaughtExceptionHandler handler) {
+    violationHandler = handler;
+  }
+
+  /**
+   * Returns the number of checks submitted so far.
+   */
+  public static long getSubmittedCount() {
+    return submitted.get();
+  }
+
+  /**
+   * Returns the number of checks dropped so far, under load.
+   */
+  public static long getDroppedCount() {
+    return dropped.get();
+  }
+
+  /**
+   * Schedules {@code check}, a postcondition contract method, to be
+   * invoked with {@code args} by a verifier thread, unless the
+   * policy drops it. This method is called on exit from contracted
+   * methods whose postconditions are offloaded.
+   */
+  public static void submit(final MethodHandle check, final Object[] args) {
+    long n = submitted.getAndIncrement();
+    if (SAMPLE_POLICY && executor.getQueue().size() >= QUEUE / 2
+        && n % SAMPLE != 0) {
+      dropped.incrementAndGet();
+      return;
+    }
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        verify(check, args);
+      }
+    });
+  }
+
+  /**
+   * Invokes {@code check} with {@code args}, and reports violations.
+   */
+  protected static void verify(MethodHandle check, Object[] args) {
+    ContractContext context = ContractRuntime.getContext();
+    boolean enteredContract = context.tryEnterContract();
+    try {
+      check.invokeWithArguments(args);
+    } catch (Throwable t) {
+      Thread thread = Thread.currentThread();
+      Thread.UncaughtExceptionHandler handler = violationHandler;
+      if (handler == null) {
+        handler = thread.getUncaughtExceptionHandler();
+      }
+      handler.uncaughtException(thread, t);
+    } finally {
+      if (enteredContract) {
+        context.leaveContract();
+      }
+    }
+  }
+}
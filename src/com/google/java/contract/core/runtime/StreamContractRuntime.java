@@ -0,0 +1,58 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.runtime;
+
+import java.lang.invoke.MethodHandle;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Runtime support for element-wise postconditions on streams. This
+ * class requires Java 8.
+ *
+ * @see ElementContractRuntime
+ */
+public class StreamContractRuntime {
+  /**
+   * Returns a stream that yields the elements of {@code value}, a
+   * stream, after invoking {@code check}, the element-wise
+   * postcondition contract method, on each of them, as they pass
+   * through the pipeline. The last of {@code args} stands for the
+   * element. Other values are returned as is. This method is called
+   * on exit from contracted methods that return streams.
+   *
+   * <p>The check is a filter stage that keeps every element, rather
+   * than a {@code peek} stage, because terminal operations such as
+   * {@code count} skip the intermediate stages of a stream whose size
+   * is known; a filter makes the size unknown, so that every element
+   * goes through the check.
+   */
+  public static Object checkEach(Object value, final MethodHandle check,
+                                 final Object[] args) {
+    if (!(value instanceof Stream)) {
+      return value;
+    }
+    return ((Stream<?>) value).filter(new Predicate<Object>() {
+      @Override
+      public boolean test(Object element) {
+        ElementContractRuntime.check(check, args, element);
+        return true;
+      }
+    });
+  }
+}
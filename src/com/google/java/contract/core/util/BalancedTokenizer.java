@@ -61,6 +61,18 @@ public class BalancedTokenizer extends LineNumberingTokenizer {
     stack = new ArrayDeque<Character>();
   }
 
+  /**
+   * Constructs a new BalancedTokenizer scanning the characters of
+   * {@code input}.
+   *
+   * @see JavaTokenizer#JavaTokenizer(CharSequence)
+   */
+  @Requires("input != null")
+  public BalancedTokenizer(CharSequence input) {
+    super(input);
+    stack = new ArrayDeque<Character>();
+  }
+
   @Ensures({
     "result != null",
     "result.size() == getCurrentLevel()"
@@ -109,7 +121,7 @@ public class BalancedTokenizer extends LineNumberingTokenizer {
       return false;
     }
     if (nextToken.kind == TokenKind.SYMBOL) {
-      char c = nextToken.text.charAt(0);
+      char c = nextToken.charAt(0);
       switch (c) {
         case '(':
         case '[':
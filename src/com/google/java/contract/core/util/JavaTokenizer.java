@@ -32,9 +32,18 @@ import java.util.NoSuchElementException;
  * quoted strings, comments, and white space. Symbols are <em>not</em>
  * aggregated into operators.
  *
+ * <p>A JavaTokenizer either reads characters from a {@link Reader},
+ * copying the text of each token as it goes, or scans a
+ * {@link CharSequence} in place. In the latter case, tokens are spans
+ * of the input sequence, and their text is only materialized as a
+ * string when {@link Token#getText()} is called.
+ *
  * @author nhat.minh.le@huoc.org (Nhat Minh Lê)
  */
-@Invariant("reader != null")
+@Invariant({
+  "(reader == null) != (input == null)",
+  "reader == null || lexeme != null"
+})
 public class JavaTokenizer implements Iterator<JavaTokenizer.Token> {
   /**
    * The kind of a token.
@@ -67,25 +76,157 @@ public class JavaTokenizer implements Iterator<JavaTokenizer.Token> {
   }
 
   /**
-   * A token returned by an instance of JavaTokenizer.
+   * A token returned by an instance of JavaTokenizer. A token is a
+   * span of {@code length} characters, starting at {@code offset}, in
+   * some source sequence. Its text is only turned into a string on
+   * demand.
    */
-  public class Token {
+  @Invariant({
+    "kind != null",
+    "source != null",
+    "start >= 0",
+    "length >= 0",
+    "start + length <= source.length()"
+  })
+  public static class Token {
     public final TokenKind kind;
-    public final String text;
     public final int offset;
+    public final int length;
+
+    /**
+     * The characters this token spans, starting at {@code start}.
+     */
+    private final CharSequence source;
+    private final int start;
+
+    /**
+     * The text of this token, once materialized.
+     */
+    private String text;
 
     protected Token(TokenKind kind, String text, int offset) {
       this.kind = kind;
+      this.offset = offset;
+      length = text.length();
+      source = text;
+      start = 0;
       this.text = text;
+    }
+
+    /**
+     * Constructs a new token spanning {@code length} characters of
+     * {@code source}, starting at {@code offset}.
+     */
+    protected Token(TokenKind kind, CharSequence source, int offset,
+                    int length) {
+      this.kind = kind;
       this.offset = offset;
+      this.length = length;
+      this.source = source;
+      start = offset;
+      text = null;
+    }
+
+    /**
+     * Returns the text of this token.
+     */
+    @Ensures({
+      "result != null",
+      "result.length() == length"
+    })
+    public String getText() {
+      if (text == null) {
+        text = source.subSequence(start, start + length).toString();
+      }
+      return text;
+    }
+
+    @Requires({
+      "index >= 0",
+      "index < length"
+    })
+    public char charAt(int index) {
+      return source.charAt(start + index);
+    }
+
+    /**
+     * Returns {@code true} if the text of this token is
+     * {@code string}. Does not materialize the text of this token.
+     */
+    @Requires("string != null")
+    @Ensures("result == getText().equals(string)")
+    public boolean textEquals(String string) {
+      if (string.length() != length) {
+        return false;
+      }
+      for (int i = 0; i < length; ++i) {
+        if (source.charAt(start + i) != string.charAt(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Returns {@code true} if this token and {@code token} are
+     * contiguous spans of the same source sequence.
+     */
+    @Requires("token != null")
+    protected boolean isFollowedBy(Token token) {
+      return source == token.source && start + length == token.start;
+    }
+
+    /**
+     * Returns a new token of the same kind spanning the characters of
+     * this token followed by those of {@code token}.
+     */
+    @Requires("token != null")
+    @Ensures({
+      "result != null",
+      "result.length == length + token.length"
+    })
+    protected Token concat(Token token) {
+      if (start == offset && isFollowedBy(token)) {
+        return new Token(kind, source, offset, length + token.length);
+      }
+      return new Token(kind, getText() + token.getText(), offset);
+    }
+
+    /**
+     * Appends the text of this token to {@code buffer}.
+     */
+    @Requires("buffer != null")
+    public void appendTo(StringBuilder buffer) {
+      if (text != null) {
+        buffer.append(text);
+      } else {
+        buffer.append(source, start, start + length);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return getText();
     }
   }
 
   /**
-   * The source of characters to tokenize.
+   * The source of characters to tokenize, if reading from a reader.
    */
   protected PushbackReader reader;
 
+  /**
+   * The characters read so far for the current token, if reading from
+   * a reader.
+   */
+  protected StringBuilder lexeme;
+
+  /**
+   * The sequence of characters to tokenize, if scanning a character
+   * sequence.
+   */
+  protected CharSequence input;
+
   /**
    * The next token returned by this tokenizer, or {@code null} if
    * none (end of file or not read yet).
@@ -114,14 +255,32 @@ public class JavaTokenizer implements Iterator<JavaTokenizer.Token> {
   @Requires("reader != null")
   public JavaTokenizer(Reader reader) {
     this.reader = new PushbackReader(reader);
+    lexeme = new StringBuilder();
+    input = null;
+    nextToken = null;
+    hasErrors_ = false;
+    currentOffset = 0;
+  }
+
+  /**
+   * Constructs a new JavaTokenizer scanning the characters of
+   * {@code input}, which must not change while in use. Token offsets
+   * are indices into {@code input}. To tokenize a character array,
+   * wrap it in a {@link java.nio.CharBuffer}.
+   */
+  @Requires("input != null")
+  public JavaTokenizer(CharSequence input) {
+    reader = null;
+    lexeme = null;
+    this.input = input;
     nextToken = null;
     hasErrors_ = false;
     currentOffset = 0;
   }
 
   /**
-   * Reads a character from {@code reader}. In this implementation,
-   * all read accesses to the reader pass through this method.
+   * Reads a character from the input. In this implementation, all
+   * read accesses to the input pass through this method.
    *
    * @param allowEOF if {@code false}, throws IOException if EOF is
    * reached
@@ -130,7 +289,15 @@ public class JavaTokenizer implements Iterator<JavaTokenizer.Token> {
     "!allowEOF ? result >= 0 : result >= -1"
   })
   protected int readChar(boolean allowEOF) throws IOException {
-    int c = reader.read();
+    int c;
+    if (input != null) {
+      c = currentOffset < input.length() ? input.charAt(currentOffset) : -1;
+    } else {
+      c = reader.read();
+      if (c != -1) {
+        lexeme.append((char) c);
+      }
+    }
     if (c != -1) {
       ++currentOffset;
     } else {
@@ -142,16 +309,40 @@ public class JavaTokenizer implements Iterator<JavaTokenizer.Token> {
   }
 
   /**
-   * Pushes back a character into {@code reader}. In this
-   * implementation, all unread accesses to the reader pass through
-   * this method.
+   * Pushes back a character into the input. In this implementation,
+   * all unread accesses to the input pass through this method.
    */
   protected void unreadChar(int c) throws IOException {
     if (c == -1) {
       return;
     }
     --currentOffset;
-    reader.unread(c);
+    if (input == null) {
+      reader.unread(c);
+      int length = lexeme.length();
+      if (length != 0) {
+        lexeme.setLength(length - 1);
+      }
+    }
+  }
+
+  /**
+   * Returns a new token of kind {@code kind}, made of the characters
+   * read since {@code startOffset}.
+   */
+  @Requires({
+    "kind != null",
+    "startOffset >= 0",
+    "startOffset <= getCurrentOffset()"
+  })
+  @Ensures("result != null")
+  protected Token newToken(TokenKind kind, int startOffset) {
+    if (input != null) {
+      return new Token(kind, input, startOffset,
+                       currentOffset - startOffset);
+    } else {
+      return new Token(kind, lexeme.toString(), startOffset);
+    }
   }
 
   /**
@@ -163,46 +354,39 @@ public class JavaTokenizer implements Iterator<JavaTokenizer.Token> {
   @Ensures("result == (nextToken != null)")
   protected boolean lex() throws IOException {
     int startOffset = currentOffset;
-    StringBuilder buffer = new StringBuilder();
+    if (lexeme != null) {
+      lexeme.setLength(0);
+    }
     int c = readChar(true);
     if (c == -1) {
       return false;
     }
-    buffer.append((char) c);
     switch (c) {
       case '/':
         /* Comments. */
         c = readChar(true);
         switch (c) {
           case '/':
-            buffer.append((char) c);
             do {
               c = readChar(false);
-              buffer.append((char) c);
             } while (c != '\n');
-            nextToken = new Token(TokenKind.COMMENT, buffer.toString(),
-                                  startOffset);
+            nextToken = newToken(TokenKind.COMMENT, startOffset);
             break;
           case '*':
-            buffer.append((char) c);
             for (;;) {
               c = readChar(false);
-              buffer.append((char) c);
               if (c == '*') {
                 c = readChar(false);
-                buffer.append((char) c);
                 if (c == '/') {
                   break;
                 }
               }
             }
-            nextToken = new Token(TokenKind.COMMENT, buffer.toString(),
-                                  startOffset);
+            nextToken = newToken(TokenKind.COMMENT, startOffset);
             break;
           default:
             unreadChar(c);
-            nextToken = new Token(TokenKind.SYMBOL, buffer.toString(),
-                                  startOffset);
+            nextToken = newToken(TokenKind.SYMBOL, startOffset);
         }
         break;
 
@@ -212,15 +396,14 @@ public class JavaTokenizer implements Iterator<JavaTokenizer.Token> {
         int delim = c;
         for (;;) {
           c = readChar(false);
-          buffer.append((char) c);
           if (c == delim) {
             break;
           }
           if (c == '\\') {
-            buffer.append((char) readChar(false));
+            readChar(false);
           }
         }
-        nextToken = new Token(TokenKind.QUOTE, buffer.toString(), startOffset);
+        nextToken = newToken(TokenKind.QUOTE, startOffset);
         break;
 
       default:
@@ -228,22 +411,20 @@ public class JavaTokenizer implements Iterator<JavaTokenizer.Token> {
           /* Identifiers. */
           while ((c = readChar(true)) != -1
                  && Character.isJavaIdentifierPart(c)) {
-            buffer.append((char) c);
+            continue;
           }
           unreadChar(c);
-          nextToken = new Token(TokenKind.WORD, buffer.toString(), startOffset);
+          nextToken = newToken(TokenKind.WORD, startOffset);
         } else if (Character.isWhitespace(c)) {
           /* White space. */
           while ((c = readChar(true)) != -1 && Character.isWhitespace(c)) {
-            buffer.append((char) c);
+            continue;
           }
           unreadChar(c);
-          nextToken = new Token(TokenKind.SPACE, buffer.toString(),
-                                startOffset);
+          nextToken = newToken(TokenKind.SPACE, startOffset);
         } else {
           /* Symbol. */
-          nextToken = new Token(TokenKind.SYMBOL, buffer.toString(),
-                                startOffset);
+          nextToken = newToken(TokenKind.SYMBOL, startOffset);
         }
     }
     return true;
@@ -23,7 +23,6 @@ import com.google.java.contract.Requires;
 
 import java.io.File;
 import java.io.InputStream;
-import java.io.StringReader;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
@@ -99,6 +98,12 @@ public class JavaUtils {
   public static final String RESULT_VARIABLE =
       "result";
 
+  /**
+   * The name of the <em>user-visible</em> element variable.
+   */
+  public static final String ELEMENT_VARIABLE =
+      "element";
+
   /**
    * The name of the <em>user-visible</em> signal variable.
    */
@@ -117,6 +122,29 @@ public class JavaUtils {
   public static final String SYNTHETIC_MEMBER_PREFIX =
       "com$google$java$contract$S";
 
+  /**
+   * The prefix added to the names of contract stub methods, which
+   * hold contract checking code moved out of contracted methods.
+   */
+  public static final String STUB_MEMBER_PREFIX =
+      "com$google$java$contract$T$";
+
+  /**
+   * The name of the synthetic field that records whether the
+   * invariants of an object have been checked since the object was
+   * last written to.
+   */
+  public static final String VALID_FIELD =
+      "com$google$java$contract$valid";
+
+  /**
+   * The name of the synthetic method that clears the
+   * {@link #VALID_FIELD} flags of an object, for all its contracted
+   * classes.
+   */
+  public static final String DIRTY_METHOD =
+      "com$google$java$contract$dirty";
+
   /**
    * The prefix of all old variable names.
    */
@@ -139,6 +167,21 @@ public class JavaUtils {
   public static final String EXCEPTION_VARIABLE_PREFIX =
       "com$google$java$contract$local$exception";
 
+  /**
+   * The name of a temporary variable that holds the index of the
+   * assertion expression being evaluated, in compact contract
+   * methods.
+   */
+  public static final String CLAUSE_VARIABLE =
+      "com$google$java$contract$local$clause";
+
+  /**
+   * The label of the block that evaluates all assertion expressions,
+   * in compact contract methods.
+   */
+  public static final String CLAUSE_LABEL =
+      "com$google$java$contract$local$clauses";
+
   /**
    * The name of a temporary variable that keeps track of failed
    * contravariant conditions.
@@ -197,15 +240,22 @@ public class JavaUtils {
   @Requires("code != null")
   @Ensures("result != null")
   public static String deleteComments(String code) {
-    StringBuilder buffer = new StringBuilder();
-    JavaTokenizer tokenizer = new JavaTokenizer(new StringReader(code));
-    while (tokenizer.hasNext()) {
-      JavaTokenizer.Token token = tokenizer.next();
+    return deleteComments(new TokenList(code)).toString();
+  }
+
+  /**
+   * Returns a copy of {@code code} without comments.
+   */
+  @Requires("code != null")
+  @Ensures("result != null")
+  public static TokenList deleteComments(TokenList code) {
+    TokenList list = new TokenList();
+    for (JavaTokenizer.Token token : code) {
       if (token.kind != JavaTokenizer.TokenKind.COMMENT) {
-        buffer.append(token.text);
+        list.add(token);
       }
     }
-    return buffer.toString();
+    return list;
   }
 
   /**
@@ -220,26 +270,38 @@ public class JavaUtils {
     "code.length() == result.length() + generatedCodeLength(code)"
   })
   public static String deleteGeneratedCode(String code) {
-    StringBuilder buffer = new StringBuilder();
-    JavaTokenizer tokenizer = new JavaTokenizer(new StringReader(code));
+    return deleteGeneratedCode(new TokenList(code)).toString();
+  }
+
+  /**
+   * Returns a copy of {@code code} without generated code.
+   *
+   * @see #deleteGeneratedCode(String)
+   */
+  @Requires("code != null")
+  @Ensures({
+    "result != null",
+    "code.length() == result.length() + generatedCodeLength(code)"
+  })
+  public static TokenList deleteGeneratedCode(TokenList code) {
+    TokenList list = new TokenList();
     boolean ignore = false;
-    while (tokenizer.hasNext()) {
-      JavaTokenizer.Token token = tokenizer.next();
+    for (JavaTokenizer.Token token : code) {
       if (!ignore) {
         if (token.kind == JavaTokenizer.TokenKind.COMMENT
-            && token.text.equals(BEGIN_GENERATED_CODE)) {
+            && token.textEquals(BEGIN_GENERATED_CODE)) {
           ignore = true;
         } else {
-          buffer.append(token.text);
+          list.add(token);
         }
       } else {
         if (token.kind == JavaTokenizer.TokenKind.COMMENT
-            && token.text.equals(END_GENERATED_CODE)) {
+            && token.textEquals(END_GENERATED_CODE)) {
           ignore = false;
         }
       }
     }
-    return buffer.toString();
+    return list;
   }
 
   /**
@@ -251,23 +313,33 @@ public class JavaUtils {
   @Requires("code != null")
   @Ensures("result == code.length() - deleteGeneratedCode(code).length()")
   public static int generatedCodeLength(String code) {
+    return generatedCodeLength(new TokenList(code));
+  }
+
+  /**
+   * Returns the number of characters used in {@code code} for
+   * generated code.
+   *
+   * @see #deleteGeneratedCode(String)
+   */
+  @Requires("code != null")
+  @Ensures("result == code.length() - deleteGeneratedCode(code).length()")
+  public static int generatedCodeLength(TokenList code) {
     int length = 0;
-    JavaTokenizer tokenizer = new JavaTokenizer(new StringReader(code));
     boolean ignore = false;
-    while (tokenizer.hasNext()) {
-      JavaTokenizer.Token token = tokenizer.next();
+    for (JavaTokenizer.Token token : code) {
       if (!ignore) {
         if (token.kind == JavaTokenizer.TokenKind.COMMENT
-            && token.text.equals(BEGIN_GENERATED_CODE)) {
+            && token.textEquals(BEGIN_GENERATED_CODE)) {
           ignore = true;
-          length += token.text.length();
+          length += token.length;
         }
       } else {
         if (token.kind == JavaTokenizer.TokenKind.COMMENT
-            && token.text.equals(END_GENERATED_CODE)) {
+            && token.textEquals(END_GENERATED_CODE)) {
           ignore = false;
         }
-        length += token.text.length();
+        length += token.length;
       }
     }
     return length;
@@ -284,24 +356,35 @@ public class JavaUtils {
   @Ensures("result != null")
   public static String renameLocalVariables(String code,
                                             Map<String, String> map) {
-    StringBuilder buffer = new StringBuilder();
-    JavaTokenizer tokenizer = new JavaTokenizer(new StringReader(code));
+    return renameLocalVariables(new TokenList(code), map).toString();
+  }
+
+  /**
+   * Returns a copy of {@code code} with all unqualified identifiers
+   * remapped according to {@code map}.
+   */
+  @Requires({
+    "code != null",
+    "map != null"
+  })
+  @Ensures("result != null")
+  public static TokenList renameLocalVariables(TokenList code,
+                                               Map<String, String> map) {
+    TokenList list = new TokenList();
     boolean qualified = false;
-    while (tokenizer.hasNext()) {
-      JavaTokenizer.Token token = tokenizer.next();
+    for (JavaTokenizer.Token token : code) {
+      String replacement = null;
       if (!qualified && token.kind == JavaTokenizer.TokenKind.WORD) {
-        String replacement = map.get(token.text);
-        if (replacement != null) {
-          buffer.append(replacement);
-        } else {
-          buffer.append(token.text);
-        }
+        replacement = map.get(token.getText());
+      }
+      if (replacement != null) {
+        list.add(JavaTokenizer.TokenKind.WORD, replacement);
       } else {
-        buffer.append(token.text);
+        list.add(token);
       }
-      qualified = token.text.equals(".");
+      qualified = token.textEquals(".");
     }
-    return buffer.toString();
+    return list;
   }
 
   /**
@@ -318,14 +401,14 @@ public class JavaUtils {
     if (token1 == null) {
       return false;
     }
-    if (!token1.text.equals(text)) {
+    if (!token1.textEquals(text)) {
       if (token1.kind != JavaTokenizer.TokenKind.SPACE) {
         return false;
       }
       if (token2 == null) {
         return false;
       }
-      if (!token2.text.equals(text)) {
+      if (!token2.textEquals(text)) {
         return false;
       }
     }
@@ -341,7 +424,7 @@ public class JavaUtils {
     "text != null"
   })
   public static void skipPast(JavaTokenizer tokenizer, String text) {
-    while (tokenizer.hasNext() && !tokenizer.next().text.equals(text)) {
+    while (tokenizer.hasNext() && !tokenizer.next().textEquals(text)) {
     }
   }
 
@@ -372,14 +455,14 @@ public class JavaUtils {
       switch (token.kind) {
         case WORD:
           if (expectWord) {
-            buffer.append(token.text);
+            token.appendTo(buffer);
             expectWord = false;
           } else {
             break loop;
           }
           break;
         case SYMBOL:
-          switch (token.text.charAt(0)) {
+          switch (token.charAt(0)) {
             case '.':
               if (!expectWord) {
                 buffer.append(".");
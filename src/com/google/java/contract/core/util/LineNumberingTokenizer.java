@@ -46,6 +46,18 @@ public class LineNumberingTokenizer extends JavaTokenizer {
     currentLineNumber = 1;
   }
 
+  /**
+   * Constructs a new LineNumberingTokenizer scanning the characters of
+   * {@code input}.
+   *
+   * @see JavaTokenizer#JavaTokenizer(CharSequence)
+   */
+  @Requires("input != null")
+  public LineNumberingTokenizer(CharSequence input) {
+    super(input);
+    currentLineNumber = 1;
+  }
+
   @Override
   protected boolean lex() throws IOException {
     if (!super.lex()) {
@@ -53,13 +65,10 @@ public class LineNumberingTokenizer extends JavaTokenizer {
     }
     if (nextToken.kind == TokenKind.SPACE
         || nextToken.kind == TokenKind.COMMENT) {
-      int lastIndex = -1;
-      for (;;) {
-        lastIndex = nextToken.text.indexOf('\n', lastIndex + 1);
-        if (lastIndex == -1) {
-          break;
+      for (int i = 0; i < nextToken.length; ++i) {
+        if (nextToken.charAt(i) == '\n') {
+          ++currentLineNumber;
         }
-        ++currentLineNumber;
       }
     }
     return true;
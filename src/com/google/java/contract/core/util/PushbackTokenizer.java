@@ -50,6 +50,18 @@ public class PushbackTokenizer extends JavaTokenizer {
     queue = new ArrayDeque<Token>();
   }
 
+  /**
+   * Constructs a new PushbackTokenizer scanning the characters of
+   * {@code input}.
+   *
+   * @see JavaTokenizer#JavaTokenizer(CharSequence)
+   */
+  @Requires("input != null")
+  public PushbackTokenizer(CharSequence input) {
+    super(input);
+    queue = new ArrayDeque<Token>();
+  }
+
   @Requires("token != null")
   @Ensures("token == getNextToken()")
   public void pushback(Token token) {
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.core.util;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.Requires;
+import com.google.java.contract.core.util.JavaTokenizer.Token;
+import com.google.java.contract.core.util.JavaTokenizer.TokenKind;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * A tokenized piece of Java code. Code rewriting passes operate on
+ * token lists, and produce new ones, so that a given expression is
+ * only lexed once and turned back into text once, at the end.
+ *
+ * <p>Adjacent whitespace tokens are merged as they are added, so that
+ * a token list always matches the tokens its text would be split
+ * into, were it lexed again. Tokens that do not come from lexing
+ * source code have an offset of -1.
+ */
+@Invariant({
+  "tokens != null",
+  "!tokens.contains(null)",
+  "length >= 0"
+})
+public class TokenList implements Iterable<Token> {
+  protected ArrayList<Token> tokens;
+
+  /**
+   * The number of characters in the text of this list.
+   */
+  protected int length;
+
+  /**
+   * Constructs a new empty TokenList.
+   */
+  @Ensures("size() == 0")
+  public TokenList() {
+    tokens = new ArrayList<Token>();
+    length = 0;
+  }
+
+  /**
+   * Constructs a new TokenList holding the tokens of {@code code}.
+   * Lexing stops at the first error, as with {@link JavaTokenizer}.
+   */
+  @Requires("code != null")
+  public TokenList(CharSequence code) {
+    this();
+    JavaTokenizer tokenizer = new JavaTokenizer(code);
+    while (tokenizer.hasNext()) {
+      add(tokenizer.next());
+    }
+  }
+
+  @Ensures("result >= 0")
+  public int size() {
+    return tokens.size();
+  }
+
+  @Requires({
+    "index >= 0",
+    "index < size()"
+  })
+  @Ensures("result != null")
+  public Token get(int index) {
+    return tokens.get(index);
+  }
+
+  /**
+   * Returns the token at {@code index}, or {@code null} if
+   * {@code index} is past the end of this list.
+   */
+  @Requires("index >= 0")
+  public Token peek(int index) {
+    return index < tokens.size() ? tokens.get(index) : null;
+  }
+
+  /**
+   * Returns {@code true} if the token at {@code index}, disregarding
+   * whitespace, has {@code text}.
+   *
+   * @see JavaUtils#lookingAt(PushbackTokenizer, String)
+   */
+  @Requires({
+    "index >= 0",
+    "text != null"
+  })
+  public boolean lookingAt(int index, String text) {
+    Token token = peek(index);
+    if (token == null) {
+      return false;
+    }
+    if (token.kind == TokenKind.SPACE) {
+      token = peek(index + 1);
+      if (token == null) {
+        return false;
+      }
+    }
+    return token.textEquals(text);
+  }
+
+  @Override
+  public Iterator<Token> iterator() {
+    return Collections.unmodifiableList(tokens).iterator();
+  }
+
+  /**
+   * Appends {@code token} to this list.
+   */
+  @Requires("token != null")
+  @Ensures("size() >= 1")
+  public void add(Token token) {
+    int last = tokens.size() - 1;
+    if (token.kind == TokenKind.SPACE && last >= 0
+        && tokens.get(last).kind == TokenKind.SPACE) {
+      tokens.set(last, tokens.get(last).concat(token));
+    } else {
+      tokens.add(token);
+    }
+    length += token.length;
+  }
+
+  /**
+   * Appends a new token of the specified kind and text to this list.
+   */
+  @Requires({
+    "kind != null",
+    "text != null"
+  })
+  @Ensures("size() >= 1")
+  public void add(TokenKind kind, String text) {
+    add(new Token(kind, text, -1));
+  }
+
+  /**
+   * Appends all tokens of {@code list} to this list.
+   */
+  @Requires("list != null")
+  public void addAll(TokenList list) {
+    for (Token token : list.tokens) {
+      add(token);
+    }
+  }
+
+  /**
+   * Appends the tokens of {@code code}, delimited as generated code,
+   * to this list.
+   *
+   * @see JavaUtils#BEGIN_GENERATED_CODE
+   * @see JavaUtils#END_GENERATED_CODE
+   */
+  @Requires("code != null")
+  public void addGenerated(TokenList code) {
+    add(TokenKind.COMMENT, JavaUtils.BEGIN_GENERATED_CODE);
+    addAll(code);
+    add(TokenKind.COMMENT, JavaUtils.END_GENERATED_CODE);
+  }
+
+  /**
+   * Returns the number of characters in the text of this list.
+   */
+  @Ensures("result == toString().length()")
+  public int length() {
+    return length;
+  }
+
+  /**
+   * Appends the text of this list to {@code buffer}.
+   */
+  @Requires("buffer != null")
+  public void appendTo(StringBuilder buffer) {
+    buffer.ensureCapacity(buffer.length() + length);
+    for (Token token : tokens) {
+      token.appendTo(buffer);
+    }
+  }
+
+  /**
+   * Returns the text of this list.
+   */
+  @Override
+  public String toString() {
+    StringBuilder buffer = new StringBuilder(length);
+    appendTo(buffer);
+    return buffer.toString();
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.InvariantError;
+import com.google.java.contract.PostconditionError;
+import com.google.java.contract.PreconditionError;
+import com.google.java.contract.Requires;
+import com.google.java.contract.ThrowEnsures;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests contracts of methods that exit by throwing an exception,
+ * including methods instrumented without an exception handler.
+ */
+public class AbnormalExitTest extends TestCase {
+  private static final class Point {
+    private int x;
+
+    @Requires("x >= 0")
+    @Ensures("this.x == x")
+    void setX(int x) {
+      if (x == 1) {
+        throw new IllegalArgumentException();
+      }
+      this.x = x == 2 ? 0 : x;
+    }
+  }
+
+  @Invariant("value >= 0")
+  private static class Value {
+    protected int value;
+
+    void set(int value) {
+      if (value == 1) {
+        throw new IllegalArgumentException();
+      }
+      this.value = value;
+    }
+  }
+
+  @Requires("x >= 0")
+  private static int check(int x) {
+    if (x == 1) {
+      throw new IllegalArgumentException();
+    }
+    return x;
+  }
+
+  @ThrowEnsures({ "IllegalArgumentException", "x == 0" })
+  private static void signal(int x) {
+    throw new IllegalArgumentException();
+  }
+
+  public void testStaticMethod() {
+    try {
+      check(1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      check(-1);
+      fail();
+    } catch (PreconditionError expected) {
+    }
+  }
+
+  public void testFinalClassWithoutInvariants() {
+    Point p = new Point();
+    try {
+      p.setX(1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      p.setX(-1);
+      fail();
+    } catch (PreconditionError expected) {
+    }
+    try {
+      p.setX(2);
+      fail();
+    } catch (PostconditionError expected) {
+    }
+  }
+
+  public void testInvariantsAfterException() {
+    Value v = new Value();
+    try {
+      v.set(1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      v.set(-1);
+      fail();
+    } catch (InvariantError expected) {
+    }
+  }
+
+  public void testThrowEnsures() {
+    try {
+      signal(0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      signal(1);
+      fail();
+    } catch (PostconditionError expected) {
+    }
+  }
+}
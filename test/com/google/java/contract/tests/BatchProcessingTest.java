@@ -0,0 +1,77 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.PreconditionError;
+
+import java.io.File;
+
+/**
+ * Tests the {@code batch} annotation processor option, with which
+ * contract code of all processing rounds is compiled at once.
+ */
+public class BatchProcessingTest extends ProcessorTestCase {
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    writeSource("batch.Limits",
+        "package batch;",
+        "import com.google.java.contract.Requires;",
+        "public class Limits {",
+        "  public static final int MAX = 10;",
+        "  @Requires(\"max <= MAX\")",
+        "  public static int clamp(int x, int max) {",
+        "    return Math.min(x, max);",
+        "  }",
+        "}");
+    writeSource("batch.Account",
+        "package batch;",
+        "import com.google.java.contract.Ensures;",
+        "import com.google.java.contract.Requires;",
+        "public class Account {",
+        "  @Requires(\"amount < Limits.MAX\")",
+        "  @Ensures(\"result == Limits.clamp(amount, Limits.MAX)\")",
+        "  public static int deposit(int amount) {",
+        "    return amount;",
+        "  }",
+        "}");
+  }
+
+  public void testBatch() throws Throwable {
+    assertCompiles(option("batch"));
+    assertTrue(new File(outputDirectory, "batch/Limits.contracts").exists());
+    assertTrue(new File(outputDirectory, "batch/Account.contracts").exists());
+
+    Class<?> account = loadClass("batch.Account");
+    assertEquals(3, invoke(account, "deposit", 3));
+    try {
+      invoke(account, "deposit", 10);
+      fail();
+    } catch (PreconditionError expected) {
+      assertEquals("[amount < Limits.MAX]", expected.getMessages().toString());
+    }
+
+    Class<?> limits = loadClass("batch.Limits");
+    try {
+      invoke(limits, "clamp", 1, 11);
+      fail();
+    } catch (PreconditionError expected) {
+      assertEquals("[max <= MAX]", expected.getMessages().toString());
+    }
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.InvariantError;
+import com.google.java.contract.PostconditionError;
+import com.google.java.contract.PreconditionError;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Tests the {@code compact} annotation processor option, with which
+ * all clauses of a contract method share their failure handling
+ * code. Errors must still report the clause that failed.
+ */
+public class CompactContractsTest extends ProcessorTestCase {
+  protected Class<?> range;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    writeSource("compact.Range",
+        "package compact;",
+        "import com.google.java.contract.Ensures;",
+        "import com.google.java.contract.Invariant;",
+        "import com.google.java.contract.Requires;",
+        "@Invariant({ \"count >= 0\", \"count < 100\" })",
+        "public class Range {",
+        "  protected static int count;",
+        "  @Requires({",
+        "    \"x > 0\",",
+        "    \"x < 10\",",
+        "    \"s.length() > 0\"",
+        "  })",
+        "  @Ensures({",
+        "    \"result >= x\",",
+        "    \"result != 7\"",
+        "  })",
+        "  public static int check(int x, String s) {",
+        "    return x;",
+        "  }",
+        "  public Range(int n) {",
+        "    count = n;",
+        "  }",
+        "}");
+    assertCompiles(option("compact"));
+    range = loadClass("compact.Range");
+  }
+
+  protected void assertPrecondition(String message, int x, String s)
+      throws Throwable {
+    try {
+      invoke(range, "check", x, s);
+      fail();
+    } catch (PreconditionError expected) {
+      assertEquals(message, expected.getMessages().toString());
+    }
+  }
+
+  public void testCompactCode() throws Throwable {
+    File contractFile = new File(outputDirectory, "compact/Range.contracts");
+    String compact = readFile(contractFile);
+    assertCompiles();
+    assertFalse(compact.equals(readFile(contractFile)));
+  }
+
+  public void testSuccess() throws Throwable {
+    assertEquals(3, invoke(range, "check", 3, "a"));
+  }
+
+  public void testPrecondition() throws Throwable {
+    assertPrecondition("[x > 0]", 0, "a");
+    assertPrecondition("[x < 10]", 10, "a");
+    assertPrecondition("[s.length() > 0]", 3, "");
+  }
+
+  public void testExceptionInPrecondition() throws Throwable {
+    try {
+      invoke(range, "check", 3, null);
+      fail();
+    } catch (PreconditionError expected) {
+      assertTrue(expected.getMessage().contains("NullPointerException"));
+      assertTrue(expected.getMessage().contains("s.length() > 0"));
+    }
+  }
+
+  public void testPostcondition() throws Throwable {
+    try {
+      invoke(range, "check", 7, "a");
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[result != 7]", expected.getMessages().toString());
+    }
+  }
+
+  public void testInvariant() throws Throwable {
+    range.getConstructor(int.class).newInstance(1);
+    try {
+      range.getConstructor(int.class).newInstance(100);
+      fail();
+    } catch (InvocationTargetException e) {
+      assertEquals("[count < 100]",
+                   ((InvariantError) e.getCause()).getMessages().toString());
+    }
+  }
+}
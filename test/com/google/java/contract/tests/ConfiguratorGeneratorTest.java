@@ -0,0 +1,85 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.core.runtime.ConfiguratorGenerator;
+
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+/**
+ * Unit test for {@link ConfiguratorGenerator}.
+ */
+public class ConfiguratorGeneratorTest extends TestCase {
+  private static final String PROFILE =
+      "# Contracts for Java profile\n"
+      + "# uptime\t1000\n"
+      + "100\t600000000\tINVARIANT\ta.Slow\t\n"
+      + "50\t30000000\tOLD\ta.Slow\tadd\n"
+      + "50\t30000000\tPOST\ta.Slow\tadd\n"
+      + "50\t10000000\tPRE\ta.Cheap\tadd\n";
+
+  private ConfiguratorGenerator generator;
+
+  @Override
+  protected void setUp() {
+    generator = new ConfiguratorGenerator();
+  }
+
+  private String generate(String profile, String name, double overhead)
+      throws IOException {
+    generator.read(new BufferedReader(new StringReader(profile)));
+    StringWriter out = new StringWriter();
+    generator.generate(new PrintWriter(out), name, overhead);
+    return out.toString();
+  }
+
+  public void testDisablesMostExpensive() throws IOException {
+    String source = generate(PROFILE, "Conf", 5);
+    assertTrue(source.contains("public class Conf "));
+    assertTrue(source.contains("env.disableInvariants(\"a.Slow\");"));
+    assertTrue(source.contains("env.disablePostconditions(\"a.Slow\");"));
+    assertFalse(source.contains("a.Cheap"));
+    assertTrue(source.indexOf("disableInvariants")
+               < source.indexOf("disablePostconditions"));
+  }
+
+  public void testWithinBudget() throws IOException {
+    String source = generate(PROFILE, "Conf", 100);
+    assertFalse(source.contains("env.disable"));
+  }
+
+  public void testPackage() throws IOException {
+    String source = generate(PROFILE, "x.y.Conf", 5);
+    assertTrue(source.startsWith("package x.y;"));
+    assertTrue(source.contains("public class Conf "));
+  }
+
+  public void testMalformed() throws IOException {
+    try {
+      generate("100\t600000000\tINVARIANT\n", "Conf", 5);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.PreconditionError;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Tests the {@code cache} annotation processor option, with which
+ * contract code that has not changed since the last compilation is
+ * not compiled again.
+ */
+public class ContractCacheTest extends ProcessorTestCase {
+  protected File cacheFile;
+  protected File contractFile;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    cacheFile = new File(directory, "cache.properties");
+    contractFile = new File(outputDirectory, "cache/Account.contracts");
+    writeLimits(10);
+    writeSource("cache.Account",
+        "package cache;",
+        "import com.google.java.contract.Requires;",
+        "public class Account {",
+        "  @Requires(\"amount <= Limits.MAX\")",
+        "  public static int deposit(int amount) {",
+        "    return amount;",
+        "  }",
+        "}");
+  }
+
+  protected void writeLimits(int max) throws IOException {
+    writeSource("cache.Limits",
+        "package cache;",
+        "public class Limits {",
+        "  public static final int MAX = " + max + ";",
+        "}");
+  }
+
+  protected void assertCompilesWithCache() throws IOException {
+    assertCompiles(option("cache", cacheFile.getPath()));
+    assertTrue(cacheFile.exists());
+    assertTrue(contractFile.exists());
+  }
+
+  public void testReuse() throws Throwable {
+    assertCompilesWithCache();
+    String contents = readFile(contractFile);
+    assertTrue(contractFile.setLastModified(0));
+
+    assertCompilesWithCache();
+    assertEquals(0, contractFile.lastModified());
+    assertEquals(contents, readFile(contractFile));
+
+    Class<?> account = loadClass("cache.Account");
+    assertEquals(10, invoke(account, "deposit", 10));
+  }
+
+  public void testConstantChanged() throws Throwable {
+    assertCompilesWithCache();
+    assertTrue(contractFile.setLastModified(0));
+
+    /* A stale class file of the referenced type must not be used. */
+    writeLimits(5);
+    assertTrue(new File(outputDirectory, "cache/Limits.class")
+               .setLastModified(System.currentTimeMillis() + 60000));
+    assertCompilesWithCache();
+    assertTrue(contractFile.lastModified() != 0);
+
+    Class<?> account = loadClass("cache.Account");
+    assertEquals(5, invoke(account, "deposit", 5));
+    try {
+      invoke(account, "deposit", 10);
+      fail();
+    } catch (PreconditionError expected) {
+      assertEquals("[amount <= Limits.MAX]",
+                   expected.getMessages().toString());
+    }
+  }
+
+  public void testRemovedContractFile() throws Throwable {
+    assertCompilesWithCache();
+    assertTrue(contractFile.delete());
+
+    assertCompilesWithCache();
+    Class<?> account = loadClass("cache.Account");
+    try {
+      invoke(account, "deposit", 11);
+      fail();
+    } catch (PreconditionError expected) {
+      assertEquals("[amount <= Limits.MAX]",
+                   expected.getMessages().toString());
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import junit.framework.TestCase;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.lang.reflect.Method;
+
+/**
+ * Tests the keys under which the Java agent, with {@code share} set,
+ * recognizes identical contract methods. Methods with different code
+ * must never have the same key, in particular when string constants
+ * contain the text of other instructions.
+ */
+public class DeduplicationKeyTest extends TestCase {
+  protected Method getKeyMethod;
+
+  @Override
+  protected void setUp() throws Exception {
+    getKeyMethod =
+        Class.forName("com.google.java.contract.core.agent.MethodDeduplicator")
+        .getDeclaredMethod("getKey", MethodNode.class);
+    getKeyMethod.setAccessible(true);
+  }
+
+  protected String getKey(MethodNode methodNode) throws Exception {
+    return (String) getKeyMethod.invoke(null, methodNode);
+  }
+
+  /**
+   * Returns a new static method returning a string, with code
+   * {@code insns} followed by {@code ARETURN}.
+   */
+  protected static MethodNode method(Object... insns) {
+    MethodNode methodNode = new MethodNode(
+        Opcodes.ACC_STATIC, "m", "()Ljava/lang/Object;", null, null);
+    for (Object insn : insns) {
+      if (insn instanceof MethodInsnNode) {
+        methodNode.instructions.add((MethodInsnNode) insn);
+      } else {
+        methodNode.instructions.add(new LdcInsnNode(insn));
+      }
+    }
+    methodNode.instructions.add(new InsnNode(Opcodes.ARETURN));
+    return methodNode;
+  }
+
+  protected static MethodInsnNode trim() {
+    return new MethodInsnNode(Opcodes.INVOKEVIRTUAL, "java/lang/String",
+                              "trim", "()Ljava/lang/String;", false);
+  }
+
+  public void testSameCode() throws Exception {
+    assertEquals(getKey(method("a", trim())), getKey(method("a", trim())));
+  }
+
+  public void testConstantWithInstruction() throws Exception {
+    assertFalse(getKey(method("a;18 java.lang.String b"))
+                .equals(getKey(method("a", "b"))));
+  }
+
+  public void testConstantWithCall() throws Exception {
+    assertFalse(
+        getKey(method("a;182 java/lang/String.trim()Ljava/lang/String; false"))
+        .equals(getKey(method("a", trim()))));
+  }
+
+  public void testConstantTypes() throws Exception {
+    assertFalse(getKey(method("1")).equals(getKey(method(1))));
+    assertFalse(getKey(method(1L)).equals(getKey(method(1))));
+  }
+}
@@ -25,6 +25,8 @@ import com.google.java.contract.Requires;
 
 import junit.framework.TestCase;
 
+import java.lang.reflect.Field;
+
 /**
  * Tests that invariants are correctly applied to final fields, which can
  * be initialized during the constructor call or before.
@@ -116,4 +118,43 @@ public class FinalFieldsTest extends TestCase {
       /* Bogus implementation. */
     }
   }
+
+  @Invariant({
+    "capacity > 0",
+    "size >= 0"
+  })
+  private static class ConstantInvariant {
+    private final int capacity;
+    private int size;
+
+    public ConstantInvariant(int capacity) {
+      this.capacity = capacity;
+    }
+
+    public void add(int n) {
+      size += n;
+    }
+  }
+
+  public void testConstantInvariantInConstructor() {
+    new ConstantInvariant(1);
+    try {
+      new ConstantInvariant(0);
+      fail();
+    } catch (InvariantError expected) {
+    }
+  }
+
+  public void testConstantInvariantNotRechecked() throws Exception {
+    ConstantInvariant ci = new ConstantInvariant(1);
+    Field capacity = ConstantInvariant.class.getDeclaredField("capacity");
+    capacity.setAccessible(true);
+    capacity.setInt(ci, 0);
+    ci.add(1);
+    try {
+      ci.add(-2);
+      fail();
+    } catch (InvariantError expected) {
+    }
+  }
 }
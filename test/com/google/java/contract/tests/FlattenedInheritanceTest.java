@@ -0,0 +1,171 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.PostconditionError;
+import com.google.java.contract.PreconditionError;
+import com.google.java.contract.Requires;
+import junit.framework.TestCase;
+
+/**
+ * Tests that inherited contracts keep their meaning when their
+ * helpers are flattened into the contract methods of subclasses, with
+ * the {@code com.google.java.contract.flatten} property set. The
+ * hierarchy is declared in this package, so that the helpers of every
+ * level are flattened. Without the property, this tests the same
+ * semantics with ordinary helper calls.
+ */
+public class FlattenedInheritanceTest extends TestCase {
+  private static interface Sized {
+    @Requires("n >= 0")
+    @Ensures("result == n")
+    int resize(int n);
+  }
+
+  private static class Base {
+    protected int count;
+
+    @Requires("x > 0")
+    @Ensures("result >= x")
+    int scale(int x) {
+      return x;
+    }
+
+    @Requires("x > 0")
+    @Ensures("count == old (count) + x")
+    void add(int x) {
+      count += x;
+    }
+  }
+
+  private static class Middle extends Base {
+    @Override
+    @Requires("x == 0")
+    @Ensures("result % 2 == 0")
+    int scale(int x) {
+      return 2 * x;
+    }
+  }
+
+  private static class Derived extends Middle implements Sized {
+    protected int factor = 2;
+    protected int offset;
+    protected int size;
+
+    @Override
+    @Requires("x == -1")
+    @Ensures("result < 100")
+    int scale(int x) {
+      return factor * Math.abs(x) + offset;
+    }
+
+    @Override
+    void add(int x) {
+      count += x + offset;
+    }
+
+    @Override
+    public int resize(int n) {
+      size = n + offset;
+      return size;
+    }
+  }
+
+  protected Derived derived;
+
+  @Override
+  protected void setUp() {
+    derived = new Derived();
+  }
+
+  public void testWeakenedPrecondition() {
+    assertEquals(10, derived.scale(5));
+    assertEquals(0, derived.scale(0));
+    assertEquals(2, derived.scale(-1));
+  }
+
+  public void testWeakenedPreconditionFailure() {
+    try {
+      derived.scale(-2);
+      fail();
+    } catch (PreconditionError expected) {
+      assertEquals("[x > 0, x == 0, x == -1]",
+                   expected.getMessages().toString());
+    }
+  }
+
+  public void testStrengthenedPostconditionOwn() {
+    try {
+      derived.scale(60);
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[result < 100]", expected.getMessages().toString());
+    }
+  }
+
+  public void testStrengthenedPostconditionParent() {
+    derived.offset = 1;
+    try {
+      derived.scale(5);
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[result % 2 == 0]", expected.getMessages().toString());
+    }
+  }
+
+  public void testStrengthenedPostconditionGrandparent() {
+    derived.factor = -2;
+    try {
+      derived.scale(5);
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[result >= x]", expected.getMessages().toString());
+    }
+  }
+
+  public void testInheritedOldValue() {
+    derived.add(3);
+    assertEquals(3, derived.count);
+    derived.offset = 1;
+    try {
+      derived.add(3);
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[count == old (count) + x]",
+                   expected.getMessages().toString());
+    }
+  }
+
+  public void testInterfaceContracts() {
+    assertEquals(4, derived.resize(4));
+    try {
+      derived.resize(-1);
+      fail();
+    } catch (PreconditionError expected) {
+      assertEquals("[n >= 0]", expected.getMessages().toString());
+    }
+    derived.offset = 1;
+    try {
+      derived.resize(4);
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[result == n]", expected.getMessages().toString());
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.Invariant;
+import com.google.java.contract.InvariantError;
+import junit.framework.TestCase;
+
+import java.lang.ref.Reference;
+import java.lang.reflect.Field;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the background invariant auditor. This test must be run with
+ * the {@code com.google.java.contract.audit} property set to a short
+ * period, such as 10 ms.
+ */
+public class InvariantAuditTest extends TestCase {
+  @Invariant("base >= 0")
+  private static class Base {
+    protected int base;
+  }
+
+  @Invariant("derived >= 0")
+  private static class Derived extends Base {
+    protected int derived;
+
+    public Derived() {
+      this(0);
+    }
+
+    public Derived(int derived) {
+      this.derived = derived;
+    }
+  }
+
+  protected Thread.UncaughtExceptionHandler oldHandler;
+
+  @Override
+  protected void setUp() {
+    oldHandler = Thread.getDefaultUncaughtExceptionHandler();
+  }
+
+  @Override
+  protected void tearDown() {
+    Thread.setDefaultUncaughtExceptionHandler(oldHandler);
+  }
+
+  /**
+   * Returns the number of times {@code obj} is registered with the
+   * auditor.
+   */
+  private static int getRegistrationCount(Object obj) throws Exception {
+    Class<?> auditor = Class.forName(
+        "com.google.java.contract.core.runtime.InvariantAuditor");
+    Field stripesField = auditor.getDeclaredField("stripes");
+    stripesField.setAccessible(true);
+    int count = 0;
+    for (Object stripe : (Object[]) stripesField.get(null)) {
+      Field entriesField = stripe.getClass().getDeclaredField("entries");
+      Field sizeField = stripe.getClass().getDeclaredField("size");
+      entriesField.setAccessible(true);
+      sizeField.setAccessible(true);
+      synchronized (stripe) {
+        Object[] entries = (Object[]) entriesField.get(stripe);
+        int size = sizeField.getInt(stripe);
+        for (int i = 0; i < size; ++i) {
+          if (((Reference<?>) entries[i]).get() == obj) {
+            ++count;
+          }
+        }
+      }
+    }
+    return count;
+  }
+
+  public void testRegisteredOnce() throws Exception {
+    Base base = new Base();
+    assertEquals(1, getRegistrationCount(base));
+    Derived derived = new Derived(1);
+    assertEquals(1, getRegistrationCount(derived));
+  }
+
+  public void testRegisteredOnceThroughDelegation() throws Exception {
+    Derived derived = new Derived();
+    assertEquals(1, getRegistrationCount(derived));
+  }
+
+  public void testViolationReported() throws Exception {
+    final CountDownLatch reported = new CountDownLatch(1);
+    final Throwable[] failure = new Throwable[1];
+    Thread.setDefaultUncaughtExceptionHandler(
+        new Thread.UncaughtExceptionHandler() {
+          @Override
+          public void uncaughtException(Thread t, Throwable e) {
+            failure[0] = e;
+            reported.countDown();
+          }
+        });
+
+    Derived derived = new Derived(1);
+    derived.derived = -1;
+    assertTrue(reported.await(10, TimeUnit.SECONDS));
+    assertTrue(failure[0] instanceof InvariantError);
+    assertEquals("[derived >= 0]",
+                 ((InvariantError) failure[0]).getMessages().toString());
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.Invariant;
+import com.google.java.contract.InvariantError;
+import com.google.java.contract.core.runtime.ContractRuntime;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests invariant batches, which defer invariant checks to their
+ * end.
+ */
+public class InvariantBatchTest extends TestCase {
+  @Invariant("Counter.checkInvariant() && value >= 0")
+  private static class Counter {
+    static int checks;
+
+    static boolean checkInvariant() {
+      ++checks;
+      return true;
+    }
+
+    protected int value;
+
+    public void add(int n) {
+      value += n;
+    }
+  }
+
+  @Invariant("value % 2 == 0")
+  private static class EvenCounter extends Counter {
+    public void twice(int n) {
+      add(n);
+      add(n);
+    }
+  }
+
+  @Override
+  protected void setUp() {
+    Counter.checks = 0;
+  }
+
+  public void testBatchChecksOnce() {
+    Counter counter = new Counter();
+    Counter.checks = 0;
+    ContractRuntime.openBatch();
+    try {
+      for (int i = 0; i < 100; ++i) {
+        counter.add(1);
+      }
+      assertEquals(0, Counter.checks);
+    } finally {
+      ContractRuntime.closeBatch();
+    }
+    assertEquals(1, Counter.checks);
+  }
+
+  public void testBatchToleratesTemporaryViolations() {
+    Counter counter = new Counter();
+    ContractRuntime.openBatch();
+    try {
+      counter.add(-1);
+      counter.add(1);
+    } finally {
+      ContractRuntime.closeBatch();
+    }
+  }
+
+  public void testBatchReportsViolations() {
+    Counter counter = new Counter();
+    ContractRuntime.openBatch();
+    counter.add(-1);
+    try {
+      ContractRuntime.closeBatch();
+      fail();
+    } catch (InvariantError expected) {
+    }
+    try {
+      counter.add(0);
+      fail();
+    } catch (InvariantError expected) {
+    }
+  }
+
+  public void testBatchChecksMostDerivedClass() {
+    EvenCounter counter = new EvenCounter();
+    ContractRuntime.openBatch();
+    counter.twice(1);
+    counter.add(1);
+    try {
+      ContractRuntime.closeBatch();
+      fail();
+    } catch (InvariantError expected) {
+    }
+  }
+
+  public void testNestedBatches() {
+    Counter counter = new Counter();
+    Counter.checks = 0;
+    ContractRuntime.openBatch();
+    ContractRuntime.openBatch();
+    counter.add(-1);
+    ContractRuntime.closeBatch();
+    counter.add(1);
+    ContractRuntime.closeBatch();
+    assertEquals(1, Counter.checks);
+  }
+
+  public void testAbortKeepsPendingException() {
+    Counter counter = new Counter();
+    IllegalStateException failure = new IllegalStateException();
+    try {
+      ContractRuntime.openBatch();
+      boolean completed = false;
+      try {
+        counter.add(-1);
+        if (counter.value < 0) {
+          throw failure;
+        }
+        completed = true;
+      } finally {
+        if (completed) {
+          ContractRuntime.closeBatch();
+        } else {
+          ContractRuntime.abortBatch();
+        }
+      }
+      fail();
+    } catch (IllegalStateException expected) {
+      assertSame(failure, expected);
+    }
+    counter.value = 0;
+    counter.add(0);
+  }
+
+  public void testNestedAbort() {
+    Counter counter = new Counter();
+    ContractRuntime.openBatch();
+    ContractRuntime.openBatch();
+    counter.add(-1);
+    ContractRuntime.abortBatch();
+    try {
+      ContractRuntime.closeBatch();
+      fail();
+    } catch (InvariantError expected) {
+    }
+  }
+
+  public void testAbortWithoutBatch() {
+    try {
+      ContractRuntime.abortBatch();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  public void testCloseWithoutBatch() {
+    try {
+      ContractRuntime.closeBatch();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  public void testNoBatch() {
+    Counter counter = new Counter();
+    try {
+      counter.add(-1);
+      fail();
+    } catch (InvariantError expected) {
+    }
+  }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.PostconditionError;
+import com.google.java.contract.core.runtime.AsyncContractRuntime;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Tests postconditions on the values of returned futures, which are
+ * checked once the futures complete. This class is compiled with the
+ * {@code com.google.java.contract.async} processor option.
+ */
+public class Java8AsyncPostconditionTest extends TestCase {
+  private static class A {
+    protected int count;
+
+    @Ensures("result.join() > 0")
+    public CompletableFuture<Integer> positive(CompletableFuture<Integer> f) {
+      return f;
+    }
+
+    @Ensures("result.toCompletableFuture().join() > x")
+    public CompletionStage<Integer> greater(int x,
+                                            CompletableFuture<Integer> f) {
+      return f;
+    }
+
+    @Ensures("result != null")
+    public static CompletableFuture<Integer> nonNull(
+        CompletableFuture<Integer> f) {
+      return f;
+    }
+
+    @Ensures({
+      "count == old(count) + 1",
+      "result.join() == count"
+    })
+    public CompletableFuture<Integer> increment(CompletableFuture<Integer> f) {
+      ++count;
+      return f;
+    }
+
+    @Ensures("result.join() == count")
+    public CompletableFuture<Integer> next(CompletableFuture<Integer> f) {
+      ++count;
+      return f;
+    }
+
+    @Ensures("result.isDone()")
+    public CompletableFuture<Integer> done(CompletableFuture<Integer> f) {
+      return f;
+    }
+
+    @Ensures("!result.isCancelled()")
+    public CompletableFuture<Integer> live(CompletableFuture<Integer> f) {
+      return f;
+    }
+  }
+
+  protected A a;
+
+  protected List<Throwable> violations;
+
+  @Override
+  protected void setUp() {
+    a = new A();
+    violations = Collections.synchronizedList(new ArrayList<Throwable>());
+    AsyncContractRuntime.setViolationHandler(
+        new Thread.UncaughtExceptionHandler() {
+          @Override
+          public void uncaughtException(Thread thread, Throwable t) {
+            violations.add(t);
+          }
+        });
+  }
+
+  @Override
+  protected void tearDown() {
+    AsyncContractRuntime.setViolationHandler(null);
+  }
+
+  protected void assertViolated() {
+    assertEquals(1, violations.size());
+    assertTrue(violations.get(0) instanceof PostconditionError);
+  }
+
+  public void testCompleted() {
+    CompletableFuture<Integer> f = a.positive(CompletableFuture.completedFuture(1));
+    assertEquals(1, (int) f.join());
+    assertTrue(violations.isEmpty());
+  }
+
+  public void testCompletedInvalid() {
+    CompletableFuture<Integer> f = a.positive(CompletableFuture.completedFuture(0));
+    assertEquals(0, (int) f.join());
+    assertViolated();
+  }
+
+  public void testPending() {
+    CompletableFuture<Integer> p = new CompletableFuture<Integer>();
+    CompletableFuture<Integer> f = a.positive(p);
+    assertFalse(f.isDone());
+    p.complete(-1);
+    assertEquals(-1, (int) f.join());
+    assertViolated();
+  }
+
+  public void testPendingFailed() {
+    CompletableFuture<Integer> p = new CompletableFuture<Integer>();
+    CompletableFuture<Integer> f = a.positive(p);
+    IllegalStateException e = new IllegalStateException();
+    p.completeExceptionally(e);
+    try {
+      f.join();
+      fail();
+    } catch (CompletionException expected) {
+      assertSame(e, expected.getCause());
+    }
+    assertTrue(violations.isEmpty());
+  }
+
+  public void testIdentity() {
+    CompletableFuture<Integer> p = new CompletableFuture<Integer>();
+    CompletableFuture<Integer> f = a.positive(p);
+    assertSame(p, f);
+    f.complete(5);
+    assertEquals(5, (int) p.join());
+    assertTrue(violations.isEmpty());
+  }
+
+  public void testStage() {
+    CompletableFuture<Integer> p = new CompletableFuture<Integer>();
+    CompletionStage<Integer> f = a.greater(1, p);
+    p.complete(2);
+    assertEquals(2, (int) f.toCompletableFuture().join());
+    assertTrue(violations.isEmpty());
+  }
+
+  public void testStageInvalid() {
+    CompletableFuture<Integer> p = new CompletableFuture<Integer>();
+    CompletionStage<Integer> f = a.greater(2, p);
+    p.complete(2);
+    assertEquals(2, (int) f.toCompletableFuture().join());
+    assertViolated();
+  }
+
+  public void testSynchronous() {
+    try {
+      A.nonNull(null);
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[result != null]", expected.getMessages().toString());
+    }
+  }
+
+  public void testMixed() {
+    CompletableFuture<Integer> f = a.increment(CompletableFuture.completedFuture(1));
+    assertEquals(1, (int) f.join());
+  }
+
+  public void testMixedInvalid() {
+    try {
+      a.increment(CompletableFuture.completedFuture(2));
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[result.join() == count]",
+                   expected.getMessages().toString());
+    }
+  }
+
+  public void testFieldClauseChecksOnReturn() throws InterruptedException {
+    final CompletableFuture<Integer> p = new CompletableFuture<Integer>();
+    Thread completer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(50);
+        } catch (InterruptedException e) {
+          /* Complete anyway. */
+        }
+        p.complete(1);
+      }
+    };
+    completer.start();
+    CompletableFuture<Integer> f = a.next(p);
+    a.next(CompletableFuture.completedFuture(2));
+    completer.join();
+    assertEquals(1, (int) f.join());
+    assertTrue(violations.isEmpty());
+  }
+
+  public void testStateClauseOnReturn() {
+    CompletableFuture<Integer> p = new CompletableFuture<Integer>();
+    try {
+      a.done(p);
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[result.isDone()]", expected.getMessages().toString());
+    }
+    p.complete(1);
+    assertSame(p, a.done(p));
+    assertTrue(violations.isEmpty());
+  }
+
+  public void testCancelledOnReturn() {
+    CompletableFuture<Integer> p = new CompletableFuture<Integer>();
+    assertSame(p, a.live(p));
+    p.cancel(false);
+    try {
+      a.live(p);
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[!result.isCancelled()]",
+                   expected.getMessages().toString());
+    }
+    assertTrue(violations.isEmpty());
+  }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.PostconditionError;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Tests postconditions on the elements of returned streams, iterators
+ * and iterables, which are checked as the elements are consumed.
+ */
+public class Java8ElementPostconditionTest extends TestCase {
+  private static class View implements Iterable<String> {
+    protected List<String> xs;
+
+    View(List<String> xs) {
+      this.xs = xs;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+      return xs.iterator();
+    }
+  }
+
+  private static class A {
+    protected int limit;
+
+    @Ensures({
+      "result != null",
+      "element < limit"
+    })
+    public Stream<Integer> range(int from, int to) {
+      return IntStream.range(from, to).boxed();
+    }
+
+    @Ensures("element.length() <= max")
+    public Iterator<String> iterator(List<String> xs, int max) {
+      return xs.iterator();
+    }
+
+    @Ensures("element.length() <= max")
+    public Iterable<String> iterable(List<String> xs, int max) {
+      return new View(xs);
+    }
+
+    @Ensures("element != null")
+    public static Iterable<? extends CharSequence> nonNull(List<String> xs) {
+      return xs;
+    }
+
+    @Ensures("element != null")
+    public static Iterator<String> listIterator(List<String> xs) {
+      return xs.listIterator();
+    }
+  }
+
+  private static class B {
+    protected int element;
+
+    @Ensures("element > 0")
+    public Iterable<Integer> field(List<Integer> xs) {
+      return xs;
+    }
+  }
+
+  private static class C {
+    @Ensures("xs.stream().allMatch(element -> element > 0)")
+    public Iterable<Integer> lambda(List<Integer> xs) {
+      return xs;
+    }
+
+    @Ensures("Stream.of(x).allMatch((Integer element) -> element > 0)")
+    public Stream<Integer> typedLambda(int x) {
+      return Stream.of(x);
+    }
+  }
+
+  protected A a;
+
+  @Override
+  protected void setUp() {
+    a = new A();
+    a.limit = 10;
+  }
+
+  public void testStream() {
+    assertEquals(Arrays.asList(1, 2, 3),
+                 a.range(1, 4).collect(Collectors.toList()));
+  }
+
+  public void testStreamInvalid() {
+    try {
+      a.range(8, 12).collect(Collectors.toList());
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[element < limit]", expected.getMessages().toString());
+    }
+  }
+
+  public void testStreamLazy() {
+    assertEquals(Arrays.asList(0, 1, 2),
+                 a.range(0, Integer.MAX_VALUE).limit(3)
+                 .collect(Collectors.toList()));
+  }
+
+  public void testStreamUnconsumed() {
+    a.range(0, 20);
+  }
+
+  public void testStreamCount() {
+    try {
+      a.range(8, 12).count();
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[element < limit]", expected.getMessages().toString());
+    }
+  }
+
+  public void testIterator() {
+    Iterator<String> it = a.iterator(Arrays.asList("a", "bb", "ccc"), 2);
+    assertEquals("a", it.next());
+    assertEquals("bb", it.next());
+    try {
+      it.next();
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[element.length() <= max]",
+                   expected.getMessages().toString());
+    }
+  }
+
+  public void testIterable() {
+    int n = 0;
+    for (CharSequence s : A.nonNull(Arrays.asList("a", "b"))) {
+      ++n;
+    }
+    assertEquals(2, n);
+  }
+
+  public void testIterableLazy() {
+    Iterable<String> xs = a.iterable(Arrays.asList("a", "bb", "ccc"), 2);
+    Iterator<String> it = xs.iterator();
+    assertEquals("a", it.next());
+    assertEquals("bb", it.next());
+    try {
+      it.next();
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[element.length() <= max]",
+                   expected.getMessages().toString());
+    }
+  }
+
+  public void testCollectionIdentity() {
+    List<String> xs = Arrays.asList("a", "b");
+    Iterable<? extends CharSequence> result = A.nonNull(xs);
+    assertSame(xs, result);
+    assertEquals(2, ((List<?>) result).size());
+  }
+
+  public void testCollectionInvalid() {
+    try {
+      A.nonNull(Arrays.asList("a", null));
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[element != null]", expected.getMessages().toString());
+    }
+  }
+
+  public void testSpecificIteratorNotWrapped() {
+    Iterator<String> it = A.listIterator(Arrays.asList("a", "b"));
+    assertTrue(it instanceof ListIterator);
+  }
+
+  public void testLambdaParameterNamedElement() {
+    C c = new C();
+    List<Integer> xs = Arrays.asList(-1, 2);
+    try {
+      c.lambda(xs);
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[xs.stream().allMatch(element -> element > 0)]",
+                   expected.getMessages().toString());
+    }
+  }
+
+  public void testTypedLambdaParameterNamedElement() {
+    C c = new C();
+    assertEquals(1, c.typedLambda(1).count());
+    try {
+      c.typedLambda(0);
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[Stream.of(x).allMatch((Integer element) -> element > 0)]",
+                   expected.getMessages().toString());
+    }
+  }
+
+  public void testFieldNamedElement() {
+    B b = new B();
+    b.element = 1;
+    b.field(Arrays.asList(-1, -2));
+    b.element = 0;
+    try {
+      b.field(Arrays.asList(1, 2));
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[element > 0]", expected.getMessages().toString());
+    }
+  }
+}
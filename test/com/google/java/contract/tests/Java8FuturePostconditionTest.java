@@ -0,0 +1,52 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.PostconditionError;
+import junit.framework.TestCase;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Tests postconditions on the values of returned futures, compiled
+ * without the {@code com.google.java.contract.async} processor
+ * option: they are checked on return, as any other postcondition.
+ */
+public class Java8FuturePostconditionTest extends TestCase {
+  private static class A {
+    @Ensures("result.join() > 0")
+    public CompletableFuture<Integer> positive(CompletableFuture<Integer> f) {
+      return f;
+    }
+  }
+
+  public void testValid() {
+    CompletableFuture<Integer> f = CompletableFuture.completedFuture(1);
+    assertSame(f, new A().positive(f));
+  }
+
+  public void testInvalidThrownOnReturn() {
+    try {
+      new A().positive(CompletableFuture.completedFuture(0));
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[result.join() > 0]", expected.getMessages().toString());
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.PostconditionError;
+import com.google.java.contract.core.runtime.OffloadedContractRuntime;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests postconditions checked by background verifier threads. These
+ * tests require the {@code com.google.java.contract.offload} JVM
+ * property to match this package.
+ */
+public class OffloadedPostconditionTest extends TestCase {
+  private static class A {
+    protected static List<Integer> items = new ArrayList<Integer>();
+
+    protected int value;
+
+    @Ensures("result == -x")
+    public static int negate(int x) {
+      return x == 42 ? x : -x;
+    }
+
+    @Ensures("result == old(x) + 1")
+    public static int successor(int x) {
+      return x == 42 ? x : x + 1;
+    }
+
+    @Ensures("result == old(items).size()")
+    public static int clear() {
+      int size = items.size();
+      items = new ArrayList<Integer>();
+      return size + 1;
+    }
+
+    @Ensures("result == value")
+    public int increment() {
+      return ++value;
+    }
+
+    @Ensures("result < 0")
+    public int next() {
+      return ++value;
+    }
+  }
+
+  protected BlockingQueue<Throwable> violations;
+
+  @Override
+  protected void setUp() {
+    violations = new LinkedBlockingQueue<Throwable>();
+    OffloadedContractRuntime.setViolationHandler(
+        new Thread.UncaughtExceptionHandler() {
+          @Override
+          public void uncaughtException(Thread thread, Throwable t) {
+            violations.add(t);
+          }
+        });
+  }
+
+  @Override
+  protected void tearDown() {
+    OffloadedContractRuntime.setViolationHandler(null);
+  }
+
+  public void testStaticOffloaded() throws InterruptedException {
+    long submitted = OffloadedContractRuntime.getSubmittedCount();
+    assertEquals(-1, A.negate(1));
+    assertEquals(42, A.negate(42));
+    assertTrue(OffloadedContractRuntime.getSubmittedCount() >= submitted + 2);
+    Throwable t = violations.poll(10, TimeUnit.SECONDS);
+    assertTrue(t instanceof PostconditionError);
+    assertNull(violations.poll(100, TimeUnit.MILLISECONDS));
+  }
+
+  public void testPrimitiveOldValueOffloaded() throws InterruptedException {
+    long submitted = OffloadedContractRuntime.getSubmittedCount();
+    assertEquals(2, A.successor(1));
+    assertEquals(42, A.successor(42));
+    assertEquals(submitted + 2, OffloadedContractRuntime.getSubmittedCount());
+    Throwable t = violations.poll(10, TimeUnit.SECONDS);
+    assertTrue(t instanceof PostconditionError);
+    assertEquals("[result == old(x) + 1]",
+                 ((PostconditionError) t).getMessages().toString());
+    assertNull(violations.poll(100, TimeUnit.MILLISECONDS));
+  }
+
+  public void testMutableOldValueInline() {
+    long submitted = OffloadedContractRuntime.getSubmittedCount();
+    try {
+      A.clear();
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[result == old(items).size()]",
+                   expected.getMessages().toString());
+    }
+    assertEquals(submitted, OffloadedContractRuntime.getSubmittedCount());
+  }
+
+  public void testInstanceInline() throws InterruptedException {
+    long submitted = OffloadedContractRuntime.getSubmittedCount();
+    A a = new A();
+    for (int i = 0; i < 100; ++i) {
+      assertEquals(i + 1, a.increment());
+    }
+    assertEquals(submitted, OffloadedContractRuntime.getSubmittedCount());
+    assertNull(violations.poll(100, TimeUnit.MILLISECONDS));
+  }
+
+  public void testInstanceInlineInvalid() {
+    try {
+      new A().next();
+      fail();
+    } catch (PostconditionError expected) {
+      assertEquals("[result < 0]", expected.getMessages().toString());
+    }
+  }
+}
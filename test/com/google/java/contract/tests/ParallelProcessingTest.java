@@ -0,0 +1,128 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.PreconditionError;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ * Tests the {@code threads} annotation processor option, with which
+ * contract source files are generated in parallel. The output must
+ * not depend on the number of threads.
+ */
+public class ParallelProcessingTest extends ProcessorTestCase {
+  private static final int TYPES = 12;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    writeSource("parallel.Shape",
+        "package parallel;",
+        "import com.google.java.contract.Ensures;",
+        "import com.google.java.contract.Invariant;",
+        "import com.google.java.contract.Requires;",
+        "@Invariant(\"size() >= 0\")",
+        "public interface Shape {",
+        "  int size();",
+        "  @Requires(\"factor > 0\")",
+        "  @Ensures(\"size() == old(size()) * factor\")",
+        "  void scale(int factor);",
+        "}");
+    for (int i = 0; i < TYPES; ++i) {
+      String parent =
+          i == 0 ? "Object implements Shape" : "Shape" + (i - 1);
+      writeSource("parallel.Shape" + i,
+          "package parallel;",
+          "import com.google.java.contract.Ensures;",
+          "import com.google.java.contract.Invariant;",
+          "import com.google.java.contract.Requires;",
+          "@Invariant(\"size < " + (1000 * (i + 1)) + "\")",
+          "public class Shape" + i + " extends " + parent + " {",
+          "  protected int size = 1;",
+          "  public int size() {",
+          "    return size;",
+          "  }",
+          "  public void scale(int factor) {",
+          "    size *= factor;",
+          "  }",
+          "  @Requires(\"x != " + i + "\")",
+          "  @Ensures(\"result == x + " + i + "\")",
+          "  public static int shift" + i + "(int x) {",
+          "    return x + " + i + ";",
+          "  }",
+          "}");
+    }
+  }
+
+  /**
+   * Compiles all sources with {@code threads} threads, dumping
+   * contract sources to {@code dumpDirectory}, and returns the
+   * contents of the dumped sources and compiled contract files.
+   */
+  protected Map<String, String> compileWithThreads(int threads,
+                                                   File dumpDirectory)
+      throws IOException {
+    delete(outputDirectory);
+    outputDirectory.mkdirs();
+    assertCompiles(option("threads", Integer.toString(threads)),
+                   option("dump", dumpDirectory.getPath()));
+    Map<String, String> contents = readFiles(outputDirectory, ".contracts");
+    contents.putAll(readFiles(dumpDirectory, ".java"));
+    return contents;
+  }
+
+  public void testSameOutput() throws Throwable {
+    Map<String, String> serial =
+        compileWithThreads(1, new File(directory, "dump1"));
+    Map<String, String> parallel =
+        compileWithThreads(4, new File(directory, "dump4"));
+    assertTrue(serial.containsKey("parallel/Shape.contracts"));
+    assertTrue(serial.containsKey("parallel/Shape" + (TYPES - 1)
+                                  + ".contracts"));
+    assertEquals(serial, parallel);
+
+    Class<?> last = loadClass("parallel.Shape" + (TYPES - 1));
+    assertEquals(TYPES, invoke(last, "shift" + (TYPES - 1), 1));
+    try {
+      invoke(last, "shift" + (TYPES - 1), TYPES - 1);
+      fail();
+    } catch (PreconditionError expected) {
+      assertEquals("[x != " + (TYPES - 1) + "]",
+                   expected.getMessages().toString());
+    }
+  }
+
+  public void testInheritedContracts() throws Throwable {
+    compileWithThreads(4, new File(directory, "dump"));
+    Object shape = loadClass("parallel.Shape" + (TYPES - 1)).newInstance();
+    Method scale = shape.getClass().getMethod("scale", int.class);
+    scale.invoke(shape, 2);
+    try {
+      scale.invoke(shape, 0);
+      fail();
+    } catch (InvocationTargetException e) {
+      assertTrue(((PreconditionError) e.getCause()).getMessages()
+                 .contains("factor > 0"));
+    }
+  }
+}
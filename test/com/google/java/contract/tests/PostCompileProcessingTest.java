@@ -0,0 +1,100 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.PreconditionError;
+
+import java.io.File;
+import javax.tools.Diagnostic;
+
+/**
+ * Tests the {@code postcompile} annotation processor option, with
+ * which contract code is compiled against the class files of the
+ * current compilation once they have been written.
+ */
+public class PostCompileProcessingTest extends ProcessorTestCase {
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    writeSource("post.Outer",
+        "package post;",
+        "import com.google.java.contract.Requires;",
+        "public class Outer {",
+        "  public static class Inner {",
+        "    @Requires(\"x > 0\")",
+        "    public static int f(int x) {",
+        "      return x;",
+        "    }",
+        "  }",
+        "  @Requires(\"x > 1\")",
+        "  public static int g(int x) {",
+        "    return Inner.f(x);",
+        "  }",
+        "}");
+  }
+
+  public void testPostCompile() throws Throwable {
+    assertCompiles(option("postcompile"));
+    assertFalse(getDiagnosticsText(),
+                hasDiagnostic(Diagnostic.Kind.WARNING, "postcompile"));
+    assertTrue(new File(outputDirectory, "post/Outer.contracts").exists());
+    assertTrue(
+        new File(outputDirectory, "post/Outer$Inner.contracts").exists());
+
+    Class<?> outer = loadClass("post.Outer");
+    assertEquals(2, invoke(outer, "g", 2));
+    try {
+      invoke(outer, "g", 1);
+      fail();
+    } catch (PreconditionError expected) {
+      assertEquals("[x > 1]", expected.getMessages().toString());
+    }
+
+    Class<?> inner = loadClass("post.Outer$Inner");
+    try {
+      invoke(inner, "f", 0);
+      fail();
+    } catch (PreconditionError expected) {
+      assertEquals("[x > 0]", expected.getMessages().toString());
+    }
+  }
+
+  public void testCompilationErrors() throws Throwable {
+    writeSource("post.Broken",
+        "package post;",
+        "public class Broken {",
+        "  int f() {",
+        "    return \"x\";",
+        "  }",
+        "}");
+    assertFalse(compile(option("postcompile")));
+    assertTrue(getDiagnosticsText(),
+               hasDiagnostic(Diagnostic.Kind.WARNING,
+                             "contract code not compiled"));
+    assertFalse(new File(outputDirectory, "post/Outer.contracts").exists());
+  }
+
+  public void testFallback() throws Throwable {
+    assertCompiles(option("postcompile"), "-proc:only");
+    assertTrue(getDiagnosticsText(),
+               hasDiagnostic(Diagnostic.Kind.WARNING,
+                             "compiling contracts in batch mode"));
+    assertTrue(new File(outputDirectory, "post/Outer.contracts").exists());
+    assertFalse(new File(outputDirectory, "post/Outer.class").exists());
+  }
+}
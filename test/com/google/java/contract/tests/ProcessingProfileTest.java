@@ -0,0 +1,67 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import java.io.File;
+
+/**
+ * Tests the {@code profile} annotation processor option, with which
+ * the processor writes the time spent in each of its stages to
+ * {@code profile.json} in the dump directory.
+ */
+public class ProcessingProfileTest extends ProcessorTestCase {
+  protected File dumpDirectory;
+  protected File profileFile;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    dumpDirectory = new File(directory, "dump");
+    profileFile = new File(dumpDirectory, "profile.json");
+    writeSource("profile.Counter",
+        "package profile;",
+        "import com.google.java.contract.Ensures;",
+        "import com.google.java.contract.Requires;",
+        "public class Counter {",
+        "  @Requires(\"x >= 0\")",
+        "  @Ensures(\"result > x\")",
+        "  public static int next(int x) {",
+        "    return x + 1;",
+        "  }",
+        "}");
+  }
+
+  public void testProfile() throws Throwable {
+    assertCompiles(option("profile"),
+                   option("dump", dumpDirectory.getPath()));
+    assertTrue(profileFile.exists());
+    String profile = readFile(profileFile);
+    assertTrue(profile, profile.startsWith("{\n  \"stages\": {"));
+    assertTrue(profile, profile.contains("\"compile\": { \"count\": 1,"));
+    assertTrue(profile, profile.contains("\"types\": {"));
+    assertTrue(profile, profile.contains("\"profile.Counter\": {"));
+    assertTrue(profile, profile.trim().endsWith("}"));
+
+    assertEquals(2, invoke(loadClass("profile.Counter"), "next", 1));
+  }
+
+  public void testNoProfile() throws Throwable {
+    assertCompiles(option("dump", dumpDirectory.getPath()));
+    assertFalse(profileFile.exists());
+  }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Base class for tests of annotation processor options. Each test
+ * writes source files to a fresh directory, compiles them in process
+ * with the annotation processor and the options under test, and loads
+ * the resulting classes, under the Java agent, from a new class
+ * loader.
+ */
+public abstract class ProcessorTestCase extends TestCase {
+  protected static final String PROCESSOR_CLASS =
+      "com.google.java.contract.core.apt.AnnotationProcessor";
+
+  protected File directory;
+  protected File sourceDirectory;
+  protected File outputDirectory;
+
+  /**
+   * The diagnostics of the last compilation.
+   */
+  protected List<Diagnostic<? extends JavaFileObject>> diagnostics;
+
+  @Override
+  protected void setUp() throws Exception {
+    directory = File.createTempFile("cofoja", ".test");
+    directory.delete();
+    sourceDirectory = new File(directory, "src");
+    outputDirectory = new File(directory, "out");
+    sourceDirectory.mkdirs();
+    outputDirectory.mkdirs();
+  }
+
+  @Override
+  protected void tearDown() {
+    delete(directory);
+  }
+
+  /**
+   * Returns the argument that sets the annotation processor option
+   * {@code name} to {@code value}.
+   */
+  protected static String option(String name, String value) {
+    return "-Acom.google.java.contract." + name + "=" + value;
+  }
+
+  /**
+   * Returns the argument that sets the annotation processor flag
+   * {@code name}.
+   */
+  protected static String option(String name) {
+    return "-Acom.google.java.contract." + name;
+  }
+
+  /**
+   * Writes the source file of the class named {@code className}, made
+   * of {@code lines}.
+   */
+  protected void writeSource(String className, String... lines)
+      throws IOException {
+    StringBuilder buffer = new StringBuilder();
+    for (String line : lines) {
+      buffer.append(line).append('\n');
+    }
+    File file =
+        new File(sourceDirectory, className.replace('.', '/') + ".java");
+    file.getParentFile().mkdirs();
+    OutputStream out = new FileOutputStream(file);
+    try {
+      out.write(buffer.toString().getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Compiles all source files with the annotation processor and the
+   * additional compiler arguments {@code args}. Returns {@code true}
+   * on success.
+   */
+  protected boolean compile(String... args) throws IOException {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    assertNotNull("no system Java compiler", compiler);
+    DiagnosticCollector<JavaFileObject> collector =
+        new DiagnosticCollector<JavaFileObject>();
+    StandardJavaFileManager fileManager =
+        compiler.getStandardFileManager(collector, null, null);
+    try {
+      /*
+       * Compiler options handled by the file manager are not visible
+       * to the annotation processor when running in process; pass
+       * paths explicitly.
+       */
+      String classPath = System.getProperty("java.class.path");
+      List<String> options = new ArrayList<String>();
+      options.addAll(Arrays.asList(
+          "-d", outputDirectory.getPath(),
+          "-classpath", classPath,
+          "-sourcepath", sourceDirectory.getPath(),
+          "-processor", PROCESSOR_CLASS,
+          option("classpath", classPath),
+          option("sourcepath", sourceDirectory.getPath()),
+          option("classoutput", outputDirectory.getPath())));
+      options.addAll(Arrays.asList(args));
+      List<File> files = new ArrayList<File>();
+      listFiles(sourceDirectory, ".java", files);
+      boolean success = compiler.getTask(null, fileManager, collector,
+          options, null, fileManager.getJavaFileObjectsFromFiles(files))
+          .call();
+      diagnostics = collector.getDiagnostics();
+      return success;
+    } finally {
+      fileManager.close();
+    }
+  }
+
+  /**
+   * Compiles all source files as {@link #compile(String...)} does, and
+   * fails with the resulting diagnostics if unsuccessful.
+   */
+  protected void assertCompiles(String... args) throws IOException {
+    if (!compile(args)) {
+      fail(getDiagnosticsText());
+    }
+  }
+
+  /**
+   * Returns {@code true} if the last compilation reported a diagnostic
+   * of kind {@code kind} whose message contains {@code text}.
+   */
+  protected boolean hasDiagnostic(Diagnostic.Kind kind, String text) {
+    for (Diagnostic<? extends JavaFileObject> d : diagnostics) {
+      if (d.getKind() == kind && d.getMessage(null).contains(text)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the diagnostics of the last compilation, as text, for
+   * failure messages.
+   */
+  protected String getDiagnosticsText() {
+    StringBuilder buffer = new StringBuilder();
+    for (Diagnostic<? extends JavaFileObject> d : diagnostics) {
+      buffer.append(d.getKind()).append(": ")
+          .append(d.getMessage(null)).append('\n');
+    }
+    return buffer.toString();
+  }
+
+  /**
+   * Loads the class named {@code className} from the output
+   * directory, in a new class loader.
+   */
+  protected Class<?> loadClass(String className) throws Exception {
+    ClassLoader loader = new URLClassLoader(
+        new URL[] { outputDirectory.toURI().toURL() },
+        getClass().getClassLoader());
+    return Class.forName(className, true, loader);
+  }
+
+  /**
+   * Calls the static method named {@code methodName} of {@code clazz}
+   * with arguments {@code args}, and returns its result. Exceptions
+   * thrown by the method are rethrown as is.
+   */
+  protected static Object invoke(Class<?> clazz, String methodName,
+                                 Object... args) throws Throwable {
+    for (Method method : clazz.getMethods()) {
+      if (method.getName().equals(methodName)
+          && method.getParameterTypes().length == args.length) {
+        try {
+          return method.invoke(null, args);
+        } catch (InvocationTargetException e) {
+          throw e.getCause();
+        }
+      }
+    }
+    throw new NoSuchMethodException(methodName);
+  }
+
+  /**
+   * Returns the contents of the files under {@code dir} whose names
+   * end with {@code suffix}, keyed by path relative to {@code dir}.
+   */
+  protected static Map<String, String> readFiles(File dir, String suffix)
+      throws IOException {
+    List<File> files = new ArrayList<File>();
+    listFiles(dir, suffix, files);
+    Map<String, String> contents = new TreeMap<String, String>();
+    int prefix = dir.getPath().length() + 1;
+    for (File file : files) {
+      contents.put(file.getPath().substring(prefix), readFile(file));
+    }
+    return contents;
+  }
+
+  /**
+   * Returns the content of {@code file}, one character per byte.
+   */
+  protected static String readFile(File file) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    InputStream in = new FileInputStream(file);
+    try {
+      byte[] bytes = new byte[4096];
+      int n;
+      while ((n = in.read(bytes)) != -1) {
+        buffer.write(bytes, 0, n);
+      }
+    } finally {
+      in.close();
+    }
+    return buffer.toString("ISO-8859-1");
+  }
+
+  private static void listFiles(File dir, String suffix, List<File> files) {
+    File[] children = dir.listFiles();
+    if (children == null) {
+      return;
+    }
+    Arrays.sort(children);
+    for (File child : children) {
+      if (child.isDirectory()) {
+        listFiles(child, suffix, files);
+      } else if (child.getName().endsWith(suffix)) {
+        files.add(child);
+      }
+    }
+  }
+
+  protected static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
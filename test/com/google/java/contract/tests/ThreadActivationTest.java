@@ -0,0 +1,142 @@
+/*
+ * Copyright 2026 The Contracts for Java Authors
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA
+ */
+package com.google.java.contract.tests;
+
+import com.google.java.contract.Ensures;
+import com.google.java.contract.Invariant;
+import com.google.java.contract.InvariantError;
+import com.google.java.contract.PostconditionError;
+import com.google.java.contract.PreconditionError;
+import com.google.java.contract.Requires;
+import com.google.java.contract.core.runtime.ContractRuntime;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests per-thread activation of contracts.
+ */
+public class ThreadActivationTest extends TestCase {
+  @Invariant("value >= 0")
+  private static class A {
+    protected int value;
+
+    @Requires("n >= 0")
+    public void add(int n) {
+      value += n;
+    }
+
+    @Ensures("result == old(value)")
+    public int broken() {
+      return value + 1;
+    }
+
+    public void set(int n) {
+      value = n;
+    }
+
+    @Ensures("value == old(value) + 1")
+    public void activateAndIncrement() {
+      ContractRuntime.setActive(true);
+      ++value;
+    }
+
+    @Ensures("value == old(value) + 1")
+    public void deactivateAndBreak() {
+      ContractRuntime.setActive(false);
+      value += 2;
+    }
+  }
+
+  protected A a;
+
+  @Override
+  protected void setUp() {
+    a = new A();
+  }
+
+  @Override
+  protected void tearDown() {
+    ContractRuntime.setActive(true);
+  }
+
+  public void testActiveByDefault() {
+    assertTrue(ContractRuntime.isActive());
+    try {
+      a.add(-1);
+      fail();
+    } catch (PreconditionError expected) {
+    }
+  }
+
+  public void testInactive() {
+    assertTrue(ContractRuntime.setActive(false));
+    assertFalse(ContractRuntime.isActive());
+    a.add(-1);
+    a.broken();
+    a.set(-1);
+  }
+
+  public void testReactivated() {
+    ContractRuntime.setActive(false);
+    a.set(-1);
+    assertFalse(ContractRuntime.setActive(true));
+    try {
+      a.add(1);
+      fail();
+    } catch (InvariantError expected) {
+    }
+  }
+
+  public void testOtherThreadsUnaffected() throws InterruptedException {
+    ContractRuntime.setActive(false);
+    final Throwable[] error = new Throwable[1];
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        try {
+          new A().broken();
+        } catch (Throwable t) {
+          error[0] = t;
+        }
+      }
+    };
+    thread.start();
+    thread.join();
+    assertTrue(error[0] instanceof PostconditionError);
+  }
+
+  public void testActivatedDuringCall() {
+    ContractRuntime.setActive(false);
+    a.activateAndIncrement();
+    assertTrue(ContractRuntime.isActive());
+    try {
+      a.broken();
+      fail();
+    } catch (PostconditionError expected) {
+    }
+  }
+
+  public void testDeactivatedDuringCall() {
+    try {
+      a.deactivateAndBreak();
+      fail();
+    } catch (PostconditionError expected) {
+    }
+    assertFalse(ContractRuntime.isActive());
+  }
+}